@@ -63,13 +63,15 @@ public class ClassFileFactory implements OutputFileCollection {
             @NotNull Collection<? extends PsiFile> sourceFiles) {
         String outputFilePath = asmType.getInternalName() + ".class";
         List<File> ioSourceFiles = toIoFilesIgnoringNonPhysical(sourceFiles);
-        state.getProgress().reportOutput(ioSourceFiles, new File(outputFilePath));
         ClassBuilder answer = builderFactory.newClassBuilder(origin);
-        generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, ioSourceFiles));
+        synchronized (generators) {
+            state.getProgress().reportOutput(ioSourceFiles, new File(outputFilePath));
+            generators.put(outputFilePath, new ClassBuilderAndSourceFileList(answer, ioSourceFiles));
+        }
         return answer;
     }
 
-    void done() {
+    synchronized void done() {
         if (!isDone) {
             isDone = true;
             for (PackageCodegen codegen : package2codegen.values()) {
@@ -82,7 +84,15 @@ public class ClassFileFactory implements OutputFileCollection {
     @Override
     public List<OutputFile> asList() {
         done();
-        return ContainerUtil.map(generators.keySet(), new Function<String, OutputFile>() {
+        List<String> paths;
+        synchronized (generators) {
+            paths = new ArrayList<String>(generators.keySet());
+        }
+        if (state.getCodegenThreads() > 1) {
+            // The order in which packages are generated in parallel is not stable
+            Collections.sort(paths);
+        }
+        return ContainerUtil.map(paths, new Function<String, OutputFile>() {
             @Override
             public OutputFile fun(String relativeClassFilePath) {
                 return new OutputClassFile(relativeClassFilePath);
@@ -93,7 +103,9 @@ public class ClassFileFactory implements OutputFileCollection {
     @Override
     @Nullable
     public OutputFile get(@NotNull String relativePath) {
-        return generators.containsKey(relativePath) ? new OutputClassFile(relativePath) : null;
+        synchronized (generators) {
+            return generators.containsKey(relativePath) ? new OutputClassFile(relativePath) : null;
+        }
     }
 
     @NotNull
@@ -110,7 +122,7 @@ public class ClassFileFactory implements OutputFileCollection {
     }
 
     @NotNull
-    public PackageCodegen forPackage(@NotNull FqName fqName, @NotNull Collection<JetFile> files) {
+    public synchronized PackageCodegen forPackage(@NotNull FqName fqName, @NotNull Collection<JetFile> files) {
         assert !isDone : "Already done!";
         PackageCodegen codegen = package2codegen.get(fqName);
         if (codegen == null) {
@@ -151,24 +163,32 @@ public class ClassFileFactory implements OutputFileCollection {
         @NotNull
         @Override
         public List<File> getSourceFiles() {
-            ClassBuilderAndSourceFileList pair = generators.get(relativeClassFilePath);
-            if (pair == null) {
-                throw new IllegalStateException("No record for binary file " + relativeClassFilePath);
-            }
-
-            return pair.sourceFiles;
+            return getGenerator().sourceFiles;
         }
 
         @NotNull
         @Override
         public byte[] asByteArray() {
-            return builderFactory.asBytes(generators.get(relativeClassFilePath).classBuilder);
+            return builderFactory.asBytes(getGenerator().classBuilder);
         }
 
         @NotNull
         @Override
         public String asText() {
-            return builderFactory.asText(generators.get(relativeClassFilePath).classBuilder);
+            return builderFactory.asText(getGenerator().classBuilder);
+        }
+
+        // Output may be read while other packages are still being generated, see PackageGenerationListener
+        @NotNull
+        private ClassBuilderAndSourceFileList getGenerator() {
+            ClassBuilderAndSourceFileList pair;
+            synchronized (generators) {
+                pair = generators.get(relativeClassFilePath);
+            }
+            if (pair == null) {
+                throw new IllegalStateException("No record for binary file " + relativeClassFilePath);
+            }
+            return pair;
         }
 
         @NotNull
@@ -188,9 +208,40 @@ public class ClassFileFactory implements OutputFileCollection {
         }
     }
 
+    /**
+     * Returns the files generated so far only from the given source files. Unlike {@link #asList()}, doesn't finish the generation,
+     * so this can be used to write out the classes of the already generated packages, see {@link PackageGenerationListener}
+     */
+    @NotNull
+    public List<OutputFile> getOutputFilesGeneratedFrom(@NotNull Collection<? extends PsiFile> sourceFiles) {
+        Set<File> ioSourceFiles = new HashSet<File>(toIoFilesIgnoringNonPhysical(sourceFiles));
+        List<OutputFile> result = new ArrayList<OutputFile>();
+        synchronized (generators) {
+            for (Map.Entry<String, ClassBuilderAndSourceFileList> entry : generators.entrySet()) {
+                List<File> generatedFrom = entry.getValue().sourceFiles;
+                if (!generatedFrom.isEmpty() && ioSourceFiles.containsAll(generatedFrom)) {
+                    result.add(new OutputClassFile(entry.getKey()));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forgets the class builder of the given output file, so that its bytecode can be garbage collected as soon as the file is written.
+     * After that the file is not returned by {@link #asList()} and {@link #get(String)} anymore
+     */
+    public void releaseGeneratedOutput(@NotNull String relativePath) {
+        synchronized (generators) {
+            generators.remove(relativePath);
+        }
+    }
+
     public void removeInlinedClasses(Set<String> classNamesToRemove) {
-        for (String classInternalName : classNamesToRemove) {
-            generators.remove(classInternalName + ".class");
+        synchronized (generators) {
+            for (String classInternalName : classNamesToRemove) {
+                generators.remove(classInternalName + ".class");
+            }
         }
     }
 }
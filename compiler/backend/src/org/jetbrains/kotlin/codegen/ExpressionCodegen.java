@@ -528,6 +528,15 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
         }
 
         JetExpression loopRange = forExpression.getLoopRange();
+        assert loopRange != null;
+
+        // Is it "a downTo b", "(a..b).reversed()", "c.indices step 2" or so
+        RangeCodegenUtil.IntrinsicProgression intrinsicProgression = RangeCodegenUtil.getIntrinsicProgression(loopRange, bindingContext);
+        if (intrinsicProgression != null) {
+            generateForLoop(new ForInIntrinsicProgressionLoopGenerator(forExpression, intrinsicProgression));
+            return StackValue.none();
+        }
+
         JetType loopRangeType = bindingContext.get(EXPRESSION_TYPE, loopRange);
         assert loopRangeType != null;
         Type asmLoopRangeType = asmType(loopRangeType);
@@ -1188,6 +1197,182 @@ public class ExpressionCodegen extends JetVisitor<StackValue, StackValue> implem
     }
 
 
+    private class ForInIntrinsicProgressionLoopGenerator extends AbstractForInProgressionOrRangeLoopGenerator {
+        private final RangeCodegenUtil.IntrinsicProgression progression;
+        private final Type incrementType;
+
+        // -1 if the increment is 1 or -1 and is not stored anywhere
+        private int incrementVar = -1;
+
+        private int finalVar;
+
+        private ForInIntrinsicProgressionLoopGenerator(
+                @NotNull JetForExpression forExpression,
+                @NotNull RangeCodegenUtil.IntrinsicProgression progression
+        ) {
+            super(forExpression);
+            this.progression = progression;
+            this.incrementType = asmElementType.getSort() == Type.LONG ? Type.LONG_TYPE : Type.INT_TYPE;
+            assert isIntegerProgression : "Only integer progressions are generated without progression instances: " + asmElementType;
+        }
+
+        @Override
+        protected int getFinalVar() {
+            return finalVar;
+        }
+
+        @Override
+        public void beforeLoop() {
+            super.beforeLoop();
+
+            int firstVar = progression.isReversed ? endVar : loopParameterVar;
+            int secondVar = progression.isReversed ? loopParameterVar : endVar;
+
+            if (progression.second != null) {
+                gen(progression.first, asmElementType);
+                v.store(firstVar, asmElementType);
+
+                gen(progression.second, asmElementType);
+                v.store(secondVar, asmElementType);
+            }
+            else {
+                storeIndices(firstVar, secondVar);
+            }
+
+            if (progression.steps.isEmpty()) {
+                finalVar = endVar;
+                return;
+            }
+
+            incrementVar = createLoopTempVariable(incrementType);
+            for (JetExpression step : progression.steps) {
+                gen(step, incrementType);
+                v.store(incrementVar, incrementType);
+                checkStepIsPositive();
+            }
+
+            if (progression.isDescending) {
+                v.load(incrementVar, incrementType);
+                v.neg(incrementType);
+                v.store(incrementVar, incrementType);
+            }
+
+            storeFinalVar();
+        }
+
+        private void storeIndices(int firstVar, int lastVar) {
+            v.iconst(0);
+            v.store(firstVar, Type.INT_TYPE);
+
+            JetType receiverType = bindingContext.get(EXPRESSION_TYPE, progression.first);
+            assert receiverType != null;
+            Type asmReceiverType = asmType(receiverType);
+            gen(progression.first, asmReceiverType);
+            if (asmReceiverType.getSort() == Type.ARRAY) {
+                v.arraylength();
+            }
+            else {
+                v.invokeinterface("java/util/Collection", "size", "()I");
+            }
+            v.iconst(1);
+            v.sub(Type.INT_TYPE);
+            v.store(lastVar, Type.INT_TYPE);
+        }
+
+        // Same check as in the standard library step() functions
+        private void checkStepIsPositive() {
+            Label stepIsPositive = new Label();
+            v.load(incrementVar, incrementType);
+            if (incrementType.getSort() == Type.LONG) {
+                v.lconst(0L);
+                v.lcmp();
+            }
+            v.ifgt(stepIsPositive);
+
+            v.anew(Type.getObjectType("java/lang/IllegalArgumentException"));
+            v.dup();
+            genStringBuilderConstructor(v);
+            v.aconst("Step must be positive, was: ");
+            genInvokeAppendMethod(v, JAVA_STRING_TYPE);
+            v.load(incrementVar, incrementType);
+            genInvokeAppendMethod(v, incrementType);
+            v.invokevirtual("java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+            v.invokespecial("java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V", false);
+            v.athrow();
+
+            v.mark(stepIsPositive);
+        }
+
+        private void storeFinalVar() {
+            v.load(loopParameterVar, asmElementType);
+            v.load(endVar, asmElementType);
+            v.load(incrementVar, incrementType);
+
+            v.invokestatic("kotlin/internal/InternalPackage", "getProgressionFinalElement",
+                           Type.getMethodDescriptor(incrementType, incrementType, incrementType, incrementType), false);
+
+            finalVar = createLoopTempVariable(asmElementType);
+            StackValue.coerce(incrementType, asmElementType, v);
+            v.store(finalVar, asmElementType);
+        }
+
+        @Override
+        public void checkPreCondition(@NotNull Label loopExit) {
+        }
+
+        @Override
+        public void checkEmptyLoop(@NotNull Label loopExit) {
+            v.load(loopParameterVar, asmElementType);
+            v.load(endVar, asmElementType);
+            if (asmElementType.getSort() == Type.LONG) {
+                v.lcmp();
+                if (progression.isDescending) {
+                    v.iflt(loopExit);
+                }
+                else {
+                    v.ifgt(loopExit);
+                }
+            }
+            else {
+                if (progression.isDescending) {
+                    v.ificmplt(loopExit);
+                }
+                else {
+                    v.ificmpgt(loopExit);
+                }
+            }
+        }
+
+        @Override
+        protected void assignToLoopParameter() {
+        }
+
+        @Override
+        protected void increment(@NotNull Label loopExit) {
+            checkPostCondition(loopExit);
+
+            if (incrementVar == -1) {
+                int delta = progression.isDescending ? -1 : 1;
+                if (asmElementType == Type.INT_TYPE) {
+                    v.iinc(loopParameterVar, delta);
+                }
+                else {
+                    v.load(loopParameterVar, asmElementType);
+                    genIncrement(asmElementType, delta, v);
+                    v.store(loopParameterVar, asmElementType);
+                }
+                return;
+            }
+
+            v.load(loopParameterVar, asmElementType);
+            v.load(incrementVar, incrementType);
+            v.add(incrementType);
+            StackValue.coerce(incrementType, asmElementType, v);
+            v.store(loopParameterVar, asmElementType);
+        }
+    }
+
+
     @Override
     public StackValue visitBreakExpression(@NotNull JetBreakExpression expression, StackValue receiver) {
         return generateBreakOrContinueExpression(expression, true);
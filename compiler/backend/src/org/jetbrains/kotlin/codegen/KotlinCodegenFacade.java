@@ -24,11 +24,14 @@ import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.psi.JetFile;
 import org.jetbrains.kotlin.psi.JetScript;
 import org.jetbrains.kotlin.resolve.ScriptNameUtil;
+import org.jetbrains.kotlin.utils.UtilsPackage;
 import org.jetbrains.org.objectweb.asm.Type;
 
-import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.kotlin.codegen.binding.CodegenBinding.registerClassNameForScript;
 
@@ -53,6 +56,14 @@ public class KotlinCodegenFacade {
     public static void compileCorrectFiles(
             @NotNull GenerationState state,
             @NotNull CompilationErrorHandler errorHandler
+    ) {
+        compileCorrectFiles(state, errorHandler, PackageGenerationListener.NONE);
+    }
+
+    public static void compileCorrectFiles(
+            @NotNull GenerationState state,
+            @NotNull CompilationErrorHandler errorHandler,
+            @NotNull PackageGenerationListener listener
     ) {
         prepareForCompilation(state);
 
@@ -63,21 +74,90 @@ public class KotlinCodegenFacade {
         }
 
         Set<FqName> removedPackageFiles = new HashSet<FqName>(state.getPackagesWithRemovedFiles());
-        for (FqName fqName : Sets.union(removedPackageFiles, packageFqNameToFiles.keySet())) {
-            generatePackage(state, fqName, packageFqNameToFiles.get(fqName), errorHandler);
+        Set<FqName> packagesToGenerate = Sets.union(removedPackageFiles, packageFqNameToFiles.keySet());
+        if (state.getCodegenThreads() > 1 && packagesToGenerate.size() > 1) {
+            generatePackagesInParallel(state, packagesToGenerate, packageFqNameToFiles, errorHandler, listener);
+        }
+        else {
+            for (FqName fqName : packagesToGenerate) {
+                generatePackage(state, fqName, packageFqNameToFiles.get(fqName), errorHandler, listener);
+            }
         }
 
         state.getFactory().done();
     }
 
+    private static void generatePackagesInParallel(
+            @NotNull GenerationState state,
+            @NotNull Set<FqName> packagesToGenerate,
+            @NotNull MultiMap<FqName, JetFile> packageFqNameToFiles,
+            @NotNull final CompilationErrorHandler errorHandler,
+            @NotNull final PackageGenerationListener listener
+    ) {
+        List<Future<?>> tasks = new ArrayList<Future<?>>(packagesToGenerate.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(state.getCodegenThreads());
+        try {
+            for (final FqName fqName : packagesToGenerate) {
+                final Collection<JetFile> files = packageFqNameToFiles.get(fqName);
+                final PackageCodegen codegen = state.getFactory().forPackage(fqName, files);
+                tasks.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        generatePackage(codegen, fqName, files, errorHandler, listener);
+                    }
+                }));
+            }
+
+            for (Future<?> task : tasks) {
+                try {
+                    task.get();
+                }
+                catch (ExecutionException e) {
+                    throw UtilsPackage.rethrow(e.getCause());
+                }
+                catch (InterruptedException e) {
+                    throw UtilsPackage.rethrow(e);
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
     public static void generatePackage(
             @NotNull GenerationState state,
             @NotNull FqName fqName,
             @NotNull Collection<JetFile> jetFiles,
             @NotNull CompilationErrorHandler errorHandler
     ) {
-        PackageCodegen codegen = state.getFactory().forPackage(fqName, jetFiles);
+        generatePackage(state, fqName, jetFiles, errorHandler, PackageGenerationListener.NONE);
+    }
+
+    public static void generatePackage(
+            @NotNull GenerationState state,
+            @NotNull FqName fqName,
+            @NotNull Collection<JetFile> jetFiles,
+            @NotNull CompilationErrorHandler errorHandler,
+            @NotNull PackageGenerationListener listener
+    ) {
+        generatePackage(state.getFactory().forPackage(fqName, jetFiles), fqName, jetFiles, errorHandler, listener);
+    }
+
+    private static void generatePackage(
+            @NotNull PackageCodegen codegen,
+            @NotNull FqName fqName,
+            @NotNull Collection<JetFile> jetFiles,
+            @NotNull CompilationErrorHandler errorHandler,
+            @NotNull PackageGenerationListener listener
+    ) {
         codegen.generate(errorHandler);
+        if (listener != PackageGenerationListener.NONE) {
+            // Finish the package facade right away, otherwise it's only finished when the whole factory is done
+            codegen.done();
+            listener.packageGenerated(fqName, jetFiles);
+        }
     }
 
     private KotlinCodegenFacade() {}
@@ -82,6 +82,7 @@ public class PackageCodegen {
     private final PackageFragmentDescriptor packageFragment;
     private final PackageFragmentDescriptor compiledPackageFragment;
     private final List<DeserializedCallableMemberDescriptor> previouslyCompiledCallables;
+    private boolean isDone = false;
 
     public PackageCodegen(@NotNull GenerationState state, @NotNull Collection<JetFile> files, @NotNull FqName fqName) {
         this.state = state;
@@ -399,6 +400,9 @@ public class PackageCodegen {
     }
 
     public void done() {
-        v.done();
+        if (!isDone) {
+            isDone = true;
+            v.done();
+        }
     }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.psi.JetFile;
+
+import java.util.Collection;
+
+public interface PackageGenerationListener {
+
+    PackageGenerationListener NONE = new PackageGenerationListener() {
+        @Override
+        public void packageGenerated(@NotNull FqName fqName, @NotNull Collection<JetFile> files) {
+        }
+    };
+
+    /**
+     * Called as soon as all classes of the package, including its facade, are generated. Nothing is going to be generated from
+     * {@code files} after that, but their declarations can still be referenced from other packages.
+     * May be called from several threads at once if packages are generated in parallel
+     */
+    void packageGenerated(@NotNull FqName fqName, @NotNull Collection<JetFile> files);
+}
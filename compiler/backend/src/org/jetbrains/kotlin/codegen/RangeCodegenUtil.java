@@ -23,21 +23,33 @@ import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
 import org.jetbrains.kotlin.builtins.PrimitiveType;
 import org.jetbrains.kotlin.descriptors.CallableDescriptor;
 import org.jetbrains.kotlin.descriptors.ClassifierDescriptor;
+import org.jetbrains.kotlin.descriptors.ReceiverParameterDescriptor;
 import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.name.Name;
 import org.jetbrains.kotlin.psi.*;
+import org.jetbrains.kotlin.resolve.BindingContext;
 import org.jetbrains.kotlin.resolve.DescriptorUtils;
+import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall;
 import org.jetbrains.kotlin.types.JetType;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import static org.jetbrains.kotlin.builtins.KotlinBuiltIns.BUILT_INS_PACKAGE_FQ_NAME;
 import static org.jetbrains.kotlin.codegen.AsmUtil.isPrimitiveNumberClassDescriptor;
+import static org.jetbrains.kotlin.resolve.calls.callUtil.CallUtilPackage.getResolvedCall;
 
 public class RangeCodegenUtil {
     private static final ImmutableMap<FqName, PrimitiveType> RANGE_TO_ELEMENT_TYPE;
     private static final ImmutableMap<FqName, PrimitiveType> PROGRESSION_TO_ELEMENT_TYPE;
 
+    private static final FqName DOWN_TO_FQ_NAME = BUILT_INS_PACKAGE_FQ_NAME.child(Name.identifier("downTo"));
+    private static final FqName STEP_FQ_NAME = BUILT_INS_PACKAGE_FQ_NAME.child(Name.identifier("step"));
+    private static final FqName REVERSED_FQ_NAME = BUILT_INS_PACKAGE_FQ_NAME.child(Name.identifier("reversed"));
+    private static final FqName INDICES_FQ_NAME = BUILT_INS_PACKAGE_FQ_NAME.child(Name.identifier("indices"));
+    private static final FqName COLLECTION_FQ_NAME = BUILT_INS_PACKAGE_FQ_NAME.child(Name.identifier("Collection"));
+
     static {
         ImmutableMap.Builder<FqName, PrimitiveType> rangeBuilder = ImmutableMap.builder();
         ImmutableMap.Builder<FqName, PrimitiveType> progressionBuilder = ImmutableMap.builder();
@@ -91,6 +103,113 @@ public class RangeCodegenUtil {
         return null;
     }
 
+    /**
+     * Recognizes chains of the standard library calls (rangeTo, downTo, step, reversed and indices) producing
+     * an integer progression whose start, end and increment can be computed without creating the progression object.
+     * Returns null if the expression is anything else
+     */
+    @Nullable
+    public static IntrinsicProgression getIntrinsicProgression(@NotNull JetExpression expression, @NotNull BindingContext bindingContext) {
+        JetExpression progression = JetPsiUtil.deparenthesize(expression);
+        if (progression == null) return null;
+
+        JetType progressionType = bindingContext.get(BindingContext.EXPRESSION_TYPE, progression);
+        if (progressionType == null || progressionType.isMarkedNullable()) return null;
+
+        PrimitiveType elementType = getPrimitiveRangeElementType(progressionType);
+        if (elementType == null) {
+            elementType = getPrimitiveProgressionElementType(progressionType);
+        }
+        if (elementType != PrimitiveType.INT && elementType != PrimitiveType.LONG && elementType != PrimitiveType.CHAR) return null;
+
+        if (progression instanceof JetBinaryExpression) {
+            // a..b, a downTo b, p step s
+            JetBinaryExpression binaryExpression = (JetBinaryExpression) progression;
+            return getIntrinsicProgressionForBinaryCall(
+                    binaryExpression.getLeft(), binaryExpression.getOperationReference(), binaryExpression.getRight(), bindingContext
+            );
+        }
+
+        if (!(progression instanceof JetDotQualifiedExpression)) return null;
+        JetDotQualifiedExpression qualifiedExpression = (JetDotQualifiedExpression) progression;
+        JetExpression receiver = qualifiedExpression.getReceiverExpression();
+        JetExpression selector = qualifiedExpression.getSelectorExpression();
+
+        if (selector instanceof JetCallExpression) {
+            JetCallExpression callExpression = (JetCallExpression) selector;
+            List<? extends ValueArgument> arguments = callExpression.getValueArguments();
+            if (arguments.size() == 1) {
+                // a.rangeTo(b), a.downTo(b), p.step(s)
+                return getIntrinsicProgressionForBinaryCall(
+                        receiver, callExpression.getCalleeExpression(), arguments.get(0).getArgumentExpression(), bindingContext
+                );
+            }
+            if (arguments.isEmpty() && isStandardLibraryCall(callExpression, REVERSED_FQ_NAME, bindingContext)) {
+                // p.reversed()
+                IntrinsicProgression reversed = getIntrinsicProgression(receiver, bindingContext);
+                return reversed != null ? reversed.reverse() : null;
+            }
+            return null;
+        }
+
+        if (selector instanceof JetSimpleNameExpression && isStandardLibraryCall(selector, INDICES_FQ_NAME, bindingContext)) {
+            // c.indices
+            ResolvedCall<?> resolvedCall = getResolvedCall(selector, bindingContext);
+            assert resolvedCall != null : "No resolved call for " + selector.getText();
+            ReceiverParameterDescriptor extensionReceiver = resolvedCall.getResultingDescriptor().getExtensionReceiverParameter();
+            if (extensionReceiver == null) return null;
+
+            JetType receiverType = extensionReceiver.getType();
+            ClassifierDescriptor receiverClass = receiverType.getConstructor().getDeclarationDescriptor();
+            boolean isCollection = receiverClass != null && DescriptorUtils.getFqNameSafe(receiverClass).equals(COLLECTION_FQ_NAME);
+            boolean isArray = KotlinBuiltIns.isArray(receiverType) || KotlinBuiltIns.isPrimitiveArray(receiverType);
+            if (!isCollection && !isArray) return null;
+
+            return new IntrinsicProgression(receiver, null, false, false, Collections.<JetExpression>emptyList());
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private static IntrinsicProgression getIntrinsicProgressionForBinaryCall(
+            @Nullable JetExpression left,
+            @Nullable JetExpression op,
+            @Nullable JetExpression right,
+            @NotNull BindingContext bindingContext
+    ) {
+        if (left == null || op == null || right == null) return null;
+
+        ResolvedCall<?> resolvedCall = getResolvedCall(op, bindingContext);
+        if (resolvedCall == null) return null;
+        CallableDescriptor descriptor = resolvedCall.getResultingDescriptor();
+
+        if (isOptimizableRangeTo(descriptor)) {
+            return new IntrinsicProgression(left, right, false, false, Collections.<JetExpression>emptyList());
+        }
+        if (isStandardLibraryFunction(descriptor, DOWN_TO_FQ_NAME)) {
+            return new IntrinsicProgression(left, right, false, true, Collections.<JetExpression>emptyList());
+        }
+        if (isStandardLibraryFunction(descriptor, STEP_FQ_NAME)) {
+            IntrinsicProgression stepped = getIntrinsicProgression(left, bindingContext);
+            return stepped != null ? stepped.step(right) : null;
+        }
+        return null;
+    }
+
+    private static boolean isStandardLibraryCall(
+            @NotNull JetExpression expression,
+            @NotNull FqName fqName,
+            @NotNull BindingContext bindingContext
+    ) {
+        ResolvedCall<?> resolvedCall = getResolvedCall(expression, bindingContext);
+        return resolvedCall != null && isStandardLibraryFunction(resolvedCall.getResultingDescriptor(), fqName);
+    }
+
+    private static boolean isStandardLibraryFunction(@NotNull CallableDescriptor descriptor, @NotNull FqName fqName) {
+        return descriptor.getExtensionReceiverParameter() != null && DescriptorUtils.getFqNameSafe(descriptor).equals(fqName);
+    }
+
     @Nullable
     private static PrimitiveType getPrimitiveRangeElementType(JetType rangeType) {
         return getPrimitiveRangeOrProgressionElementType(rangeType, RANGE_TO_ELEMENT_TYPE);
@@ -134,6 +253,48 @@ public class RangeCodegenUtil {
         return false;
     }
 
+    /**
+     * Integer progression described by its bounds: "first..second" or "first downTo second" with optional steps, possibly reversed;
+     * or indices of the collection or array "first", if "second" is null
+     */
+    public static class IntrinsicProgression {
+        public final JetExpression first;
+        @Nullable
+        public final JetExpression second;
+        // If true, the progression starts at the second bound and ends at the first one
+        public final boolean isReversed;
+        // If true, the increment is negative
+        public final boolean isDescending;
+        // Arguments of all step() calls in the order of evaluation, the last one is the absolute value of the increment
+        public final List<JetExpression> steps;
+
+        private IntrinsicProgression(
+                @NotNull JetExpression first,
+                @Nullable JetExpression second,
+                boolean isReversed,
+                boolean isDescending,
+                @NotNull List<JetExpression> steps
+        ) {
+            this.first = first;
+            this.second = second;
+            this.isReversed = isReversed;
+            this.isDescending = isDescending;
+            this.steps = steps;
+        }
+
+        @NotNull
+        private IntrinsicProgression reverse() {
+            return new IntrinsicProgression(first, second, !isReversed, !isDescending, steps);
+        }
+
+        @NotNull
+        private IntrinsicProgression step(@NotNull JetExpression step) {
+            List<JetExpression> newSteps = new ArrayList<JetExpression>(steps);
+            newSteps.add(step);
+            return new IntrinsicProgression(first, second, isReversed, isDescending, newSteps);
+        }
+    }
+
     public static class BinaryCall {
         public final JetExpression left;
         public final JetExpression op;
@@ -88,6 +88,13 @@ public class AnonymousObjectGeneration {
         );
     }
 
+    // Singletons from other modules are regenerated only because they can't be accessed from the call site,
+    // so all copies of such a singleton are the same
+    public boolean isSingletonCopy() {
+        return shouldRegenerate() &&
+               isStaticOrigin && !isSameModule && lambdasToInline.isEmpty() && !capturedOuterRegenerated && !needReification;
+    }
+
     public Map<Integer, LambdaInfo> getLambdasToInline() {
         return lambdasToInline;
     }
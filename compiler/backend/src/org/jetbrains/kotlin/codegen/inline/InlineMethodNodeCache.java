@@ -0,0 +1,134 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.inline;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.TestOnly;
+import org.jetbrains.org.objectweb.asm.tree.MethodNode;
+
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Bodies of compiled inline functions read from class files during one code generation, so that a library function inlined
+ * at many call sites is read and parsed only once.
+ *
+ * Method nodes are held by soft references: the cache never prevents them from being collected when memory is low.
+ * Entries whose method nodes were collected are removed on the next lookup.
+ * Inlining modifies method nodes, so every call returns a fresh copy of the cached one
+ */
+public class InlineMethodNodeCache {
+    private final ConcurrentMap<MethodId, MethodNodeReference> cache = new ConcurrentHashMap<MethodId, MethodNodeReference>();
+    private final ReferenceQueue<MethodNode> collected = new ReferenceQueue<MethodNode>();
+
+    @Nullable
+    public MethodNode getMethodNode(
+            @NotNull VirtualFile file,
+            @NotNull String methodName,
+            @NotNull String methodDescriptor
+    ) throws ClassNotFoundException, IOException {
+        removeCollected();
+
+        MethodId id = new MethodId(file.getUrl(), methodName, methodDescriptor);
+
+        MethodNodeReference reference = cache.get(id);
+        MethodNode node = reference != null ? reference.get() : null;
+        if (node == null) {
+            node = InlineCodegenUtil.getMethodNode(file.contentsToByteArray(), methodName, methodDescriptor);
+            if (node == null) return null;
+
+            cache.put(id, new MethodNodeReference(id, node, collected));
+        }
+
+        return copy(node);
+    }
+
+    private void removeCollected() {
+        MethodNodeReference reference;
+        while ((reference = (MethodNodeReference) collected.poll()) != null) {
+            // Another thread may have already put a new method node for the same method
+            cache.remove(reference.id, reference);
+        }
+    }
+
+    @TestOnly
+    /* package */ int size() {
+        return cache.size();
+    }
+
+    @TestOnly
+    /* package */ void collectAll() {
+        for (MethodNodeReference reference : cache.values()) {
+            reference.clear();
+            reference.enqueue();
+        }
+    }
+
+    @NotNull
+    private static MethodNode copy(@NotNull MethodNode node) {
+        MethodNode result = new MethodNode(InlineCodegenUtil.API, node.access, node.name, node.desc, node.signature,
+                                           node.exceptions.toArray(new String[node.exceptions.size()]));
+        // MethodNode.accept() resets labels of the instructions being visited, so copying the same node must not happen concurrently
+        synchronized (node) {
+            node.accept(result);
+        }
+        return result;
+    }
+
+    private static class MethodNodeReference extends SoftReference<MethodNode> {
+        private final MethodId id;
+
+        private MethodNodeReference(@NotNull MethodId id, @NotNull MethodNode node, @NotNull ReferenceQueue<MethodNode> queue) {
+            super(node, queue);
+            this.id = id;
+        }
+    }
+
+    private static class MethodId {
+        private final String fileUrl;
+        private final String name;
+        private final String descriptor;
+
+        private MethodId(@NotNull String fileUrl, @NotNull String name, @NotNull String descriptor) {
+            this.fileUrl = fileUrl;
+            this.name = name;
+            this.descriptor = descriptor;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MethodId)) return false;
+
+            MethodId other = (MethodId) o;
+            return fileUrl.equals(other.fileUrl) && name.equals(other.name) && descriptor.equals(other.descriptor);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = fileUrl.hashCode();
+            result = 31 * result + name.hashCode();
+            result = 31 * result + descriptor.hashCode();
+            return result;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.inline;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Copies of non-capturing lambdas and anonymous objects from inline functions of other modules, generated at the call sites.
+ * Such a copy doesn't depend on the call site, so all call sites in one class share a single copy.
+ *
+ * Copies are not shared between classes of the module: a class referring to a copy generated for another source file
+ * would break when only one of these files is recompiled incrementally, and the name of the copy would depend on
+ * the order in which files are generated by parallel code generation.
+ */
+public class InlinedSingletonCopies {
+    private final ConcurrentMap<String, String> copies = new ConcurrentHashMap<String, String>();
+
+    @Nullable
+    public String getCopy(@NotNull String callerClassInternalName, @NotNull String originalInternalName) {
+        return copies.get(key(callerClassInternalName, originalInternalName));
+    }
+
+    public void putCopy(@NotNull String callerClassInternalName, @NotNull String originalInternalName, @NotNull String copyInternalName) {
+        copies.put(key(callerClassInternalName, originalInternalName), copyInternalName);
+    }
+
+    @NotNull
+    private static String key(@NotNull String callerClassInternalName, @NotNull String originalInternalName) {
+        return callerClassInternalName + " " + originalInternalName;
+    }
+}
@@ -148,6 +148,16 @@ public class MethodInliner {
             private void handleAnonymousObjectGeneration() {
                 anonymousObjectGen = iterator.next();
 
+                boolean canShareCopy = anonymousObjectGen.isSingletonCopy() && inliningContext.isRoot();
+                if (canShareCopy) {
+                    String copy = inliningContext.state.getInlinedSingletonCopies()
+                            .getCopy(inliningContext.getClassNameToInline(), anonymousObjectGen.getOwnerInternalName());
+                    if (copy != null) {
+                        currentTypeMapping.put(anonymousObjectGen.getOwnerInternalName(), copy);
+                        return;
+                    }
+                }
+
                 if (anonymousObjectGen.shouldRegenerate()) {
                     //TODO: need poping of type but what to do with local funs???
                     Type newLambdaType = Type.getObjectType(inliningContext.nameGenerator.genLambdaClassName());
@@ -165,6 +175,13 @@ public class MethodInliner {
                     InlineResult transformResult = transformer.doTransform(anonymousObjectGen, nodeRemapper);
                     result.addAllClassesToRemove(transformResult);
 
+                    if (canShareCopy) {
+                        inliningContext.state.getInlinedSingletonCopies().putCopy(
+                                inliningContext.getClassNameToInline(), anonymousObjectGen.getOwnerInternalName(),
+                                newLambdaType.getInternalName()
+                        );
+                    }
+
                     if (inliningContext.isInliningLambda && !anonymousObjectGen.isStaticOrigin()) {
                         // this class is transformed and original not used so we should remove original one after inlining
                         // Note: It is unsafe to remove anonymous class that is referenced by GETSTATIC within lambda
@@ -21,6 +21,7 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.codegen.inline.InlineCodegenUtil;
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantBoxingMethodTransformer;
 import org.jetbrains.kotlin.codegen.optimization.boxing.RedundantNullCheckMethodTransformer;
+import org.jetbrains.kotlin.codegen.optimization.sharedVars.RedundantSharedVarsMethodTransformer;
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
 import org.jetbrains.org.objectweb.asm.MethodVisitor;
 import org.jetbrains.org.objectweb.asm.Opcodes;
@@ -33,8 +34,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class OptimizationMethodVisitor extends MethodVisitor {
-    private static final int MEMORY_LIMIT_BY_METHOD_MB = 50;
     private static final MethodTransformer[] TRANSFORMERS = new MethodTransformer[]{
+            new RedundantSharedVarsMethodTransformer(),
             new RedundantNullCheckMethodTransformer(), new RedundantBoxingMethodTransformer(),
             new RedundantGotoMethodTransformer(), new StoreStackBeforeInlineMethodTransformer()
     };
@@ -117,10 +118,7 @@ public class OptimizationMethodVisitor extends MethodVisitor {
     }
 
     private static boolean canBeAnalyzed(@NotNull MethodNode node) {
-        int totalFramesSizeMb = node.instructions.size() *
-                              (node.maxLocals + node.maxStack) / (1024 * 1024);
-
-        return node.instructions.size() > 0 &&
-               totalFramesSizeMb < MEMORY_LIMIT_BY_METHOD_MB;
+        // Memory needed for frames is checked by each transformer, see MethodTransformer.analyze()
+        return node.instructions.size() > 0;
     }
 }
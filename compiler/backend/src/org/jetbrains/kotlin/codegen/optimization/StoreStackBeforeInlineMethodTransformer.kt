@@ -28,14 +28,21 @@ import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue
 import org.jetbrains.org.objectweb.asm.tree.VarInsnNode
 import org.jetbrains.org.objectweb.asm.Type
 import com.intellij.util.containers.Stack
+import com.google.common.base.Predicate
 
 class StoreStackBeforeInlineMethodTransformer : MethodTransformer() {
     override fun transform(internalClassName: String, methodNode: MethodNode) {
-        val frames = MethodTransformer.analyze(internalClassName, methodNode, OptimizationBasicInterpreter())
-        if (needToProcess(methodNode, frames)) {
+        if (methodNode.instructions.toArray().none { isInlineMarker(it) }) return
+
+        val frames = MethodTransformer.analyze(
+                internalClassName, methodNode, OptimizationBasicInterpreter(), Predicate { isInlineMarker(it!!) }
+        )
+
+        if (frames != null && needToProcess(methodNode, frames)) {
             process(methodNode, frames)
         }
         else {
+            // Markers are calls to a non-existent class, they must not get to the class file even if the method is too large to analyze
             removeInlineMarkers(methodNode)
         }
     }
@@ -69,6 +69,20 @@ public class BoxingInterpreter extends OptimizationBasicInterpreter {
         return boxingPlaces.get(index);
     }
 
+    /**
+     * Cheap check allowing to skip the analysis: boxed values only come from calls to 'valueOf' of wrapper classes
+     * and from 'next' of progression iterators, which are obtained by 'iterator' calls
+     */
+    public static boolean mayCreateBoxedValues(@NotNull InsnList insnList) {
+        for (AbstractInsnNode insn = insnList.getFirst(); insn != null; insn = insn.getNext()) {
+            if (isBoxing(insn) ||
+                (insn.getOpcode() == Opcodes.INVOKEINTERFACE && "iterator".equals(((MethodInsnNode) insn).name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     @Nullable
     public BasicValue naryOperation(@NotNull AbstractInsnNode insn, @NotNull List<? extends BasicValue> values) throws AnalyzerException {
@@ -31,13 +31,25 @@ import org.jetbrains.org.objectweb.asm.tree.analysis.Frame;
 import java.util.*;
 
 public class RedundantBoxingMethodTransformer extends MethodTransformer {
+    // Frames are only inspected at pops and at loads and stores of variables
+    private static final Predicate<AbstractInsnNode> FRAMES_NEEDED = new Predicate<AbstractInsnNode>() {
+        @Override
+        public boolean apply(AbstractInsnNode insn) {
+            int opcode = insn.getOpcode();
+            return opcode == Opcodes.POP || opcode == Opcodes.POP2 || opcode == Opcodes.ASTORE || opcode == Opcodes.ALOAD;
+        }
+    };
 
     @Override
     public void transform(@NotNull String internalClassName, @NotNull MethodNode node) {
+        if (!BoxingInterpreter.mayCreateBoxedValues(node.instructions)) return;
+
         RedundantBoxingInterpreter interpreter = new RedundantBoxingInterpreter(node.instructions);
         Frame<BasicValue>[] frames = analyze(
-                internalClassName, node, interpreter
+                internalClassName, node, interpreter, FRAMES_NEEDED
         );
+        if (frames == null) return;
+
         interpretPopInstructionsForBoxedValues(interpreter, node, frames);
 
         RedundantBoxedValuesCollection valuesToOptimize = interpreter.getCandidatesBoxedValues();
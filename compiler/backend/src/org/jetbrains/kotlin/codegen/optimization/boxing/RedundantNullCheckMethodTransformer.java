@@ -16,6 +16,8 @@
 
 package org.jetbrains.kotlin.codegen.optimization.boxing;
 
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
 import org.jetbrains.org.objectweb.asm.Opcodes;
@@ -24,12 +26,24 @@ import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue;
 import org.jetbrains.org.objectweb.asm.tree.analysis.Frame;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class RedundantNullCheckMethodTransformer extends MethodTransformer {
+    private static final Predicate<AbstractInsnNode> IS_NULL_CHECK = new Predicate<AbstractInsnNode>() {
+        @Override
+        public boolean apply(AbstractInsnNode insn) {
+            return insn.getOpcode() == Opcodes.IFNULL || insn.getOpcode() == Opcodes.IFNONNULL;
+        }
+    };
 
     @Override
     public void transform(@NotNull String internalClassName, @NotNull MethodNode methodNode) {
+        if (!BoxingInterpreter.mayCreateBoxedValues(methodNode.instructions) ||
+            !Iterables.any(Arrays.asList(methodNode.instructions.toArray()), IS_NULL_CHECK)) {
+            return;
+        }
+
         while (removeRedundantNullCheckPass(internalClassName, methodNode)) {
             //do nothing
         }
@@ -39,8 +53,10 @@ public class RedundantNullCheckMethodTransformer extends MethodTransformer {
         InsnList insnList = methodNode.instructions;
         Frame<BasicValue>[] frames = analyze(
                 internalClassName, methodNode,
-                new BoxingInterpreter(insnList)
+                new BoxingInterpreter(insnList),
+                IS_NULL_CHECK
         );
+        if (frames == null) return false;
 
         List<AbstractInsnNode> insnsToOptimize = new ArrayList<AbstractInsnNode>();
 
@@ -48,7 +64,7 @@ public class RedundantNullCheckMethodTransformer extends MethodTransformer {
             Frame<BasicValue> frame = frames[i];
             AbstractInsnNode insn = insnList.get(i);
 
-            if ((insn.getOpcode() == Opcodes.IFNULL || insn.getOpcode() == Opcodes.IFNONNULL) &&
+            if (IS_NULL_CHECK.apply(insn) &&
                 frame != null && frame.getStack(frame.getStackSize() - 1) instanceof BoxedBasicValue) {
 
                 insnsToOptimize.add(insn);
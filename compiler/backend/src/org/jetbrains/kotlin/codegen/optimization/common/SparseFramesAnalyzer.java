@@ -0,0 +1,294 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.common;
+
+import com.google.common.base.Predicate;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.Type;
+import org.jetbrains.org.objectweb.asm.tree.*;
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame;
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter;
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the same frames as {@link org.jetbrains.org.objectweb.asm.tree.analysis.Analyzer} for monotone interpreters,
+ * but doesn't keep a frame for every instruction. While iterating to a fixed point, frames are kept only at the entries of basic blocks,
+ * and the result contains frames only for the instructions accepted by {@code framesNeeded} (others are null).
+ * So the memory needed is proportional to the number of blocks and requested instructions rather than to the size of the method.
+ *
+ * Subroutines (JSR/RET) are not supported, they are never generated by the compiler
+ */
+public class SparseFramesAnalyzer<V extends Value> {
+    private final String owner;
+    private final MethodNode method;
+    private final Interpreter<V> interpreter;
+    private final Predicate<AbstractInsnNode> framesNeeded;
+
+    private final InsnList insnList;
+    private final int insnCount;
+    private final boolean[] isBlockStart;
+    private final int storedFramesCount;
+
+    private List<TryCatchBlockNode>[] handlers;
+    private Frame<V>[] blockEntryFrames;
+    private int[] queue;
+    private boolean[] queued;
+    private int queueSize;
+
+    public SparseFramesAnalyzer(
+            @NotNull String owner,
+            @NotNull MethodNode method,
+            @NotNull Interpreter<V> interpreter,
+            @NotNull Predicate<AbstractInsnNode> framesNeeded
+    ) {
+        this.owner = owner;
+        this.method = method;
+        this.interpreter = interpreter;
+        this.framesNeeded = framesNeeded;
+        this.insnList = method.instructions;
+        this.insnCount = insnList.size();
+        this.isBlockStart = computeBlockStarts();
+
+        int count = 0;
+        for (int i = 0; i < insnCount; i++) {
+            if (isBlockStart[i]) count++;
+            if (framesNeeded.apply(insnList.get(i))) count++;
+        }
+        this.storedFramesCount = count;
+    }
+
+    /**
+     * Upper bound of the number of frames kept during and after the analysis
+     */
+    public int getStoredFramesCount() {
+        return storedFramesCount;
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public Frame<V>[] analyze() throws AnalyzerException {
+        Frame<V>[] result = (Frame<V>[]) new Frame<?>[insnCount];
+        if (insnCount == 0) return result;
+
+        handlers = (List<TryCatchBlockNode>[]) new List<?>[insnCount];
+        for (TryCatchBlockNode tcb : method.tryCatchBlocks) {
+            int begin = insnList.indexOf(tcb.start);
+            int end = insnList.indexOf(tcb.end);
+            for (int i = begin; i < end; i++) {
+                List<TryCatchBlockNode> insnHandlers = handlers[i];
+                if (insnHandlers == null) {
+                    insnHandlers = new ArrayList<TryCatchBlockNode>();
+                    handlers[i] = insnHandlers;
+                }
+                insnHandlers.add(tcb);
+            }
+        }
+
+        blockEntryFrames = (Frame<V>[]) new Frame<?>[insnCount];
+        queue = new int[insnCount];
+        queued = new boolean[insnCount];
+        queueSize = 0;
+
+        merge(0, createInitialFrame());
+
+        Frame<V> current = new Frame<V>(method.maxLocals, method.maxStack);
+        Frame<V> handler = new Frame<V>(method.maxLocals, method.maxStack);
+
+        while (queueSize > 0) {
+            int blockStart = queue[--queueSize];
+            queued[blockStart] = false;
+            current.init(blockEntryFrames[blockStart]);
+
+            for (int i = blockStart; ; i++) {
+                AbstractInsnNode insn = insnList.get(i);
+                try {
+                    if (framesNeeded.apply(insn)) {
+                        if (result[i] == null) {
+                            result[i] = new Frame<V>(current);
+                        }
+                        else {
+                            result[i].init(current);
+                        }
+                    }
+
+                    List<TryCatchBlockNode> insnHandlers = handlers[i];
+                    if (insnHandlers != null) {
+                        for (TryCatchBlockNode tcb : insnHandlers) {
+                            Type type = Type.getObjectType(tcb.type == null ? "java/lang/Throwable" : tcb.type);
+                            handler.init(current);
+                            handler.clearStack();
+                            handler.push(interpreter.newValue(type));
+                            merge(insnList.indexOf(tcb.handler), handler);
+                        }
+                    }
+
+                    if (!executeAndMergeJumps(insn, i, current)) break;
+                }
+                catch (AnalyzerException e) {
+                    throw new AnalyzerException(e.node, "Error at instruction " + i + ": " + e.getMessage(), e);
+                }
+                catch (RuntimeException e) {
+                    throw new AnalyzerException(insn, "Error at instruction " + i + ": " + e.getMessage(), e);
+                }
+
+                if (i + 1 == insnCount) {
+                    throw new AnalyzerException(null, "Execution can fall off end of the code");
+                }
+                if (isBlockStart[i + 1]) {
+                    merge(i + 1, current);
+                    break;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    // Returns true if the execution may continue to the next instruction
+    private boolean executeAndMergeJumps(@NotNull AbstractInsnNode insn, int index, @NotNull Frame<V> current) throws AnalyzerException {
+        int type = insn.getType();
+        if (type == AbstractInsnNode.LABEL || type == AbstractInsnNode.LINE || type == AbstractInsnNode.FRAME) {
+            return true;
+        }
+
+        int opcode = insn.getOpcode();
+        if (opcode == Opcodes.JSR || opcode == Opcodes.RET) {
+            throw new AnalyzerException(insn, "Subroutines are not supported");
+        }
+
+        current.execute(insn, interpreter);
+
+        if (insn instanceof JumpInsnNode) {
+            if (opcode != Opcodes.GOTO) {
+                if (index + 1 == insnCount) {
+                    throw new AnalyzerException(null, "Execution can fall off end of the code");
+                }
+                merge(index + 1, current);
+            }
+            merge(insnList.indexOf(((JumpInsnNode) insn).label), current);
+            return false;
+        }
+        if (insn instanceof LookupSwitchInsnNode) {
+            LookupSwitchInsnNode switchInsn = (LookupSwitchInsnNode) insn;
+            mergeSwitch(switchInsn.dflt, switchInsn.labels, current);
+            return false;
+        }
+        if (insn instanceof TableSwitchInsnNode) {
+            TableSwitchInsnNode switchInsn = (TableSwitchInsnNode) insn;
+            mergeSwitch(switchInsn.dflt, switchInsn.labels, current);
+            return false;
+        }
+
+        return opcode != Opcodes.ATHROW && (opcode < Opcodes.IRETURN || opcode > Opcodes.RETURN);
+    }
+
+    private void mergeSwitch(@NotNull LabelNode dflt, @NotNull List<LabelNode> labels, @NotNull Frame<V> current) throws AnalyzerException {
+        merge(insnList.indexOf(dflt), current);
+        for (LabelNode label : labels) {
+            merge(insnList.indexOf(label), current);
+        }
+    }
+
+    private void merge(int blockStart, @NotNull Frame<V> frame) throws AnalyzerException {
+        assert isBlockStart[blockStart] : "Control flow may only enter a block at its start: " + blockStart;
+
+        Frame<V> oldFrame = blockEntryFrames[blockStart];
+        boolean changed;
+        if (oldFrame == null) {
+            blockEntryFrames[blockStart] = new Frame<V>(frame);
+            changed = true;
+        }
+        else {
+            changed = oldFrame.merge(frame, interpreter);
+        }
+
+        if (changed && !queued[blockStart]) {
+            queued[blockStart] = true;
+            queue[queueSize++] = blockStart;
+        }
+    }
+
+    @NotNull
+    private Frame<V> createInitialFrame() {
+        Frame<V> frame = new Frame<V>(method.maxLocals, method.maxStack);
+        frame.setReturn(interpreter.newValue(Type.getReturnType(method.desc)));
+
+        int local = 0;
+        if ((method.access & Opcodes.ACC_STATIC) == 0) {
+            frame.setLocal(local++, interpreter.newValue(Type.getObjectType(owner)));
+        }
+        for (Type argumentType : Type.getArgumentTypes(method.desc)) {
+            frame.setLocal(local++, interpreter.newValue(argumentType));
+            if (argumentType.getSize() == 2) {
+                frame.setLocal(local++, interpreter.newValue(null));
+            }
+        }
+        while (local < method.maxLocals) {
+            frame.setLocal(local++, interpreter.newValue(null));
+        }
+
+        return frame;
+    }
+
+    @NotNull
+    private boolean[] computeBlockStarts() {
+        boolean[] result = new boolean[insnCount];
+        if (insnCount == 0) return result;
+
+        result[0] = true;
+        for (TryCatchBlockNode tcb : method.tryCatchBlocks) {
+            result[insnList.indexOf(tcb.handler)] = true;
+        }
+
+        for (int i = 0; i < insnCount; i++) {
+            AbstractInsnNode insn = insnList.get(i);
+            boolean endsBlock = true;
+
+            if (insn instanceof JumpInsnNode) {
+                result[insnList.indexOf(((JumpInsnNode) insn).label)] = true;
+            }
+            else if (insn instanceof LookupSwitchInsnNode) {
+                markLabels(result, ((LookupSwitchInsnNode) insn).dflt, ((LookupSwitchInsnNode) insn).labels);
+            }
+            else if (insn instanceof TableSwitchInsnNode) {
+                markLabels(result, ((TableSwitchInsnNode) insn).dflt, ((TableSwitchInsnNode) insn).labels);
+            }
+            else {
+                int opcode = insn.getOpcode();
+                endsBlock = opcode == Opcodes.ATHROW || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN);
+            }
+
+            if (endsBlock && i + 1 < insnCount) {
+                result[i + 1] = true;
+            }
+        }
+
+        return result;
+    }
+
+    private void markLabels(@NotNull boolean[] blockStarts, @NotNull LabelNode dflt, @NotNull List<LabelNode> labels) {
+        blockStarts[insnList.indexOf(dflt)] = true;
+        for (LabelNode label : labels) {
+            blockStarts[insnList.indexOf(label)] = true;
+        }
+    }
+}
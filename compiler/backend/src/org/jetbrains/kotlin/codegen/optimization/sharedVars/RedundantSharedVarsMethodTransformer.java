@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.sharedVars;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.Iterables;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.codegen.AsmUtil;
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.Type;
+import org.jetbrains.org.objectweb.asm.commons.InstructionAdapter;
+import org.jetbrains.org.objectweb.asm.tree.*;
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue;
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Replaces shared variables (kotlin.jvm.internal.Ref.*Ref) which don't escape the method with plain local variables.
+ * Variables captured by lambdas are shared, and after the lambdas are inlined the instances usually don't escape
+ */
+public class RedundantSharedVarsMethodTransformer extends MethodTransformer {
+    private static final Predicate<AbstractInsnNode> IS_SHARED_VAR_CREATION = new Predicate<AbstractInsnNode>() {
+        @Override
+        public boolean apply(AbstractInsnNode insn) {
+            return SharedVarsInterpreter.isSharedVarCreation(insn);
+        }
+    };
+
+    // Stack manipulations which move values without notifying the interpreter
+    private static final Predicate<AbstractInsnNode> IS_STACK_MANIPULATION = new Predicate<AbstractInsnNode>() {
+        @Override
+        public boolean apply(AbstractInsnNode insn) {
+            return getAffectedStackSize(insn.getOpcode()) > 0;
+        }
+    };
+
+    @Override
+    public void transform(@NotNull String internalClassName, @NotNull MethodNode node) {
+        if (!Iterables.any(Arrays.asList(node.instructions.toArray()), IS_SHARED_VAR_CREATION)) return;
+
+        SharedVarsInterpreter interpreter = new SharedVarsInterpreter();
+        Frame<BasicValue>[] frames = analyze(internalClassName, node, interpreter, IS_STACK_MANIPULATION);
+        if (frames == null) return;
+
+        markValuesMovedOnStackAsEscaping(node, frames);
+
+        Map<SharedVarBasicValue, Integer> newVariables = new LinkedHashMap<SharedVarBasicValue, Integer>();
+        for (SharedVarBasicValue value : interpreter.getSharedVarValues()) {
+            if (value.isSafeToRemove()) {
+                newVariables.put(value, node.maxLocals);
+                node.maxLocals += value.getElementType().getSize();
+            }
+        }
+
+        // Local variable table is adapted first because it needs indices of the instructions which are going to be removed
+        for (Map.Entry<SharedVarBasicValue, Integer> entry : newVariables.entrySet()) {
+            adaptLocalVariableTable(node, entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<SharedVarBasicValue, Integer> entry : newVariables.entrySet()) {
+            adaptInstructions(node, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void markValuesMovedOnStackAsEscaping(@NotNull MethodNode node, @NotNull Frame<BasicValue>[] frames) {
+        for (int i = 0; i < frames.length; i++) {
+            Frame<BasicValue> frame = frames[i];
+            if (frame == null) continue;
+
+            int affectedSize = getAffectedStackSize(node.instructions.get(i).getOpcode());
+            for (int index = frame.getStackSize() - 1; index >= 0 && affectedSize > 0; index--) {
+                BasicValue value = frame.getStack(index);
+                if (value instanceof SharedVarBasicValue) {
+                    ((SharedVarBasicValue) value).markAsEscaping();
+                }
+                affectedSize -= value.getSize();
+            }
+        }
+    }
+
+    // Size of the top of the stack affected by the instruction, in words
+    private static int getAffectedStackSize(int opcode) {
+        switch (opcode) {
+            case Opcodes.POP:
+                return 1;
+            case Opcodes.POP2:
+            case Opcodes.DUP_X1:
+                return 2;
+            case Opcodes.DUP_X2:
+            case Opcodes.DUP2_X1:
+                return 3;
+            case Opcodes.DUP2_X2:
+                return 4;
+            default:
+                return 0;
+        }
+    }
+
+    private static void adaptLocalVariableTable(@NotNull MethodNode node, @NotNull SharedVarBasicValue value, int newIndex) {
+        InsnList insns = node.instructions;
+        String refDescriptor = value.getType().getDescriptor();
+
+        for (LocalVariableNode localVariable : node.localVariables) {
+            if (!localVariable.desc.equals(refDescriptor)) continue;
+
+            int start = insns.indexOf(localVariable.start);
+            int end = insns.indexOf(localVariable.end);
+            for (AbstractInsnNode insn : value.getAssociatedInsns()) {
+                if (!(insn instanceof VarInsnNode) || ((VarInsnNode) insn).var != localVariable.index) continue;
+
+                int index = insns.indexOf(insn);
+                if (start <= index && index < end) {
+                    localVariable.index = newIndex;
+                    localVariable.desc = value.getElementType().getDescriptor();
+                    localVariable.signature = null;
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void adaptInstructions(@NotNull MethodNode node, @NotNull SharedVarBasicValue value, int newIndex) {
+        InsnList insns = node.instructions;
+        Type elementType = value.getElementType();
+
+        // Instance creation becomes initialization of the variable with the default value
+        MethodNode initialization = new MethodNode(Opcodes.ASM5);
+        InstructionAdapter adapter = new InstructionAdapter(initialization);
+        AsmUtil.pushDefaultValueOnStack(elementType, adapter);
+        adapter.store(newIndex, elementType);
+        insns.insertBefore(value.getNewInsn(), initialization.instructions);
+        insns.remove(value.getNewInsn());
+
+        for (AbstractInsnNode insn : value.getAssociatedInsns()) {
+            switch (insn.getOpcode()) {
+                case Opcodes.GETFIELD:
+                    insns.set(insn, new VarInsnNode(elementType.getOpcode(Opcodes.ILOAD), newIndex));
+                    break;
+                case Opcodes.PUTFIELD:
+                    insns.set(insn, new VarInsnNode(elementType.getOpcode(Opcodes.ISTORE), newIndex));
+                    break;
+                default:
+                    // Loads, stores and duplicates of the instance, constructor call
+                    insns.remove(insn);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.sharedVars;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.org.objectweb.asm.Type;
+import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode;
+import org.jetbrains.org.objectweb.asm.tree.TypeInsnNode;
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Instance of kotlin.jvm.internal.Ref.*Ref created by a particular NEW instruction
+ */
+class SharedVarBasicValue extends BasicValue {
+    private final TypeInsnNode newInsn;
+    private final Type elementType;
+    private final Set<AbstractInsnNode> associatedInsns = new LinkedHashSet<AbstractInsnNode>();
+    private boolean isInitialized = false;
+    private boolean isSafeToRemove = true;
+
+    public SharedVarBasicValue(@NotNull TypeInsnNode newInsn, @NotNull Type elementType) {
+        super(Type.getObjectType(newInsn.desc));
+        this.newInsn = newInsn;
+        this.elementType = elementType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o;
+    }
+
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    @NotNull
+    public TypeInsnNode getNewInsn() {
+        return newInsn;
+    }
+
+    @NotNull
+    public Type getElementType() {
+        return elementType;
+    }
+
+    public void addInsn(@NotNull AbstractInsnNode insn) {
+        associatedInsns.add(insn);
+    }
+
+    @NotNull
+    public List<AbstractInsnNode> getAssociatedInsns() {
+        return new ArrayList<AbstractInsnNode>(associatedInsns);
+    }
+
+    public void markAsInitialized() {
+        isInitialized = true;
+    }
+
+    public void markAsEscaping() {
+        isSafeToRemove = false;
+    }
+
+    public boolean isSafeToRemove() {
+        return isSafeToRemove && isInitialized;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.codegen.optimization.sharedVars;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.codegen.StackValue;
+import org.jetbrains.kotlin.codegen.optimization.common.OptimizationBasicInterpreter;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.Type;
+import org.jetbrains.org.objectweb.asm.tree.*;
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.jetbrains.org.objectweb.asm.tree.analysis.BasicValue;
+
+import java.util.*;
+
+import static org.jetbrains.kotlin.resolve.jvm.AsmTypes.OBJECT_REF_TYPE;
+import static org.jetbrains.kotlin.resolve.jvm.AsmTypes.OBJECT_TYPE;
+
+/**
+ * Tracks instances of shared variables (kotlin.jvm.internal.Ref.*Ref) through the method.
+ * An instance escapes if it's used in any way other than loading/storing it from/to local variables, duplicating it on the stack,
+ * calling its constructor and reading/writing its 'element' field, or if it's merged with another value.
+ *
+ * All instances created by the same NEW instruction are represented by one value. It's fine for the code generated by the compiler:
+ * a variable holding an instance is never read after the instruction creates another one, unless the variable is stored again
+ */
+class SharedVarsInterpreter extends OptimizationBasicInterpreter {
+    private static final String ELEMENT_FIELD_NAME = "element";
+
+    private static final Map<String, Type> ELEMENT_TYPES = new HashMap<String, Type>();
+
+    static {
+        for (Type type : new Type[] {
+                Type.BOOLEAN_TYPE, Type.CHAR_TYPE, Type.BYTE_TYPE, Type.SHORT_TYPE,
+                Type.INT_TYPE, Type.LONG_TYPE, Type.FLOAT_TYPE, Type.DOUBLE_TYPE
+        }) {
+            ELEMENT_TYPES.put(StackValue.sharedTypeForType(type).getInternalName(), type);
+        }
+        ELEMENT_TYPES.put(OBJECT_REF_TYPE.getInternalName(), OBJECT_TYPE);
+    }
+
+    private final Map<AbstractInsnNode, SharedVarBasicValue> sharedVars = new LinkedHashMap<AbstractInsnNode, SharedVarBasicValue>();
+
+    public static boolean isSharedVarCreation(@NotNull AbstractInsnNode insn) {
+        return insn.getOpcode() == Opcodes.NEW && ELEMENT_TYPES.containsKey(((TypeInsnNode) insn).desc);
+    }
+
+    @NotNull
+    public Collection<SharedVarBasicValue> getSharedVarValues() {
+        return sharedVars.values();
+    }
+
+    @Override
+    public BasicValue newOperation(@NotNull AbstractInsnNode insn) throws AnalyzerException {
+        if (isSharedVarCreation(insn)) {
+            SharedVarBasicValue value = sharedVars.get(insn);
+            if (value == null) {
+                TypeInsnNode newInsn = (TypeInsnNode) insn;
+                value = new SharedVarBasicValue(newInsn, ELEMENT_TYPES.get(newInsn.desc));
+                sharedVars.put(insn, value);
+            }
+            return value;
+        }
+
+        return super.newOperation(insn);
+    }
+
+    @Override
+    public BasicValue copyOperation(@NotNull AbstractInsnNode insn, @NotNull BasicValue value) throws AnalyzerException {
+        if (value instanceof SharedVarBasicValue) {
+            SharedVarBasicValue sharedVar = (SharedVarBasicValue) value;
+            switch (insn.getOpcode()) {
+                case Opcodes.ASTORE:
+                case Opcodes.ALOAD:
+                case Opcodes.DUP:
+                    sharedVar.addInsn(insn);
+                    break;
+                default:
+                    sharedVar.markAsEscaping();
+            }
+            return value;
+        }
+
+        return super.copyOperation(insn, value);
+    }
+
+    @Override
+    public BasicValue unaryOperation(@NotNull AbstractInsnNode insn, @NotNull BasicValue value) throws AnalyzerException {
+        if (value instanceof SharedVarBasicValue) {
+            if (insn.getOpcode() == Opcodes.GETFIELD && isElementField(insn, (SharedVarBasicValue) value)) {
+                ((SharedVarBasicValue) value).addInsn(insn);
+            }
+            else {
+                ((SharedVarBasicValue) value).markAsEscaping();
+            }
+        }
+
+        return super.unaryOperation(insn, value);
+    }
+
+    @Override
+    public BasicValue binaryOperation(
+            @NotNull AbstractInsnNode insn,
+            @NotNull BasicValue value1,
+            @NotNull BasicValue value2
+    ) throws AnalyzerException {
+        if (value1 instanceof SharedVarBasicValue) {
+            if (insn.getOpcode() == Opcodes.PUTFIELD && isElementField(insn, (SharedVarBasicValue) value1)) {
+                ((SharedVarBasicValue) value1).addInsn(insn);
+            }
+            else {
+                ((SharedVarBasicValue) value1).markAsEscaping();
+            }
+        }
+        markAsEscaping(value2);
+
+        return super.binaryOperation(insn, value1, value2);
+    }
+
+    @Override
+    public BasicValue ternaryOperation(
+            @NotNull AbstractInsnNode insn,
+            @NotNull BasicValue value1, @NotNull BasicValue value2, @NotNull BasicValue value3
+    ) throws AnalyzerException {
+        markAsEscaping(value1);
+        markAsEscaping(value2);
+        markAsEscaping(value3);
+
+        return super.ternaryOperation(insn, value1, value2, value3);
+    }
+
+    @Override
+    @Nullable
+    public BasicValue naryOperation(@NotNull AbstractInsnNode insn, @NotNull List<? extends BasicValue> values) throws AnalyzerException {
+        for (int i = 0; i < values.size(); i++) {
+            BasicValue value = values.get(i);
+            if (i == 0 && value instanceof SharedVarBasicValue && isConstructorCall(insn, (SharedVarBasicValue) value)) {
+                ((SharedVarBasicValue) value).addInsn(insn);
+                ((SharedVarBasicValue) value).markAsInitialized();
+            }
+            else {
+                markAsEscaping(value);
+            }
+        }
+
+        return super.naryOperation(insn, values);
+    }
+
+    @Override
+    public void returnOperation(
+            @NotNull AbstractInsnNode insn, @NotNull BasicValue value, @NotNull BasicValue expected
+    ) throws AnalyzerException {
+        markAsEscaping(value);
+        super.returnOperation(insn, value, expected);
+    }
+
+    @Override
+    @NotNull
+    public BasicValue merge(@NotNull BasicValue v, @NotNull BasicValue w) {
+        if (v == w) return v;
+
+        if (v instanceof SharedVarBasicValue || w instanceof SharedVarBasicValue) {
+            // A variable which is not initialized on some path can't be read after the merge, so no need to give up on the instance
+            if (v == BasicValue.UNINITIALIZED_VALUE || w == BasicValue.UNINITIALIZED_VALUE) {
+                return BasicValue.UNINITIALIZED_VALUE;
+            }
+            markAsEscaping(v);
+            markAsEscaping(w);
+        }
+
+        return super.merge(v, w);
+    }
+
+    private static void markAsEscaping(@Nullable BasicValue value) {
+        if (value instanceof SharedVarBasicValue) {
+            ((SharedVarBasicValue) value).markAsEscaping();
+        }
+    }
+
+    private static boolean isElementField(@NotNull AbstractInsnNode insn, @NotNull SharedVarBasicValue value) {
+        FieldInsnNode fieldInsn = (FieldInsnNode) insn;
+        return fieldInsn.owner.equals(value.getType().getInternalName()) && fieldInsn.name.equals(ELEMENT_FIELD_NAME);
+    }
+
+    private static boolean isConstructorCall(@NotNull AbstractInsnNode insn, @NotNull SharedVarBasicValue value) {
+        if (insn.getOpcode() != Opcodes.INVOKESPECIAL) return false;
+
+        MethodInsnNode methodInsn = (MethodInsnNode) insn;
+        return methodInsn.owner.equals(value.getType().getInternalName()) &&
+               methodInsn.name.equals("<init>") &&
+               methodInsn.desc.equals("()V");
+    }
+}
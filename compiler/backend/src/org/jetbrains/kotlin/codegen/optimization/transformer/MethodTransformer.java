@@ -16,37 +16,46 @@
 
 package org.jetbrains.kotlin.codegen.optimization.transformer;
 
+import com.google.common.base.Predicate;
 import kotlin.jvm.KotlinSignature;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.codegen.optimization.common.SparseFramesAnalyzer;
+import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode;
 import org.jetbrains.org.objectweb.asm.tree.MethodNode;
-import org.jetbrains.org.objectweb.asm.tree.analysis.*;
+import org.jetbrains.org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.jetbrains.org.objectweb.asm.tree.analysis.Frame;
+import org.jetbrains.org.objectweb.asm.tree.analysis.Interpreter;
+import org.jetbrains.org.objectweb.asm.tree.analysis.Value;
 
 public abstract class MethodTransformer {
+    private static final int MEMORY_LIMIT_BY_METHOD_MB = 50;
 
-    @KotlinSignature("fun <V : Value?> runAnalyzer(analyzer: Analyzer<V>, internalClassName: String, node: MethodNode): Array<Frame<V>?>")
-    @NotNull
-    protected static <V extends Value> Frame<V>[] runAnalyzer(
-            @NotNull Analyzer<V> analyzer,
+    /**
+     * Returns frames only for the instructions accepted by {@code framesNeeded}, or null if the frames would take too much memory.
+     * Frames of other instructions are null, as well as frames of unreachable instructions
+     */
+    @KotlinSignature("fun <V : Value?> analyze(internalClassName: String, node: MethodNode, interpreter: Interpreter<V>, " +
+                     "framesNeeded: Predicate<AbstractInsnNode>): Array<Frame<V>?>?")
+    @Nullable
+    protected static <V extends Value> Frame<V>[] analyze(
             @NotNull String internalClassName,
-            @NotNull MethodNode node
+            @NotNull MethodNode node,
+            @NotNull Interpreter<V> interpreter,
+            @NotNull Predicate<AbstractInsnNode> framesNeeded
     ) {
+        SparseFramesAnalyzer<V> analyzer = new SparseFramesAnalyzer<V>(internalClassName, node, interpreter, framesNeeded);
+
+        long totalFramesSizeMb = (long) analyzer.getStoredFramesCount() * (node.maxLocals + node.maxStack) / (1024 * 1024);
+        if (totalFramesSizeMb >= MEMORY_LIMIT_BY_METHOD_MB) return null;
+
         try {
-            return analyzer.analyze(internalClassName, node);
+            return analyzer.analyze();
         }
         catch (AnalyzerException e) {
             throw new RuntimeException(e);
         }
     }
 
-    @KotlinSignature("fun <V : Value?> analyze(internalClassName: String, node: MethodNode, interpreter: Interpreter<V>): Array<Frame<V>?>")
-    @NotNull
-    protected static <V extends Value> Frame<V>[] analyze(
-            @NotNull String internalClassName,
-            @NotNull MethodNode node,
-            @NotNull Interpreter<V> interpreter
-    ) {
-        return runAnalyzer(new Analyzer<V>(interpreter), internalClassName, node);
-    }
-
     abstract public void transform(@NotNull String internalClassName, @NotNull MethodNode methodNode);
 }
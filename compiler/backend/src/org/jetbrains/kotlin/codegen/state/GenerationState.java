@@ -21,6 +21,8 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.codegen.*;
 import org.jetbrains.kotlin.codegen.binding.CodegenBinding;
+import org.jetbrains.kotlin.codegen.inline.InlineMethodNodeCache;
+import org.jetbrains.kotlin.codegen.inline.InlinedSingletonCopies;
 import org.jetbrains.kotlin.codegen.intrinsics.IntrinsicMethods;
 import org.jetbrains.kotlin.codegen.optimization.OptimizationClassBuilderFactory;
 import org.jetbrains.kotlin.codegen.when.MappingsClassesForWhenByEnum;
@@ -88,6 +90,12 @@ public class GenerationState {
     @NotNull
     private final MappingsClassesForWhenByEnum mappingsClassesForWhenByEnum = new MappingsClassesForWhenByEnum(this);
 
+    @NotNull
+    private final InlineMethodNodeCache inlineMethodNodeCache = new InlineMethodNodeCache();
+
+    @NotNull
+    private final InlinedSingletonCopies inlinedSingletonCopies = new InlinedSingletonCopies();
+
     @NotNull
     private final BindingTrace bindingTrace;
 
@@ -119,6 +127,8 @@ public class GenerationState {
     @Nullable
     private final File outDirectory; // TODO: temporary hack, see JetTypeMapperWithOutDirectory state for details
 
+    private final int codegenThreads;
+
     public GenerationState(
             @NotNull Project project,
             @NotNull ClassBuilderFactory builderFactory,
@@ -147,6 +157,33 @@ public class GenerationState {
             @NotNull DiagnosticSink diagnostics,
             @Nullable File outDirectory
     ) {
+        this(project, builderFactory, progress, module, bindingContext, files, disableCallAssertions, disableParamAssertions,
+             generateClassFilter, disableInline, disableOptimization, packagesWithRemovedFiles, moduleId, diagnostics, outDirectory, 1);
+    }
+
+    /**
+     * @param codegenThreads if greater than 1, packages will be generated in parallel on that number of threads.
+     *                       The binding context and the diagnostic sink should be thread-safe in that case
+     */
+    public GenerationState(
+            @NotNull Project project,
+            @NotNull ClassBuilderFactory builderFactory,
+            @NotNull Progress progress,
+            @NotNull ModuleDescriptor module,
+            @NotNull BindingContext bindingContext,
+            @NotNull List<JetFile> files,
+            boolean disableCallAssertions,
+            boolean disableParamAssertions,
+            GenerateClassFilter generateClassFilter,
+            boolean disableInline,
+            boolean disableOptimization,
+            @Nullable Collection<FqName> packagesWithRemovedFiles,
+            @Nullable String moduleId,
+            @NotNull DiagnosticSink diagnostics,
+            @Nullable File outDirectory,
+            int codegenThreads
+    ) {
+        assert codegenThreads > 0 : "Number of codegen threads should be positive: " + codegenThreads;
         this.project = project;
         this.progress = progress;
         this.module = module;
@@ -156,7 +193,10 @@ public class GenerationState {
         this.classBuilderMode = builderFactory.getClassBuilderMode();
         this.disableInline = disableInline;
 
-        this.bindingTrace = new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
+        this.codegenThreads = codegenThreads;
+        this.bindingTrace = codegenThreads > 1
+                            ? DelegatingBindingTrace.createThreadSafe(bindingContext, "trace in GenerationState")
+                            : new DelegatingBindingTrace(bindingContext, "trace in GenerationState");
         this.bindingContext = bindingTrace.getBindingContext();
 
         this.outDirectory = outDirectory;
@@ -234,6 +274,16 @@ public class GenerationState {
         return mappingsClassesForWhenByEnum;
     }
 
+    @NotNull
+    public InlineMethodNodeCache getInlineMethodNodeCache() {
+        return inlineMethodNodeCache;
+    }
+
+    @NotNull
+    public InlinedSingletonCopies getInlinedSingletonCopies() {
+        return inlinedSingletonCopies;
+    }
+
     public boolean isCallAssertionsEnabled() {
         return !disableCallAssertions;
     }
@@ -300,4 +350,8 @@ public class GenerationState {
     public File getOutDirectory() {
         return outDirectory;
     }
+
+    public int getCodegenThreads() {
+        return codegenThreads;
+    }
 }
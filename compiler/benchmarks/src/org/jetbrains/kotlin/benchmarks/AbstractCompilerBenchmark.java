@@ -0,0 +1,123 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.CharsetToolkit;
+import com.intellij.psi.PsiFileFactory;
+import com.intellij.psi.impl.PsiFileFactoryImpl;
+import com.intellij.testFramework.LightVirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.jvm.JVMConfigurationKeys;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.idea.JetLanguage;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.utils.PathUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for the compiler benchmarks: sets up a production-like environment (JDK on the class path, no runtime)
+ * and loads a fixed set of sources from compiler/testData, so that numbers are comparable between revisions.
+ *
+ * Benchmarks are run from the project root; a different test data location can be given with -Dkotlin.benchmarks.testData
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public abstract class AbstractCompilerBenchmark {
+    private static final String TEST_DATA_PATH = System.getProperty("kotlin.benchmarks.testData", "compiler/testData/codegen/box");
+
+    // Every file declares a top-level box(), so each one is analyzed and compiled on its own
+    private static final String[] SOURCES = {
+            "arrays/kt2997.kt",
+            "builtinStubMethods/ListWithAllImplementations.kt",
+            "closures/closureInsideClosure/varAsFunInsideLocalFun.kt",
+            "controlStructures/forUserType.kt",
+            "defaultArguments/function/memberFunctionManyArgs.kt",
+            "finally/notChainCatch.kt",
+            "primitiveTypes/rangeTo.kt",
+            "strings/stringBuilderAppend.kt",
+            "vararg/kt6192.kt"
+    };
+
+    private Disposable disposable;
+    protected JetCoreEnvironment environment;
+    protected List<String> sourceNames;
+    protected List<String> sourceTexts;
+
+    @Setup(Level.Trial)
+    public void setUpEnvironment() throws IOException {
+        disposable = Disposer.newDisposable();
+
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE);
+        configuration.addAll(JVMConfigurationKeys.CLASSPATH_KEY, PathUtil.getJdkClassesRoots());
+        environment = JetCoreEnvironment.createForProduction(disposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+
+        sourceNames = new ArrayList<String>(SOURCES.length);
+        sourceTexts = new ArrayList<String>(SOURCES.length);
+        for (String path : SOURCES) {
+            File file = new File(TEST_DATA_PATH, path);
+            sourceNames.add(file.getName());
+            sourceTexts.add(FileUtil.loadFile(file, CharsetToolkit.UTF8, true));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownEnvironment() {
+        Disposer.dispose(disposable);
+    }
+
+    @NotNull
+    protected Project getProject() {
+        return environment.getProject();
+    }
+
+    @NotNull
+    protected List<JetFile> createFiles() {
+        List<JetFile> result = new ArrayList<JetFile>(sourceTexts.size());
+        for (int i = 0; i < sourceTexts.size(); i++) {
+            result.add(createFile(sourceNames.get(i), sourceTexts.get(i)));
+        }
+        return result;
+    }
+
+    @NotNull
+    protected JetFile createFile(@NotNull String name, @NotNull String text) {
+        LightVirtualFile virtualFile = new LightVirtualFile(name, JetLanguage.INSTANCE, text);
+        virtualFile.setCharset(CharsetToolkit.UTF8_CHARSET);
+        PsiFileFactoryImpl factory = (PsiFileFactoryImpl) PsiFileFactory.getInstance(getProject());
+        //noinspection ConstantConditions
+        return (JetFile) factory.trySetupPsiForFile(virtualFile, JetLanguage.INSTANCE, true, false);
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.codegen.ClassBuilderFactories;
+import org.jetbrains.kotlin.codegen.CompilationErrorHandler;
+import org.jetbrains.kotlin.codegen.KotlinCodegenFacade;
+import org.jetbrains.kotlin.codegen.state.GenerationState;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.AnalyzingUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Generates bytecode (ExpressionCodegen and the rest of the backend) for the sources, which are analyzed once per trial
+ */
+public class CodegenBenchmark extends AbstractCompilerBenchmark {
+    private List<JetFile> files;
+    private List<AnalysisResult> analysisResults;
+
+    @Setup(Level.Trial)
+    public void analyzeFiles() {
+        files = createFiles();
+        analysisResults = new ArrayList<AnalysisResult>(files.size());
+        for (JetFile file : files) {
+            AnalysisResult result = ResolveBenchmark.analyze(file);
+            AnalyzingUtils.throwExceptionOnErrors(result.getBindingContext());
+            analysisResults.add(result);
+        }
+    }
+
+    @Benchmark
+    public void generate(Blackhole blackhole) {
+        for (int i = 0; i < files.size(); i++) {
+            AnalysisResult result = analysisResults.get(i);
+            GenerationState state = new GenerationState(
+                    getProject(), ClassBuilderFactories.BINARIES, result.getModuleDescriptor(), result.getBindingContext(),
+                    Collections.singletonList(files.get(i))
+            );
+            KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+            blackhole.consume(state.getFactory().asList());
+            state.destroy();
+        }
+    }
+}
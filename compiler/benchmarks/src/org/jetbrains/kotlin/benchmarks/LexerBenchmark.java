@@ -0,0 +1,38 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import org.jetbrains.kotlin.lexer.JetLexer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Tokenizes the sources with the generated _JetLexer (through its FlexAdapter)
+ */
+public class LexerBenchmark extends AbstractCompilerBenchmark {
+    @Benchmark
+    public void lex(Blackhole blackhole) {
+        JetLexer lexer = new JetLexer();
+        for (String text : sourceTexts) {
+            lexer.start(text);
+            while (lexer.getTokenType() != null) {
+                blackhole.consume(lexer.getTokenType());
+                lexer.advance();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiRecursiveElementWalkingVisitor;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds the PSI of the sources with JetParsing. The tree is built lazily, so each file is walked to force it
+ */
+public class ParserBenchmark extends AbstractCompilerBenchmark {
+    @Benchmark
+    public void parse(final Blackhole blackhole) {
+        for (int i = 0; i < sourceTexts.size(); i++) {
+            JetFile file = createFile(sourceNames.get(i), sourceTexts.get(i));
+            file.accept(new PsiRecursiveElementWalkingVisitor() {
+                @Override
+                public void visitElement(PsiElement element) {
+                    blackhole.consume(element);
+                    super.visitElement(element);
+                }
+            });
+        }
+    }
+}
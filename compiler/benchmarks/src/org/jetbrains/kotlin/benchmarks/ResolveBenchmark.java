@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
+import org.jetbrains.kotlin.cli.jvm.compiler.CliLightClassGenerationSupport;
+import org.jetbrains.kotlin.context.ContextPackage;
+import org.jetbrains.kotlin.descriptors.impl.ModuleDescriptorImpl;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Runs the full analysis (LazyTopDownAnalyzer with body resolution) of each source in a fresh module.
+ * Files are parsed once per iteration beforehand, so that only resolution is measured
+ */
+public class ResolveBenchmark extends AbstractCompilerBenchmark {
+    private List<JetFile> files;
+
+    @Setup(Level.Invocation)
+    public void parseFiles() {
+        files = createFiles();
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        for (JetFile file : files) {
+            blackhole.consume(analyze(file).getBindingContext());
+        }
+    }
+
+    @NotNull
+    static AnalysisResult analyze(@NotNull JetFile file) {
+        ModuleDescriptorImpl module = TopDownAnalyzerFacadeForJVM.createJavaModule("<benchmark>");
+        module.addDependencyOnModule(module);
+        module.addDependencyOnModule(KotlinBuiltIns.getInstance().getBuiltInsModule());
+        module.seal();
+
+        return TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationWithCustomContext(
+                file.getProject(), ContextPackage.GlobalContext(), Collections.singletonList(file),
+                new CliLightClassGenerationSupport.CliBindingTrace(), Predicates.<PsiFile>alwaysTrue(), module, null, null);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
+import org.jetbrains.kotlin.descriptors.ClassDescriptor;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
+import org.jetbrains.kotlin.serialization.DescriptorSerializer;
+import org.jetbrains.kotlin.serialization.ProtoBuf;
+import org.jetbrains.kotlin.serialization.SerializerExtension;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializes the built-in classes with DescriptorSerializer and decodes the resulting ProtoBuf messages
+ */
+public class SerializationBenchmark extends AbstractCompilerBenchmark {
+    private List<ClassDescriptor> classes;
+    private List<byte[]> serializedClasses;
+
+    @Setup(Level.Trial)
+    public void collectClasses() {
+        classes = new ArrayList<ClassDescriptor>();
+        for (DeclarationDescriptor descriptor : KotlinBuiltIns.getInstance().getBuiltInsPackageScope().getAllDescriptors()) {
+            if (descriptor instanceof ClassDescriptor) {
+                classes.add((ClassDescriptor) descriptor);
+            }
+        }
+
+        serializedClasses = new ArrayList<byte[]>(classes.size());
+        for (ClassDescriptor classDescriptor : classes) {
+            serializedClasses.add(serialize(classDescriptor).toByteArray());
+        }
+    }
+
+    private static ProtoBuf.Class serialize(ClassDescriptor classDescriptor) {
+        DescriptorSerializer serializer = DescriptorSerializer.createTopLevel(new SerializerExtension() {});
+        return serializer.classProto(classDescriptor).build();
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (ClassDescriptor classDescriptor : classes) {
+            blackhole.consume(serialize(classDescriptor));
+        }
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) throws InvalidProtocolBufferException {
+        for (byte[] bytes : serializedClasses) {
+            blackhole.consume(ProtoBuf.Class.parseFrom(bytes));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.builtins.KotlinBuiltIns;
+import org.jetbrains.kotlin.descriptors.ClassDescriptor;
+import org.jetbrains.kotlin.types.JetType;
+import org.jetbrains.kotlin.types.TypeUtils;
+import org.jetbrains.kotlin.types.checker.JetTypeChecker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks subtyping (TypeCheckingProcedure) between all pairs of a fixed set of generic and non-generic built-in types
+ */
+public class SubtypingBenchmark extends AbstractCompilerBenchmark {
+    private List<JetType> types;
+
+    @Setup(Level.Trial)
+    public void createTypes() {
+        KotlinBuiltIns builtIns = KotlinBuiltIns.getInstance();
+        JetType intType = builtIns.getIntType();
+        JetType stringType = builtIns.getStringType();
+        JetType numberType = builtIns.getNumber().getDefaultType();
+        JetType anyType = builtIns.getNullableAnyType();
+
+        types = new ArrayList<JetType>();
+        types.add(intType);
+        types.add(stringType);
+        types.add(numberType);
+        types.add(anyType);
+        types.add(builtIns.getNothingType());
+        types.add(generic(builtIns.getComparable(), intType));
+        types.add(generic(builtIns.getComparable(), stringType));
+        for (JetType argument : new JetType[] {intType, numberType, anyType}) {
+            types.add(generic(builtIns.getCollection(), argument));
+            types.add(generic(builtIns.getList(), argument));
+            types.add(generic(builtIns.getMutableList(), argument));
+            types.add(generic(builtIns.getList(), generic(builtIns.getList(), argument)));
+        }
+    }
+
+    @NotNull
+    private static JetType generic(@NotNull ClassDescriptor classDescriptor, @NotNull JetType argument) {
+        return TypeUtils.substituteParameters(classDescriptor, Collections.singletonList(argument));
+    }
+
+    @Benchmark
+    public void isSubtypeOf(Blackhole blackhole) {
+        JetTypeChecker checker = JetTypeChecker.DEFAULT;
+        for (JetType subtype : types) {
+            for (JetType supertype : types) {
+                blackhole.consume(checker.isSubtypeOf(subtype, supertype));
+            }
+        }
+    }
+}
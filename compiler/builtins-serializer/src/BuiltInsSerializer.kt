@@ -25,6 +25,8 @@ import org.jetbrains.kotlin.descriptors.*
 import org.jetbrains.kotlin.name.Name
 import java.io.ByteArrayOutputStream
 import org.jetbrains.kotlin.builtins.BuiltInsSerializationUtil
+import org.jetbrains.kotlin.builtins.BuiltInsImage
+import java.util.LinkedHashMap
 import com.intellij.openapi.Disposable
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys
 import org.jetbrains.kotlin.config.CommonConfigurationKeys
@@ -157,29 +159,41 @@ public class BuiltInsSerializer(private val dependOnOldBuiltIns: Boolean) {
 
         val serializer = DescriptorSerializer.createTopLevel(BuiltInsSerializerExtension)
 
+        // All files of the package are also written to a single image, which is faster to load.
+        // The image only repeats these files, so it isn't counted in the totals
+        val imageFiles = LinkedHashMap<String, ByteArray>()
+        fun writeFile(fileName: String, stream: ByteArrayOutputStream) {
+            totalSize += stream.size()
+            totalFiles++
+            write(destDir, fileName, stream)
+            imageFiles[fileName] = stream.toByteArray()
+        }
+
         val classifierDescriptors = DescriptorSerializer.sort(packageView.getMemberScope().getDescriptors(DescriptorKindFilter.CLASSIFIERS))
 
         serializeClasses(classifierDescriptors, serializer) {
             (classDescriptor, classProto) ->
             val stream = ByteArrayOutputStream()
             classProto.writeTo(stream)
-            write(destDir, getFileName(classDescriptor), stream)
+            writeFile(getFileName(classDescriptor), stream)
         }
 
         val packageStream = ByteArrayOutputStream()
         val fragments = module.getPackageFragmentProvider().getPackageFragments(fqName)
         val packageProto = serializer.packageProto(fragments).build() ?: error("Package fragments not serialized: $fragments")
         packageProto.writeTo(packageStream)
-        write(destDir, BuiltInsSerializationUtil.getPackageFilePath(fqName), packageStream)
+        writeFile(BuiltInsSerializationUtil.getPackageFilePath(fqName), packageStream)
 
         val nameStream = ByteArrayOutputStream()
         NameSerializationUtil.serializeStringTable(nameStream, serializer.getStringTable())
-        write(destDir, BuiltInsSerializationUtil.getStringTableFilePath(fqName), nameStream)
+        writeFile(BuiltInsSerializationUtil.getStringTableFilePath(fqName), nameStream)
+
+        val imageStream = ByteArrayOutputStream()
+        BuiltInsImage.write(imageStream, imageFiles)
+        write(destDir, BuiltInsSerializationUtil.getImageFilePath(fqName), imageStream)
     }
 
     private fun write(destDir: File, fileName: String, stream: ByteArrayOutputStream) {
-        totalSize += stream.size()
-        totalFiles++
         val file = File(destDir, fileName)
         file.getParentFile()?.mkdirs()
         file.writeBytes(stream.toByteArray())
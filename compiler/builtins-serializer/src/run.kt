@@ -29,7 +29,8 @@ Usage: ... <destination dir> (<source dir>)+
 
 Analyzes Kotlin sources found in the given source directories and serializes
 found top-level declarations to <destination dir> (files such as
-.kotlin_class_names, .kotlin_name_table, .kotlin_package, *.kotlin_class)"""
+.kotlin_class_names, .kotlin_name_table, .kotlin_package, *.kotlin_class),
+and all of them into a single .kotlin_builtins image per package"""
         )
         return
     }
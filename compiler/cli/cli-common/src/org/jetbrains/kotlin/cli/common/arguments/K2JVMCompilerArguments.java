@@ -66,6 +66,25 @@ public class K2JVMCompilerArguments extends CommonCompilerArguments {
     @Argument(value = "Xno-optimize", description = "Disable optimizations")
     public boolean noOptimize;
 
+    @Argument(value = "Xresolve-threads", description = "Resolve function bodies in parallel on the given number of threads")
+    @ValueDescription("<count>")
+    public String resolveThreads;
+
+    @Argument(value = "Xcodegen-threads", description = "Generate class files for different packages in parallel on the given number of threads")
+    @ValueDescription("<count>")
+    public String codegenThreads;
+
+    @Argument(value = "Xdiscard-bodies", description = "Save memory: write classes and drop analysis results of each package as soon as it's compiled")
+    public boolean discardBodies;
+
+    @Argument(value = "Xreport-perf", description = "Write time, CPU time and allocation of each compiler phase to the given JSON file")
+    @ValueDescription("<path>")
+    public String reportPerf;
+
+    @Argument(value = "Xperf-trace", description = "Write compiler phases to the given file in Chrome trace format (chrome://tracing)")
+    @ValueDescription("<path>")
+    public String perfTrace;
+
     @Override
     @NotNull
     public String executableScriptFileName() {
@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.cli.common.output.outputUtils
 
+import org.jetbrains.kotlin.backend.common.output.OutputFile
 import org.jetbrains.kotlin.backend.common.output.OutputFileCollection
 import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation
 import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil
@@ -25,22 +26,40 @@ import java.io.File
 import com.intellij.openapi.util.io.FileUtil
 
 public fun OutputFileCollection.writeAll(outputDir: File, report: (sources: List<File>, output: File) -> Unit) {
+    writeAll(outputDir, report, WRITTEN_NOTHING)
+}
+
+/**
+ * [written] is called right after each file is written, e.g. to let the collection release the file's contents
+ */
+public fun OutputFileCollection.writeAll(
+        outputDir: File,
+        report: (sources: List<File>, output: File) -> Unit,
+        written: (OutputFile) -> Unit
+) {
     for (file in asList()) {
         val sources = file.sourceFiles
         val output = File(outputDir, file.relativePath)
         report(sources, output)
         FileUtil.writeToFile(output, file.asByteArray())
+        written(file)
     }
 }
 
 private val REPORT_NOTHING = { (sources: List<File>, output: File) -> }
 
+private val WRITTEN_NOTHING = { (file: OutputFile) -> }
+
 public fun OutputFileCollection.writeAllTo(outputDir: File) {
     writeAll(outputDir, REPORT_NOTHING)
 }
 
 public fun OutputFileCollection.writeAll(outputDir: File, messageCollector: MessageCollector) {
-    writeAll(outputDir) { sources, output ->
+    writeAll(outputDir, messageCollector, WRITTEN_NOTHING)
+}
+
+public fun OutputFileCollection.writeAll(outputDir: File, messageCollector: MessageCollector, written: (OutputFile) -> Unit) {
+    writeAll(outputDir, { sources, output ->
         messageCollector.report(CompilerMessageSeverity.OUTPUT, OutputMessageUtil.formatOutputMessage(sources, output), CompilerMessageLocation.NO_LOCATION)
-    }
+    }, written)
 }
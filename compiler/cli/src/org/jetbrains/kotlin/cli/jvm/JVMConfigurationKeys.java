@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.cli.jvm;
 import org.jetbrains.kotlin.config.CompilerConfigurationKey;
 import org.jetbrains.kotlin.load.kotlin.incremental.cache.IncrementalCacheProvider;
 import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
+import org.jetbrains.kotlin.utils.PerformanceReport;
 
 import java.io.File;
 import java.util.List;
@@ -41,6 +42,17 @@ public class JVMConfigurationKeys {
     public static final CompilerConfigurationKey<Boolean> DISABLE_OPTIMIZATION =
             CompilerConfigurationKey.create("disable optimization");
 
+    public static final CompilerConfigurationKey<Integer> BODY_RESOLVE_THREADS =
+            CompilerConfigurationKey.create("number of threads for body resolution");
+    public static final CompilerConfigurationKey<Integer> CODEGEN_THREADS =
+            CompilerConfigurationKey.create("number of threads for code generation");
+
+    public static final CompilerConfigurationKey<Boolean> DISCARD_BODIES =
+            CompilerConfigurationKey.create("discard analysis results of the generated files");
+
+    public static final CompilerConfigurationKey<PerformanceReport> PERFORMANCE_REPORT =
+            CompilerConfigurationKey.create("performance report");
+
     public static final CompilerConfigurationKey<IncrementalCacheProvider> INCREMENTAL_CACHE_PROVIDER =
             CompilerConfigurationKey.create("incremental cache provider");
 
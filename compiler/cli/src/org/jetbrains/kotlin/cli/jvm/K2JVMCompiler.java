@@ -19,7 +19,9 @@ package org.jetbrains.kotlin.cli.jvm;
 import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.io.FileUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.cli.common.CLICompiler;
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
 import org.jetbrains.kotlin.cli.common.ExitCode;
@@ -31,14 +33,17 @@ import org.jetbrains.kotlin.cli.jvm.repl.ReplFromTerminal;
 import org.jetbrains.kotlin.codegen.CompilationException;
 import org.jetbrains.kotlin.config.CommonConfigurationKeys;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.config.CompilerConfigurationKey;
 import org.jetbrains.kotlin.config.Services;
 import org.jetbrains.kotlin.load.kotlin.incremental.cache.IncrementalCacheProvider;
 import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
 import org.jetbrains.kotlin.utils.KotlinPaths;
 import org.jetbrains.kotlin.utils.KotlinPathsFromHomeDir;
 import org.jetbrains.kotlin.utils.PathUtil;
+import org.jetbrains.kotlin.utils.PerformanceReport;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 
@@ -112,6 +117,15 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
 
         putAdvancedOptions(configuration, arguments);
 
+        if (!putThreadCount(configuration, JVMConfigurationKeys.BODY_RESOLVE_THREADS, arguments.resolveThreads, messageCollector) ||
+            !putThreadCount(configuration, JVMConfigurationKeys.CODEGEN_THREADS, arguments.codegenThreads, messageCollector)) {
+            return COMPILATION_ERROR;
+        }
+
+        PerformanceReport performanceReport =
+                arguments.reportPerf != null || arguments.perfTrace != null ? new PerformanceReport() : PerformanceReport.DISABLED;
+        configuration.put(JVMConfigurationKeys.PERFORMANCE_REPORT, performanceReport);
+
         messageCollector.report(CompilerMessageSeverity.LOGGING, "Configuring the compilation environment",
                                 CompilerMessageLocation.NO_LOCATION);
         try {
@@ -158,6 +172,13 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
                         JetCoreEnvironment.createForProduction(rootDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
                 KotlinToJVMBytecodeCompiler.compileBunchOfSources(environment, jar, outputDir, arguments.includeRuntime);
             }
+
+            if (arguments.reportPerf != null) {
+                writePerformanceReport(arguments.reportPerf, performanceReport.renderJson(), messageCollector);
+            }
+            if (arguments.perfTrace != null) {
+                writePerformanceReport(arguments.perfTrace, performanceReport.renderChromeTrace(), messageCollector);
+            }
             return OK;
         }
         catch (CompilationException e) {
@@ -172,6 +193,51 @@ public class K2JVMCompiler extends CLICompiler<K2JVMCompilerArguments> {
         configuration.put(JVMConfigurationKeys.DISABLE_PARAM_ASSERTIONS, arguments.noParamAssertions);
         configuration.put(JVMConfigurationKeys.DISABLE_INLINE, arguments.noInline);
         configuration.put(JVMConfigurationKeys.DISABLE_OPTIMIZATION, arguments.noOptimize);
+        configuration.put(JVMConfigurationKeys.DISCARD_BODIES, arguments.discardBodies);
+    }
+
+    private static void writePerformanceReport(
+            @NotNull String path,
+            @NotNull String text,
+            @NotNull MessageCollector messageCollector
+    ) {
+        try {
+            FileUtil.writeToFile(new File(path), text);
+        }
+        catch (IOException e) {
+            messageCollector.report(CompilerMessageSeverity.WARNING,
+                                    "Could not write performance report to " + path + ": " + e.getMessage(),
+                                    CompilerMessageLocation.NO_LOCATION);
+        }
+    }
+
+    private static boolean putThreadCount(
+            @NotNull CompilerConfiguration configuration,
+            @NotNull CompilerConfigurationKey<Integer> key,
+            @Nullable String value,
+            @NotNull MessageCollector messageCollector
+    ) {
+        if (value == null) return true;
+
+        Integer threads = parsePositiveInt(value);
+        if (threads == null) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, "Number of threads should be a positive integer: " + value,
+                                    CompilerMessageLocation.NO_LOCATION);
+            return false;
+        }
+        configuration.put(key, threads);
+        return true;
+    }
+
+    @Nullable
+    private static Integer parsePositiveInt(@NotNull String value) {
+        try {
+            int result = Integer.parseInt(value);
+            return result > 0 ? result : null;
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
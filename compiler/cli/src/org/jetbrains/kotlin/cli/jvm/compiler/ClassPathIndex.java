@@ -0,0 +1,173 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Knows which roots of a class path contain each package directory, so that a class is looked up only in the roots
+ * containing its package instead of all roots of the class path.
+ *
+ * The index is built on the first lookup: the class path is not expected to change after that
+ */
+/* package */ final class ClassPathIndex {
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private static class PackageDirectory {
+        public final int rootIndex;
+        public final VirtualFile directory;
+
+        public PackageDirectory(int rootIndex, @NotNull VirtualFile directory) {
+            this.rootIndex = rootIndex;
+            this.directory = directory;
+        }
+    }
+
+    @NotNull
+    private final ClassPath classPath;
+
+    @Nullable
+    private volatile Index index = null;
+
+    public ClassPathIndex(@NotNull ClassPath classPath) {
+        this.classPath = classPath;
+    }
+
+    /**
+     * Finds class files in all roots with the same result as walking each root as deep as directories for the
+     * segments of the name exist, and looking for a class file named with the rest of the segments joined by '$'
+     *
+     * @return class files found, in the class path order
+     */
+    @NotNull
+    public List<VirtualFile> findClassFiles(@NotNull String qName, char separator) {
+        Index index = getIndex();
+
+        List<Integer> separators = new ArrayList<Integer>();
+        for (int i = qName.indexOf(separator); i >= 0; i = qName.indexOf(separator, i + 1)) {
+            separators.add(i);
+        }
+
+        // Root index to the class file found in that root
+        SortedMap<Integer, VirtualFile> found = null;
+        Set<Integer> visitedRoots = null;
+
+        // Every root is looked into once, at its deepest directory matching the name
+        for (int depth = separators.size(); depth >= 0; depth--) {
+            String fileName = (depth == 0 ? qName : qName.substring(separators.get(depth - 1) + 1)).replace('.', '$') + CLASS_FILE_SUFFIX;
+            List<PackageDirectory> candidates;
+            if (depth == 0) {
+                candidates = index.topLevelClassFiles.get(fileName);
+            }
+            else {
+                String path = qName.substring(0, separators.get(depth - 1));
+                candidates = index.directories.get(separator == '/' ? path : path.replace(separator, '/'));
+            }
+            if (candidates == null) continue;
+
+            for (PackageDirectory candidate : candidates) {
+                if (visitedRoots == null) {
+                    visitedRoots = new HashSet<Integer>();
+                }
+                if (!visitedRoots.add(candidate.rootIndex)) continue;
+
+                VirtualFile file = findClassFile(candidate.directory, fileName);
+                if (file != null) {
+                    if (found == null) {
+                        found = new TreeMap<Integer, VirtualFile>();
+                    }
+                    found.put(candidate.rootIndex, file);
+                }
+            }
+        }
+
+        return found == null ? Collections.<VirtualFile>emptyList() : new ArrayList<VirtualFile>(found.values());
+    }
+
+    @Nullable
+    private static VirtualFile findClassFile(@NotNull VirtualFile directory, @NotNull String fileName) {
+        VirtualFile file = directory.findChild(fileName);
+        if (file == null || !file.isValid()) {
+            //TODO: log invalid files
+            return null;
+        }
+        return file;
+    }
+
+    @NotNull
+    private Index getIndex() {
+        Index result = index;
+        if (result == null) {
+            synchronized (this) {
+                result = index;
+                if (result == null) {
+                    result = new Index(classPath);
+                    index = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Immutable after construction, so that lookups from several threads don't need a lock
+    private static class Index {
+        // Relative path of a directory, e.g. "kotlin/jvm", to the directories with this path in all roots, in the class path order
+        public final Map<String, List<PackageDirectory>> directories = new HashMap<String, List<PackageDirectory>>();
+        // Name of a class file right under a root to the roots containing it, in the class path order.
+        // Lookups of classes in packages which are absent in most roots end up here, so they don't need to look into every root
+        public final Map<String, List<PackageDirectory>> topLevelClassFiles = new HashMap<String, List<PackageDirectory>>();
+
+        public Index(@NotNull ClassPath classPath) {
+            int rootIndex = 0;
+            for (VirtualFile root : classPath) {
+                for (VirtualFile child : root.getChildren()) {
+                    if (child.isDirectory()) {
+                        indexDirectory(child, child.getName(), rootIndex);
+                    }
+                    else if (child.getName().endsWith(CLASS_FILE_SUFFIX)) {
+                        putValue(topLevelClassFiles, child.getName(), new PackageDirectory(rootIndex, root));
+                    }
+                }
+                rootIndex++;
+            }
+        }
+
+        private void indexDirectory(@NotNull VirtualFile directory, @NotNull String path, int rootIndex) {
+            putValue(directories, path, new PackageDirectory(rootIndex, directory));
+
+            for (VirtualFile child : directory.getChildren()) {
+                if (child.isDirectory()) {
+                    indexDirectory(child, path + "/" + child.getName(), rootIndex);
+                }
+            }
+        }
+    }
+
+    private static void putValue(@NotNull Map<String, List<PackageDirectory>> map, @NotNull String key, @NotNull PackageDirectory value) {
+        List<PackageDirectory> list = map.get(key);
+        if (list == null) {
+            // Most packages are contained in a single root
+            list = new ArrayList<PackageDirectory>(1);
+            map.put(key, list);
+        }
+        list.add(value);
+    }
+}
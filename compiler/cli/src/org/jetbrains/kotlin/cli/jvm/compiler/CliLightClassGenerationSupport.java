@@ -227,6 +227,14 @@ public class CliLightClassGenerationSupport extends LightClassGenerationSupport
     }
 
     public static class NoScopeRecordCliBindingTrace extends CliBindingTrace {
+        public NoScopeRecordCliBindingTrace() {
+            this(false);
+        }
+
+        public NoScopeRecordCliBindingTrace(boolean threadSafe) {
+            super(threadSafe);
+        }
+
         @Override
         public <K, V> void record(WritableSlice<K, V> slice, K key, V value) {
             if (slice == BindingContext.RESOLUTION_SCOPE || slice == BindingContext.TYPE_RESOLUTION_SCOPE) {
@@ -249,6 +257,10 @@ public class CliLightClassGenerationSupport extends LightClassGenerationSupport
         public CliBindingTrace() {
         }
 
+        protected CliBindingTrace(boolean threadSafe) {
+            super(threadSafe);
+        }
+
         @Override
         public String toString() {
             return CliBindingTrace.class.getName();
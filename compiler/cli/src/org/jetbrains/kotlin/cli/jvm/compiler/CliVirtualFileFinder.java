@@ -24,23 +24,24 @@ import org.jetbrains.kotlin.load.kotlin.VirtualFileFinder;
 import org.jetbrains.kotlin.load.kotlin.VirtualFileKotlinClassFinder;
 import org.jetbrains.kotlin.name.FqName;
 
+import java.util.List;
+
 public class CliVirtualFileFinder extends VirtualFileKotlinClassFinder implements VirtualFileFinder {
 
     @NotNull
-    private final ClassPath classPath;
+    private final ClassPathIndex index;
 
-    public CliVirtualFileFinder(@NotNull ClassPath path) {
-        classPath = path;
+    public CliVirtualFileFinder(@NotNull ClassPathIndex index) {
+        this.index = index;
     }
 
     @Nullable
     @Override
     public VirtualFile findVirtualFileWithHeader(@NotNull FqName className) {
-        for (VirtualFile root : classPath) {
-            VirtualFile fileInRoot = findFileInRoot(className.asString(), root, '.');
+        for (VirtualFile file : index.findClassFiles(className.asString(), '.')) {
             //NOTE: currently we use VirtualFileFinder to find Kotlin binaries only
-            if (fileInRoot != null && KotlinBinaryClassCache.getKotlinBinaryClass(fileInRoot) != null) {
-                return fileInRoot;
+            if (KotlinBinaryClassCache.getKotlinBinaryClass(file) != null) {
+                return file;
             }
         }
         return null;
@@ -48,43 +49,7 @@ public class CliVirtualFileFinder extends VirtualFileKotlinClassFinder implement
 
     @Override
     public VirtualFile findVirtualFile(@NotNull String internalName) {
-        for (VirtualFile root : classPath) {
-            VirtualFile fileInRoot = findFileInRoot(internalName, root, '/');
-            if (fileInRoot != null) {
-                return fileInRoot;
-            }
-        }
-        return null;
-    }
-
-    //NOTE: copied with some changes from CoreJavaFileManager
-    @Nullable
-    private static VirtualFile findFileInRoot(@NotNull String qName, @NotNull VirtualFile root, char separator) {
-        String pathRest = qName;
-        VirtualFile cur = root;
-
-        while (true) {
-            int dot = pathRest.indexOf(separator);
-            if (dot < 0) break;
-
-            String pathComponent = pathRest.substring(0, dot);
-            VirtualFile child = cur.findChild(pathComponent);
-
-            if (child == null) break;
-            pathRest = pathRest.substring(dot + 1);
-            cur = child;
-        }
-
-        String className = pathRest.replace('.', '$');
-        VirtualFile vFile = cur.findChild(className + ".class");
-        if (vFile != null) {
-            if (!vFile.isValid()) {
-                //TODO: log
-                return null;
-            }
-            return vFile;
-        }
-        return null;
+        List<VirtualFile> files = index.findClassFiles(internalName, '/');
+        return files.isEmpty() ? null : files.get(0);
     }
-
 }
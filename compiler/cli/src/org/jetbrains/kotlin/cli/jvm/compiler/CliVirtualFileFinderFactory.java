@@ -22,15 +22,16 @@ import org.jetbrains.kotlin.load.kotlin.VirtualFileFinder;
 import org.jetbrains.kotlin.load.kotlin.VirtualFileFinderFactory;
 
 public final class CliVirtualFileFinderFactory implements VirtualFileFinderFactory {
-    private final ClassPath classPath;
+    // Shared by all finders, the index is built once per class path
+    private final ClassPathIndex index;
 
     public CliVirtualFileFinderFactory(@NotNull ClassPath classpath) {
-        this.classPath = classpath;
+        this.index = new ClassPathIndex(classpath);
     }
 
     @NotNull
     @Override
     public VirtualFileFinder create(@NotNull GlobalSearchScope scope) {
-        return new CliVirtualFileFinder(classPath);
+        return new CliVirtualFileFinder(index);
     }
 }
@@ -72,6 +72,8 @@ import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation.N
 import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.ERROR;
 
 public class CompileEnvironmentUtil {
+    // Deflater writes compressed data in small chunks, which would otherwise go to the file one system call each
+    private static final int JAR_OUTPUT_BUFFER_SIZE = 1 << 16;
 
     @Nullable
     private static File getRuntimeJarPath() {
@@ -188,6 +190,7 @@ public class CompileEnvironmentUtil {
             for (OutputFile outputFile : outputFiles.asList()) {
                 stream.putNextEntry(new JarEntry(outputFile.getRelativePath()));
                 stream.write(outputFile.asByteArray());
+                outputFiles.releaseGeneratedOutput(outputFile.getRelativePath());
             }
             if (includeRuntime) {
                 writeRuntimeToJar(stream);
@@ -199,10 +202,13 @@ public class CompileEnvironmentUtil {
         }
     }
 
+    /**
+     * Class files are released from {@code outputFiles} as soon as they are written
+     */
     public static void writeToJar(File jarPath, boolean jarRuntime, FqName mainClass, ClassFileFactory outputFiles) {
-        FileOutputStream outputStream = null;
+        OutputStream outputStream = null;
         try {
-            outputStream = new FileOutputStream(jarPath);
+            outputStream = new BufferedOutputStream(new FileOutputStream(jarPath), JAR_OUTPUT_BUFFER_SIZE);
             doWriteToJar(outputFiles, outputStream, mainClass, jarRuntime);
             outputStream.close();
         }
@@ -220,7 +226,7 @@ public class CompileEnvironmentUtil {
     private static void writeRuntimeToJar(JarOutputStream stream) throws IOException {
         File runtimeJarPath = getRuntimeJarPath();
         if (runtimeJarPath != null) {
-            JarInputStream jis = new JarInputStream(new FileInputStream(runtimeJarPath));
+            JarInputStream jis = new JarInputStream(new BufferedInputStream(new FileInputStream(runtimeJarPath)));
             try {
                 while (true) {
                     JarEntry e = jis.getNextJarEntry();
@@ -252,19 +258,31 @@ public class CompileEnvironmentUtil {
         }
     }
 
+    /**
+     * {@code outputFiles} can't be used after this call: each class file is released as soon as it's written
+     */
     static void writeOutputToDirOrJar(
             @Nullable File jar,
             @Nullable File outputDir,
             boolean includeRuntime,
             @Nullable FqName mainClass,
-            @NotNull ClassFileFactory outputFiles,
+            @NotNull final ClassFileFactory outputFiles,
             @NotNull MessageCollector messageCollector
     ) {
         if (jar != null) {
             writeToJar(jar, includeRuntime, mainClass, outputFiles);
         }
         else {
-            OutputUtilsPackage.writeAll(outputFiles, outputDir == null ? new File(".") : outputDir, messageCollector);
+            OutputUtilsPackage.writeAll(
+                    outputFiles, outputDir == null ? new File(".") : outputDir, messageCollector,
+                    new Function1<OutputFile, Unit>() {
+                        @Override
+                        public Unit invoke(OutputFile file) {
+                            outputFiles.releaseGeneratedOutput(file.getRelativePath());
+                            return Unit.INSTANCE$;
+                        }
+                    }
+            );
         }
     }
 
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.google.common.base.Predicate;
+import com.intellij.openapi.util.Ref;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiFile;
+import kotlin.Function1;
+import kotlin.Unit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
+import org.jetbrains.kotlin.backend.common.output.SimpleOutputFileCollection;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.common.output.outputUtils.OutputUtilsPackage;
+import org.jetbrains.kotlin.codegen.ClassFileFactory;
+import org.jetbrains.kotlin.codegen.PackageGenerationListener;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
+import org.jetbrains.kotlin.descriptors.SimpleFunctionDescriptor;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.psi.*;
+import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.BindingTraceContext;
+import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils;
+import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall;
+
+import java.io.File;
+import java.util.*;
+
+/**
+ * Low memory mode of the compiler (-Xdiscard-bodies): as soon as a package is generated, its classes are written to the output directory
+ * and forgotten, and everything the analysis recorded for the bodies of its files is removed from the binding trace.
+ *
+ * Top-level declarations and class members are kept, because code in other packages refers to them. Local declarations
+ * (local functions, classes and variables, function literals and their parameters) are bodies too, as is the control flow data
+ * recorded for descriptors of local variables. Files declaring inline functions are kept completely,
+ * because their bodies are compiled again at each call site. PSI isn't released since descriptors keep references to their declarations
+ */
+class DiscardBodiesListener implements PackageGenerationListener {
+    // Each sweep takes time proportional to the size of the whole trace, so released files are swept in batches
+    private static final int MAX_SWEEPS = 16;
+
+    private final BindingTraceContext trace;
+    private final ClassFileFactory factory;
+    @Nullable
+    private final File outputDirectory;
+    private final MessageCollector messageCollector;
+    private final int filesPerSweep;
+
+    private final Set<PsiFile> filesToSweep = new HashSet<PsiFile>();
+    private int writtenClassCount = 0;
+
+    /**
+     * @param outputDirectory the directory to write classes to as soon as they are generated, or null if the output is written
+     *                        in the end as usual, e.g. to a jar
+     */
+    DiscardBodiesListener(
+            @NotNull BindingTraceContext trace,
+            @NotNull ClassFileFactory factory,
+            @Nullable File outputDirectory,
+            @NotNull MessageCollector messageCollector,
+            int fileCount
+    ) {
+        this.trace = trace;
+        this.factory = factory;
+        this.outputDirectory = outputDirectory;
+        this.messageCollector = messageCollector;
+        this.filesPerSweep = Math.max(1, fileCount / MAX_SWEEPS);
+    }
+
+    @Override
+    public synchronized void packageGenerated(@NotNull FqName fqName, @NotNull Collection<JetFile> files) {
+        List<JetFile> filesToDiscard = new ArrayList<JetFile>(files.size());
+        for (JetFile file : files) {
+            if (!declaresInlineFunctions(file)) {
+                filesToDiscard.add(file);
+            }
+        }
+
+        if (outputDirectory != null) {
+            OutputUtilsPackage.writeAll(
+                    new SimpleOutputFileCollection(factory.getOutputFilesGeneratedFrom(filesToDiscard)), outputDirectory, messageCollector,
+                    new Function1<OutputFile, Unit>() {
+                        @Override
+                        public Unit invoke(OutputFile file) {
+                            if (file.getRelativePath().endsWith(".class")) {
+                                writtenClassCount++;
+                            }
+                            factory.releaseGeneratedOutput(file.getRelativePath());
+                            return Unit.INSTANCE$;
+                        }
+                    }
+            );
+        }
+
+        filesToSweep.addAll(filesToDiscard);
+        if (filesToSweep.size() >= filesPerSweep) {
+            sweep();
+        }
+    }
+
+    /**
+     * Removes what's left from the trace, should be called after the code generation is finished
+     */
+    public synchronized void flush() {
+        if (!filesToSweep.isEmpty()) {
+            sweep();
+        }
+    }
+
+    /**
+     * The number of classes written to the output directory so far, they're not reported by the class file factory anymore
+     */
+    public synchronized int getWrittenClassCount() {
+        return writtenClassCount;
+    }
+
+    private void sweep() {
+        trace.removeRecords(new Predicate<Object>() {
+            @Override
+            public boolean apply(Object key) {
+                PsiElement element = getElement(key);
+                if (element == null || element instanceof PsiFile || isNonLocalDeclaration(element)) {
+                    return false;
+                }
+                return filesToSweep.contains(element.getContainingFile());
+            }
+        });
+        filesToSweep.clear();
+    }
+
+    @Nullable
+    private static PsiElement getElement(@Nullable Object key) {
+        if (key instanceof PsiElement) {
+            return (PsiElement) key;
+        }
+        if (key instanceof Call) {
+            return ((Call) key).getCallElement();
+        }
+        if (key instanceof ResolvedCall) {
+            return ((ResolvedCall<?>) key).getCall().getCallElement();
+        }
+        if (key instanceof DeclarationDescriptor) {
+            // e.g. captured local variables; 'it' of a function literal has no declaration of its own
+            for (DeclarationDescriptor descriptor = (DeclarationDescriptor) key;
+                 descriptor != null;
+                 descriptor = descriptor.getContainingDeclaration()) {
+                PsiElement declaration = DescriptorToSourceUtils.descriptorToDeclaration(descriptor);
+                if (declaration != null) return declaration;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNonLocalDeclaration(@NotNull PsiElement element) {
+        if (element instanceof JetPropertyAccessor) {
+            // Accessors belong to their property, JetPsiUtil.isLocal() considers them local
+            element = element.getParent();
+        }
+        return element instanceof JetDeclaration && !JetPsiUtil.isLocal((JetDeclaration) element);
+    }
+
+    private boolean declaresInlineFunctions(@NotNull JetFile file) {
+        final BindingContext bindingContext = trace.getBindingContext();
+        final Ref<Boolean> result = Ref.create(false);
+        file.accept(new JetTreeVisitorVoid() {
+            @Override
+            public void visitNamedFunction(@NotNull JetNamedFunction function) {
+                // Functions declared inside bodies of other functions are local and can't be inline
+                SimpleFunctionDescriptor descriptor = bindingContext.get(BindingContext.FUNCTION, function);
+                if (descriptor != null && descriptor.getInlineStrategy().isInline()) {
+                    result.set(true);
+                }
+            }
+        });
+        return result.get();
+    }
+}
@@ -64,9 +64,7 @@ import org.jetbrains.kotlin.resolve.lazy.declarations.DeclarationProviderFactory
 import org.jetbrains.kotlin.utils.PathUtil;
 
 import java.io.File;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.ERROR;
 import static org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity.WARNING;
@@ -77,6 +75,8 @@ public class JetCoreEnvironment {
     private static final Object APPLICATION_LOCK = new Object();
     private static JavaCoreApplicationEnvironment ourApplicationEnvironment;
     private static int ourProjectCount = 0;
+    // Jars opened through the jar file system of the shared ApplicationEnvironment, with their stamps at the time they were opened
+    private static final Map<String, JarStamp> ourOpenedJars = new HashMap<String, JarStamp>();
 
     @NotNull
     public static JetCoreEnvironment createForProduction(
@@ -86,6 +86,22 @@ public class JetCoreEnvironment {
     ) {
         // JPS may run many instances of the compiler in parallel (there's an option for compiling independent modules in parallel in IntelliJ)
         // All projects share the same ApplicationEnvironment, and when the last project is disposed, the ApplicationEnvironment is disposed as well
+        return new JetCoreEnvironment(parentDisposable, retainApplicationEnvironment(parentDisposable, configFilePaths), configuration);
+    }
+
+    /**
+     * Keeps the shared ApplicationEnvironment alive until the given disposable is disposed, so that compilations running
+     * one after another in the same process (e.g. in the compile daemon) do not have to initialize it from scratch
+     */
+    public static void keepApplicationEnvironment(@NotNull Disposable parentDisposable, @NotNull List<String> configFilePaths) {
+        retainApplicationEnvironment(parentDisposable, configFilePaths);
+    }
+
+    @NotNull
+    private static JavaCoreApplicationEnvironment retainApplicationEnvironment(
+            @NotNull Disposable parentDisposable,
+            @NotNull List<String> configFilePaths
+    ) {
         Disposer.register(parentDisposable, new Disposable() {
             @Override
             public void dispose() {
@@ -96,13 +112,12 @@ public class JetCoreEnvironment {
                 }
             }
         });
-        JetCoreEnvironment environment =
-                new JetCoreEnvironment(parentDisposable, getOrCreateApplicationEnvironmentForProduction(configFilePaths), configuration);
 
         synchronized (APPLICATION_LOCK) {
+            JavaCoreApplicationEnvironment applicationEnvironment = getOrCreateApplicationEnvironmentForProduction(configFilePaths);
             ourProjectCount++;
+            return applicationEnvironment;
         }
-        return environment;
     }
 
     @TestOnly
@@ -141,10 +156,65 @@ public class JetCoreEnvironment {
             if (ourApplicationEnvironment == null) return;
             JavaCoreApplicationEnvironment environment = ourApplicationEnvironment;
             ourApplicationEnvironment = null;
+            ourOpenedJars.clear();
             Disposer.dispose(environment.getParentDisposable());
         }
     }
 
+    /**
+     * The jar file system of the shared ApplicationEnvironment caches the entries of every jar it has opened and never checks
+     * whether the jar has changed since then. Compilations which reuse the environment (see {@link #keepApplicationEnvironment})
+     * should call this before they start, so that jars rebuilt after a previous compilation are read anew.
+     *
+     * CoreJarFileSystem can only drop all of its handlers at once, so all jars are reopened if any of them has changed
+     */
+    public static void invalidateChangedJars() {
+        synchronized (APPLICATION_LOCK) {
+            if (ourApplicationEnvironment == null) return;
+
+            for (Map.Entry<String, JarStamp> entry : ourOpenedJars.entrySet()) {
+                if (!entry.getValue().equals(new JarStamp(new File(entry.getKey())))) {
+                    ourApplicationEnvironment.getJarFileSystem().clearHandlersCache();
+                    ourOpenedJars.clear();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void rememberOpenedJar(@NotNull File jar) {
+        synchronized (APPLICATION_LOCK) {
+            String path = jar.getAbsolutePath();
+            if (!ourOpenedJars.containsKey(path)) {
+                ourOpenedJars.put(path, new JarStamp(jar));
+            }
+        }
+    }
+
+    private static class JarStamp {
+        private final long lastModified;
+        private final long length;
+
+        private JarStamp(@NotNull File jar) {
+            // Both are 0 if the jar doesn't exist anymore
+            this.lastModified = jar.lastModified();
+            this.length = jar.length();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof JarStamp)) return false;
+            JarStamp other = (JarStamp) o;
+            return lastModified == other.lastModified && length == other.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (lastModified ^ (lastModified >>> 32)) + (int) (length ^ (length >>> 32));
+        }
+    }
+
     @NotNull
     private static JavaCoreApplicationEnvironment createApplicationEnvironment(
             @NotNull Disposable parentDisposable,
@@ -295,6 +365,7 @@ public class JetCoreEnvironment {
 
     private void addToClasspath(File path) {
         if (path.isFile()) {
+            rememberOpenedJar(path);
             VirtualFile jarFile = getMyApplicationEnvironment().getJarFileSystem().findFileByPath(path + "!/");
             if (jarFile == null) {
                 report(WARNING, "Classpath entry points to a file that is not a JAR archive: " + path);
@@ -32,6 +32,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.analyzer.AnalysisResult;
 import org.jetbrains.kotlin.asJava.FilteredJvmDiagnostics;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
 import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
 import org.jetbrains.kotlin.cli.common.CompilerPlugin;
 import org.jetbrains.kotlin.cli.common.CompilerPluginContext;
@@ -43,6 +44,7 @@ import org.jetbrains.kotlin.codegen.state.GenerationState;
 import org.jetbrains.kotlin.codegen.state.Progress;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.context.ContextPackage;
+import org.jetbrains.kotlin.context.GlobalContext;
 import org.jetbrains.kotlin.descriptors.impl.ModuleDescriptorImpl;
 import org.jetbrains.kotlin.idea.MainFunctionDetector;
 import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
@@ -54,11 +56,13 @@ import org.jetbrains.kotlin.parsing.JetScriptDefinition;
 import org.jetbrains.kotlin.parsing.JetScriptDefinitionProvider;
 import org.jetbrains.kotlin.psi.JetFile;
 import org.jetbrains.kotlin.resolve.AnalyzerScriptParameter;
-import org.jetbrains.kotlin.resolve.BindingTrace;
 import org.jetbrains.kotlin.resolve.BindingTraceContext;
 import org.jetbrains.kotlin.resolve.ScriptNameUtil;
+import org.jetbrains.kotlin.resolve.TopDownAnalysisParameters;
 import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM;
+import org.jetbrains.kotlin.types.checker.SubtypingCache;
 import org.jetbrains.kotlin.utils.KotlinPaths;
+import org.jetbrains.kotlin.utils.PerformanceReport;
 
 import java.io.File;
 import java.net.URL;
@@ -100,7 +104,18 @@ public class KotlinToJVMBytecodeCompiler {
             @Nullable FqName mainClass
     ) {
         MessageCollector messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE);
-        CompileEnvironmentUtil.writeOutputToDirOrJar(jarPath, outputDir, jarRuntime, mainClass, outputFiles, messageCollector);
+        PerformanceReport.Phase write = getPerformanceReport(configuration).start(PerformanceReport.WRITE);
+        try {
+            CompileEnvironmentUtil.writeOutputToDirOrJar(jarPath, outputDir, jarRuntime, mainClass, outputFiles, messageCollector);
+        }
+        finally {
+            write.end();
+        }
+    }
+
+    @NotNull
+    private static PerformanceReport getPerformanceReport(@NotNull CompilerConfiguration configuration) {
+        return configuration.get(JVMConfigurationKeys.PERFORMANCE_REPORT, PerformanceReport.DISABLED);
     }
 
     public static boolean compileModules(
@@ -120,7 +135,8 @@ public class KotlinToJVMBytecodeCompiler {
             environment = JetCoreEnvironment
                     .createForProduction(parentDisposable, compilerConfiguration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
 
-            AnalysisResult result = analyze(environment);
+            BindingTraceContext sharedTrace = createSharedTrace(environment.getConfiguration());
+            AnalysisResult result = analyze(environment, sharedTrace);
             if (result == null) {
                 return false;
             }
@@ -136,8 +152,11 @@ public class KotlinToJVMBytecodeCompiler {
                             }
                         }
                 );
-                GenerationState generationState =
-                        generate(environment, result, jetFiles, module.getModuleName(), new File(module.getOutputDirectory()));
+                File outputDirectory = new File(module.getOutputDirectory());
+                GenerationState generationState = generate(
+                        environment, result, sharedTrace, jetFiles, module.getModuleName(), outputDirectory,
+                        jarPath == null ? outputDirectory : null
+                );
                 outputFiles.put(module, generationState.getFactory());
             }
         }
@@ -206,7 +225,9 @@ public class KotlinToJVMBytecodeCompiler {
             boolean includeRuntime
     ) {
 
-        GenerationState generationState = analyzeAndGenerate(environment);
+        // Classes can be written before the code generation is finished only if they go to a directory
+        File writeDirectory = jar == null ? (outputDir == null ? new File(".") : outputDir) : null;
+        GenerationState generationState = analyzeAndGenerate(environment, writeDirectory);
         if (generationState == null) {
             return false;
         }
@@ -273,7 +294,13 @@ public class KotlinToJVMBytecodeCompiler {
 
     @Nullable
     public static GenerationState analyzeAndGenerate(@NotNull JetCoreEnvironment environment) {
-        AnalysisResult result = analyze(environment);
+        return analyzeAndGenerate(environment, null);
+    }
+
+    @Nullable
+    private static GenerationState analyzeAndGenerate(@NotNull JetCoreEnvironment environment, @Nullable File writeDirectory) {
+        BindingTraceContext sharedTrace = createSharedTrace(environment.getConfiguration());
+        AnalysisResult result = analyze(environment, sharedTrace);
 
         if (result == null) {
             return null;
@@ -281,40 +308,84 @@ public class KotlinToJVMBytecodeCompiler {
 
         result.throwIfError();
 
-        return generate(environment, result, environment.getSourceFiles(), null, null);
+        return generate(environment, result, sharedTrace, environment.getSourceFiles(), null, null, writeDirectory);
+    }
+
+    @NotNull
+    private static BindingTraceContext createSharedTrace(@NotNull CompilerConfiguration configuration) {
+        // Code generation reads the analysis results concurrently as well, see generate()
+        boolean threadSafe = configuration.get(JVMConfigurationKeys.BODY_RESOLVE_THREADS, 1) > 1 ||
+                             configuration.get(JVMConfigurationKeys.CODEGEN_THREADS, 1) > 1;
+        return new CliLightClassGenerationSupport.NoScopeRecordCliBindingTrace(threadSafe);
     }
 
     @Nullable
-    private static AnalysisResult analyze(@NotNull final JetCoreEnvironment environment) {
+    private static AnalysisResult analyze(@NotNull final JetCoreEnvironment environment, @NotNull final BindingTraceContext sharedTrace) {
         MessageCollector collector = environment.getConfiguration().get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY);
         assert collector != null;
 
+        final PerformanceReport performanceReport = getPerformanceReport(environment.getConfiguration());
+        performanceReport.count(PerformanceReport.FILES, environment.getSourceFiles().size());
+
+        // PSI is built lazily, force it here to see how much time parsing takes
+        PerformanceReport.Phase parse = performanceReport.start(PerformanceReport.PARSE);
+        try {
+            for (JetFile file : environment.getSourceFiles()) {
+                file.getNode();
+            }
+        }
+        finally {
+            parse.end();
+        }
+
+        final int bodyResolveThreads = environment.getConfiguration().get(JVMConfigurationKeys.BODY_RESOLVE_THREADS, 1);
+
+        // Cached subtype checks are dropped together with the cache object when this analysis is over
+        SubtypingCache subtypingCache = new SubtypingCache();
+        SubtypingCache.Scope subtypingCacheScope = subtypingCache.enter();
+
         AnalyzerWithCompilerReport analyzerWithCompilerReport = new AnalyzerWithCompilerReport(collector);
-        analyzerWithCompilerReport.analyzeAndReport(
-                environment.getSourceFiles(), new Function0<AnalysisResult>() {
-                    @NotNull
-                    @Override
-                    public AnalysisResult invoke() {
-                        BindingTrace sharedTrace = new CliLightClassGenerationSupport.NoScopeRecordCliBindingTrace();
-                        ModuleDescriptorImpl analyzeModule = TopDownAnalyzerFacadeForJVM.createSealedJavaModule();
-
-                        return TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationWithCustomContext(
-                                environment.getProject(),
-                                ContextPackage.GlobalContext(),
-                                environment.getSourceFiles(),
-                                sharedTrace,
-                                Predicates.<PsiFile>alwaysTrue(),
-                                analyzeModule,
-                                environment.getConfiguration().get(JVMConfigurationKeys.MODULE_IDS),
-                                environment.getConfiguration().get(JVMConfigurationKeys.INCREMENTAL_CACHE_PROVIDER)
-                        );
+        try {
+            analyzerWithCompilerReport.analyzeAndReport(
+                    environment.getSourceFiles(), new Function0<AnalysisResult>() {
+                        @NotNull
+                        @Override
+                        public AnalysisResult invoke() {
+                            ModuleDescriptorImpl analyzeModule = TopDownAnalyzerFacadeForJVM.createSealedJavaModule();
+
+                            GlobalContext globalContext =
+                                    bodyResolveThreads > 1 ? ContextPackage.ConcurrentGlobalContext() : ContextPackage.GlobalContext();
+                            TopDownAnalysisParameters topDownAnalysisParameters = TopDownAnalysisParameters.create(
+                                    globalContext.getStorageManager(),
+                                    globalContext.getExceptionTracker(),
+                                    Predicates.<PsiFile>alwaysTrue(),
+                                    false,
+                                    false
+                            ).withBodyResolveThreads(bodyResolveThreads).withPerformanceReport(performanceReport);
+
+                            return TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegration(
+                                    environment.getProject(),
+                                    environment.getSourceFiles(),
+                                    sharedTrace,
+                                    topDownAnalysisParameters,
+                                    analyzeModule,
+                                    environment.getConfiguration().get(JVMConfigurationKeys.MODULE_IDS),
+                                    environment.getConfiguration().get(JVMConfigurationKeys.INCREMENTAL_CACHE_PROVIDER)
+                            );
+                        }
                     }
-                }
-        );
+            );
+        }
+        finally {
+            subtypingCacheScope.exit();
+        }
 
         AnalysisResult result = analyzerWithCompilerReport.getAnalysisResult();
         assert result != null : "AnalysisResult should be non-null, compiling: " + environment.getSourceFiles();
 
+        performanceReport.count(PerformanceReport.SUBTYPE_CACHE_HITS, subtypingCache.getHits());
+        performanceReport.count(PerformanceReport.SUBTYPE_CACHE_MISSES, subtypingCache.getMisses());
+
         CompilerPluginContext context = new CompilerPluginContext(environment.getProject(), result.getBindingContext(),
                                                                   environment.getSourceFiles());
         for (CompilerPlugin plugin : environment.getConfiguration().getList(CLIConfigurationKeys.COMPILER_PLUGINS)) {
@@ -328,9 +399,11 @@ public class KotlinToJVMBytecodeCompiler {
     private static GenerationState generate(
             @NotNull JetCoreEnvironment environment,
             @NotNull AnalysisResult result,
+            @NotNull BindingTraceContext sharedTrace,
             @NotNull List<JetFile> sourceFiles,
             @Nullable String moduleId,
-            File outputDirectory
+            File outputDirectory,
+            @Nullable File writeDirectory
     ) {
         CompilerConfiguration configuration = environment.getConfiguration();
         IncrementalCacheProvider incrementalCacheProvider = configuration.get(JVMConfigurationKeys.INCREMENTAL_CACHE_PROVIDER);
@@ -342,8 +415,11 @@ public class KotlinToJVMBytecodeCompiler {
         else {
             IncrementalCache incrementalCache = incrementalCacheProvider.getIncrementalCache(moduleId);
             packagesWithRemovedFiles = IncrementalPackage.getPackagesWithRemovedFiles(incrementalCache, environment.getSourceFiles());
+            // Must be done before codegen: bodies may be discarded from the binding context during generation
+            IncrementalPackage.registerSymbolUsages(incrementalCache, sourceFiles, result.getBindingContext());
         }
-        BindingTraceContext diagnosticHolder = new BindingTraceContext();
+        int codegenThreads = configuration.get(JVMConfigurationKeys.CODEGEN_THREADS, 1);
+        BindingTraceContext diagnosticHolder = codegenThreads > 1 ? BindingTraceContext.createThreadSafe() : new BindingTraceContext();
         GenerationState generationState = new GenerationState(
                 environment.getProject(),
                 ClassBuilderFactories.BINARIES,
@@ -359,9 +435,31 @@ public class KotlinToJVMBytecodeCompiler {
                 packagesWithRemovedFiles,
                 moduleId,
                 diagnosticHolder,
-                outputDirectory
+                outputDirectory,
+                codegenThreads
         );
-        KotlinCodegenFacade.compileCorrectFiles(generationState, CompilationErrorHandler.THROW_EXCEPTION);
+        MessageCollector messageCollector = configuration.get(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.NONE);
+        DiscardBodiesListener discardBodiesListener = configuration.get(JVMConfigurationKeys.DISCARD_BODIES, false)
+                ? new DiscardBodiesListener(sharedTrace, generationState.getFactory(), writeDirectory, messageCollector, sourceFiles.size())
+                : null;
+
+        PerformanceReport performanceReport = getPerformanceReport(configuration);
+        PerformanceReport.Phase codegen = performanceReport.start(PerformanceReport.CODEGEN);
+        try {
+            KotlinCodegenFacade.compileCorrectFiles(
+                    generationState, CompilationErrorHandler.THROW_EXCEPTION,
+                    discardBodiesListener != null ? discardBodiesListener : PackageGenerationListener.NONE
+            );
+            if (discardBodiesListener != null) {
+                discardBodiesListener.flush();
+            }
+        }
+        finally {
+            codegen.end();
+        }
+        int writtenClassCount = discardBodiesListener != null ? discardBodiesListener.getWrittenClassCount() : 0;
+        performanceReport.count(PerformanceReport.CLASSES, countClassFiles(generationState.getFactory()) + writtenClassCount);
+
         AnalyzerWithCompilerReport.reportDiagnostics(
                 new FilteredJvmDiagnostics(
                         diagnosticHolder.getBindingContext().getDiagnostics(),
@@ -371,4 +469,14 @@ public class KotlinToJVMBytecodeCompiler {
         );
         return generationState;
     }
+
+    private static int countClassFiles(@NotNull ClassFileFactory factory) {
+        int result = 0;
+        for (OutputFile file : factory.asList()) {
+            if (file.getRelativePath().endsWith(".class")) {
+                result++;
+            }
+        }
+        return result;
+    }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Sends compilation requests to a {@link K2JVMCompileDaemon} running on this machine.
+ *
+ * The daemon resolves relative paths against its own working directory, so all paths in the arguments should be absolute
+ */
+public class CompileDaemonClient {
+    private final int port;
+    private final File tokenFile;
+
+    /**
+     * @param tokenFile the token file of the daemon, see {@link K2JVMCompileDaemon#K2JVMCompileDaemon(int, File)}
+     */
+    public CompileDaemonClient(int port, @NotNull File tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+    }
+
+    /**
+     * Compiles with the given command line arguments of K2JVMCompiler, reporting compiler messages to the collector as they arrive
+     */
+    @NotNull
+    public ExitCode compile(@NotNull String[] args, @NotNull MessageCollector messageCollector) throws IOException {
+        byte[] token = CompileDaemonProtocol.readTokenFile(tokenFile);
+        Socket socket = connect();
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.write(token);
+            output.writeByte(CompileDaemonProtocol.COMPILE);
+            CompileDaemonProtocol.writeArguments(output, args);
+            output.flush();
+
+            return readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())), messageCollector);
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * Asks the daemon to stop after the compilations in progress are finished
+     */
+    public void shutdown() throws IOException {
+        byte[] token = CompileDaemonProtocol.readTokenFile(tokenFile);
+        Socket socket = connect();
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            output.write(token);
+            output.writeByte(CompileDaemonProtocol.SHUTDOWN);
+            output.flush();
+
+            readResponse(new DataInputStream(new BufferedInputStream(socket.getInputStream())), MessageCollector.NONE);
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    @NotNull
+    private Socket connect() throws IOException {
+        // The daemon only listens on the loopback interface
+        return new Socket(InetAddress.getByName(null), port);
+    }
+
+    @NotNull
+    private static ExitCode readResponse(@NotNull DataInputStream input, @NotNull MessageCollector messageCollector) throws IOException {
+        while (true) {
+            int frame = input.readUnsignedByte();
+            switch (frame) {
+                case CompileDaemonProtocol.MESSAGE:
+                    CompilerMessageSeverity severity = CompileDaemonProtocol.readSeverity(input);
+                    String message = CompileDaemonProtocol.readString(input);
+                    CompilerMessageLocation location = CompileDaemonProtocol.readLocation(input);
+                    messageCollector.report(severity, message, location);
+                    break;
+                case CompileDaemonProtocol.EXIT:
+                    return ExitCode.values()[input.readUnsignedByte()];
+                default:
+                    throw new IOException("Unexpected response from the compile daemon: " + frame);
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.daemon;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+
+/**
+ * The wire format used between {@link CompileDaemonClient} and {@link K2JVMCompileDaemon}.
+ *
+ * A request starts with the secret token of the daemon (see {@link #writeTokenFile}), followed by a command byte and,
+ * for {@link #COMPILE}, the command line arguments of the compiler.
+ * A response is a sequence of {@link #MESSAGE} frames terminated by an {@link #EXIT} frame carrying the exit code
+ */
+/* package */ class CompileDaemonProtocol {
+    public static final int COMPILE = 1;
+    public static final int SHUTDOWN = 2;
+
+    public static final int MESSAGE = 1;
+    public static final int EXIT = 2;
+
+    public static final int TOKEN_LENGTH = 32;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private CompileDaemonProtocol() {}
+
+    /**
+     * Generates a random token and writes it to a file which only the current user can read.
+     * Anybody on this machine can connect to the daemon, the token shows that the client runs on behalf of the same user
+     */
+    @NotNull
+    public static byte[] writeTokenFile(@NotNull File file) throws IOException {
+        byte[] token = new byte[TOKEN_LENGTH];
+        new SecureRandom().nextBytes(token);
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Failed to create a directory for the token file: " + parent);
+        }
+        // Restrict the permissions while the file is still empty, a file left over by somebody else is not reused
+        if ((file.exists() && !file.delete()) || !file.createNewFile()) {
+            throw new IOException("Failed to create the token file: " + file);
+        }
+        if (!file.setReadable(false, false) || !file.setReadable(true, true) ||
+            !file.setWritable(false, false) || !file.setWritable(true, true)) {
+            file.delete();
+            throw new IOException("Failed to restrict access to the token file: " + file);
+        }
+
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(token);
+        }
+        finally {
+            output.close();
+        }
+        return token;
+    }
+
+    @NotNull
+    public static byte[] readTokenFile(@NotNull File file) throws IOException {
+        DataInputStream input = new DataInputStream(new FileInputStream(file));
+        try {
+            byte[] token = new byte[TOKEN_LENGTH];
+            input.readFully(token);
+            return token;
+        }
+        finally {
+            input.close();
+        }
+    }
+
+    public static void writeArguments(@NotNull DataOutputStream output, @NotNull String[] args) throws IOException {
+        output.writeInt(args.length);
+        for (String arg : args) {
+            writeString(output, arg);
+        }
+    }
+
+    @NotNull
+    public static String[] readArguments(@NotNull DataInputStream input) throws IOException {
+        String[] args = new String[input.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = readString(input);
+        }
+        return args;
+    }
+
+    public static void writeMessage(
+            @NotNull DataOutputStream output,
+            @NotNull CompilerMessageSeverity severity,
+            @NotNull String message,
+            @NotNull CompilerMessageLocation location
+    ) throws IOException {
+        output.writeByte(MESSAGE);
+        output.writeByte(severity.ordinal());
+        writeString(output, message);
+        writeNullableString(output, location.getPath());
+        output.writeInt(location.getLine());
+        output.writeInt(location.getColumn());
+    }
+
+    // The frame tag and the rest of the message frame are read separately, see CompileDaemonClient
+    @NotNull
+    public static CompilerMessageSeverity readSeverity(@NotNull DataInputStream input) throws IOException {
+        return CompilerMessageSeverity.values()[input.readUnsignedByte()];
+    }
+
+    @NotNull
+    public static CompilerMessageLocation readLocation(@NotNull DataInputStream input) throws IOException {
+        String path = readNullableString(input);
+        int line = input.readInt();
+        int column = input.readInt();
+        return CompilerMessageLocation.create(path, line, column);
+    }
+
+    // DataOutputStream.writeUTF() can't handle strings longer than 64K, e.g. big stack traces
+    public static void writeString(@NotNull DataOutputStream output, @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    @NotNull
+    public static String readString(@NotNull DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void writeNullableString(@NotNull DataOutputStream output, @Nullable String string) throws IOException {
+        output.writeBoolean(string != null);
+        if (string != null) {
+            writeString(output, string);
+        }
+    }
+
+    @Nullable
+    private static String readNullableString(@NotNull DataInputStream input) throws IOException {
+        return input.readBoolean() ? readString(input) : null;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.daemon;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.util.Disposer;
+import com.sampullara.cli.Args;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.common.arguments.K2JVMCompilerArguments;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageLocation;
+import org.jetbrains.kotlin.cli.common.messages.CompilerMessageSeverity;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.common.messages.OutputMessageUtil;
+import org.jetbrains.kotlin.cli.jvm.K2JVMCompiler;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.kotlin.config.Services;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+
+/**
+ * A long-living compiler process which accepts compilation requests from {@link CompileDaemonClient} over a local socket.
+ *
+ * Compilations share the application environment (IntelliJ core, jar file system caches) and the built-ins,
+ * so only the first request pays for their initialization. Cached jars are dropped when any of them changes between requests.
+ * Requests are served one at a time.
+ *
+ * Only clients which know the token written to the token file are served. A client which doesn't send its request
+ * in {@link #REQUEST_TIMEOUT_MS} is disconnected, so that it doesn't block the others
+ */
+@SuppressWarnings("UseOfSystemOutOrSystemErr")
+public class K2JVMCompileDaemon {
+
+    public static final int REQUEST_TIMEOUT_MS = 10000;
+
+    public static void main(String... args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length < 1) {
+            System.err.println("Usage: K2JVMCompileDaemon <token file> [port]");
+            System.exit(ExitCode.INTERNAL_ERROR.ordinal());
+        }
+
+        File tokenFile = new File(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        K2JVMCompileDaemon daemon = new K2JVMCompileDaemon(port, tokenFile);
+        System.out.println("Kotlin compile daemon is listening on port " + daemon.getPort());
+        daemon.run();
+    }
+
+    private final ServerSocket serverSocket;
+    private final File tokenFile;
+    private final byte[] token;
+    private final Disposable rootDisposable = Disposer.newDisposable();
+
+    /**
+     * @param port the port to listen on, or 0 to pick a free one
+     * @param tokenFile the file to write the token to, clients should pass the same file to {@link CompileDaemonClient}
+     */
+    public K2JVMCompileDaemon(int port, @NotNull File tokenFile) throws IOException {
+        this.tokenFile = tokenFile;
+        this.token = CompileDaemonProtocol.writeTokenFile(tokenFile);
+        // Nobody except this machine should be able to run the compiler
+        serverSocket = new ServerSocket(port, 0, InetAddress.getByName(null));
+        JetCoreEnvironment.keepApplicationEnvironment(rootDisposable, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves requests until a shutdown request is received
+     */
+    public void run() {
+        try {
+            boolean running = true;
+            while (running) {
+                Socket socket = serverSocket.accept();
+                try {
+                    socket.setSoTimeout(REQUEST_TIMEOUT_MS);
+                    running = serve(socket);
+                }
+                catch (Exception e) {
+                    // Most likely the client has gone away, nobody to report to
+                    System.err.println("Kotlin compile daemon: " + e);
+                }
+                finally {
+                    try {
+                        socket.close();
+                    }
+                    catch (IOException ignored) {
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            System.err.println("Kotlin compile daemon: " + e);
+        }
+        finally {
+            try {
+                serverSocket.close();
+            }
+            catch (IOException ignored) {
+            }
+            Disposer.dispose(rootDisposable);
+            //noinspection ResultOfMethodCallIgnored
+            tokenFile.delete();
+        }
+    }
+
+    // Returns false if the daemon should stop
+    private boolean serve(@NotNull Socket socket) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+        byte[] clientToken = new byte[CompileDaemonProtocol.TOKEN_LENGTH];
+        input.readFully(clientToken);
+        if (!MessageDigest.isEqual(token, clientToken)) {
+            throw new IOException("Rejected a client with a wrong token");
+        }
+
+        int command = input.readUnsignedByte();
+        ExitCode exitCode;
+        switch (command) {
+            case CompileDaemonProtocol.COMPILE:
+                String[] args = CompileDaemonProtocol.readArguments(input);
+                // The whole request has been read, compilation may take longer than the timeout and doesn't read anything else
+                socket.setSoTimeout(0);
+                exitCode = compile(args, new MessageCollector() {
+                    @Override
+                    public void report(
+                            @NotNull CompilerMessageSeverity severity,
+                            @NotNull String message,
+                            @NotNull CompilerMessageLocation location
+                    ) {
+                        try {
+                            synchronized (output) {
+                                CompileDaemonProtocol.writeMessage(output, severity, message, location);
+                                output.flush();
+                            }
+                        }
+                        catch (IOException e) {
+                            throw new RuntimeException("Failed to send a message to the client", e);
+                        }
+                    }
+                });
+                break;
+            case CompileDaemonProtocol.SHUTDOWN:
+                exitCode = ExitCode.OK;
+                break;
+            default:
+                throw new IOException("Unknown command: " + command);
+        }
+
+        output.writeByte(CompileDaemonProtocol.EXIT);
+        output.writeByte(exitCode.ordinal());
+        output.flush();
+
+        return command != CompileDaemonProtocol.SHUTDOWN;
+    }
+
+    @NotNull
+    private static ExitCode compile(@NotNull String[] args, @NotNull MessageCollector messageCollector) {
+        K2JVMCompilerArguments arguments = new K2JVMCompilerArguments();
+        try {
+            arguments.freeArgs = Args.parse(arguments, args);
+        }
+        catch (IllegalArgumentException e) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, e.getMessage(), CompilerMessageLocation.NO_LOCATION);
+            return ExitCode.INTERNAL_ERROR;
+        }
+        catch (Throwable t) {
+            messageCollector.report(CompilerMessageSeverity.EXCEPTION, OutputMessageUtil.renderException(t),
+                                    CompilerMessageLocation.NO_LOCATION);
+            return ExitCode.INTERNAL_ERROR;
+        }
+
+        // Scripts and the REPL need the console of the client, usage is cheap enough to be printed by the client itself
+        if (arguments.script || arguments.help || arguments.extraHelp ||
+            (arguments.module == null && arguments.freeArgs.isEmpty() && !arguments.version)) {
+            messageCollector.report(CompilerMessageSeverity.ERROR, "The compile daemon can only compile source files or modules",
+                                    CompilerMessageLocation.NO_LOCATION);
+            return ExitCode.INTERNAL_ERROR;
+        }
+
+        // Libraries may have been rebuilt since the previous request
+        JetCoreEnvironment.invalidateChangedJars();
+
+        return new K2JVMCompiler().exec(messageCollector, Services.EMPTY, arguments);
+    }
+}
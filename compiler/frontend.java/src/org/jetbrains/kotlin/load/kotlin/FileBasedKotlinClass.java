@@ -136,6 +136,11 @@ public abstract class FileBasedKotlinClass implements KotlinJvmBinaryClass {
         return classHeader;
     }
 
+    @NotNull
+    /* package */ InnerClassesInfo getInnerClasses() {
+        return innerClasses;
+    }
+
     @Override
     public void loadClassAnnotations(@NotNull final AnnotationVisitor annotationVisitor) {
         new ClassReader(getFileContents()).accept(new ClassVisitor(ASM5) {
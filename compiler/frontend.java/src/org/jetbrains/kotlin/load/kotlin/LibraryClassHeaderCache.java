@@ -0,0 +1,224 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.kotlin;
+
+import com.intellij.core.CoreJarFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.load.kotlin.header.KotlinClassHeader;
+import org.jetbrains.kotlin.name.ClassId;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Headers of class files from jars, shared by all compilations in the process (e.g. in JPS, the REPL or the compile daemon),
+ * so that library classes are not read and parsed anew by each compilation.
+ *
+ * An entry is keyed by the path and the modification time of its jar, so a rebuilt jar is read again. The jar is checked
+ * once per root of the jar file system rather than for each class: a changed jar is only read again after the jar file system
+ * has dropped its handler, which opens the jar under a new root (see JetCoreEnvironment#invalidateChangedJars). For this reason
+ * only files of CoreJarFileSystem, used by the compiler, are cached. The least recently
+ * used entries are evicted when the estimated size of the cache exceeds the budget, which is set in megabytes
+ * by the "kotlin.library.class.cache.mb" system property. Zero disables the cache
+ */
+public final class LibraryClassHeaderCache {
+    private static final String JAR_SEPARATOR = "!/";
+    private static final int DEFAULT_MEMORY_BUDGET_MB = 32;
+
+    public static final LibraryClassHeaderCache INSTANCE = new LibraryClassHeaderCache(getMemoryBudgetFromProperty() * 1024L * 1024L);
+
+    private static long getMemoryBudgetFromProperty() {
+        try {
+            return Math.max(0, Long.parseLong(System.getProperty("kotlin.library.class.cache.mb", String.valueOf(DEFAULT_MEMORY_BUDGET_MB))));
+        }
+        catch (NumberFormatException e) {
+            return DEFAULT_MEMORY_BUDGET_MB;
+        }
+    }
+
+    public static final class Key {
+        private final String path;
+        private final long jarTimeStamp;
+        private final long jarLength;
+
+        /* package */ Key(@NotNull String path, long jarTimeStamp, long jarLength) {
+            this.path = path;
+            this.jarTimeStamp = jarTimeStamp;
+            this.jarLength = jarLength;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key key = (Key) o;
+            return jarTimeStamp == key.jarTimeStamp && jarLength == key.jarLength && path.equals(key.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (jarTimeStamp ^ (jarTimeStamp >>> 32));
+            result = 31 * result + (int) (jarLength ^ (jarLength >>> 32));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return path + " (" + jarTimeStamp + ")";
+        }
+    }
+
+    /**
+     * A parsed class file. Its fields are null if the class file was not compiled by Kotlin
+     */
+    public static final class Entry {
+        private static final Entry NOT_A_KOTLIN_CLASS = new Entry(null, null, null);
+
+        public final ClassId classId;
+        public final KotlinClassHeader classHeader;
+        public final FileBasedKotlinClass.InnerClassesInfo innerClasses;
+
+        private Entry(
+                @Nullable ClassId classId,
+                @Nullable KotlinClassHeader classHeader,
+                @Nullable FileBasedKotlinClass.InnerClassesInfo innerClasses
+        ) {
+            this.classId = classId;
+            this.classHeader = classHeader;
+            this.innerClasses = innerClasses;
+        }
+
+        public boolean isKotlinClass() {
+            return classHeader != null;
+        }
+
+        private long estimateSize(@NotNull Key key) {
+            // Object headers, fields and the path
+            long size = 128 + 2L * key.path.length();
+            if (classHeader != null && classHeader.getAnnotationData() != null) {
+                for (String string : classHeader.getAnnotationData()) {
+                    size += 40 + 2L * string.length();
+                }
+            }
+            return size;
+        }
+    }
+
+    private static final class JarStamp {
+        private final long timeStamp;
+        private final long length;
+
+        private JarStamp(long timeStamp, long length) {
+            this.timeStamp = timeStamp;
+            this.length = length;
+        }
+    }
+
+    private final long memoryBudget;
+    // Guarded by this, iterated from the least recently used entry
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, /* accessOrder = */ true);
+    private long totalSize = 0;
+    // Guarded by this, roots of the dropped jar handlers are collected
+    private final Map<VirtualFile, JarStamp> jarStamps = new WeakHashMap<VirtualFile, JarStamp>();
+
+    /* package */ LibraryClassHeaderCache(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * @return a key for a class file from a jar, or null if the file is not from a jar or the cache is disabled
+     */
+    @Nullable
+    public Key createKey(@NotNull VirtualFile file) {
+        if (memoryBudget == 0 || !(file.getFileSystem() instanceof CoreJarFileSystem)) return null;
+
+        String path = file.getPath();
+        int separator = path.indexOf(JAR_SEPARATOR);
+        if (separator < 0) return null;
+
+        JarStamp stamp = getJarStamp(getRoot(file), path.substring(0, separator));
+        if (stamp == null) return null;
+
+        return new Key(path, stamp.timeStamp, stamp.length);
+    }
+
+    @Nullable
+    private synchronized JarStamp getJarStamp(@NotNull VirtualFile root, @NotNull String jarPath) {
+        JarStamp stamp = jarStamps.get(root);
+        if (stamp == null) {
+            File jar = new File(jarPath);
+            long timeStamp = jar.lastModified();
+            // The jar could be removed in the meantime
+            if (timeStamp == 0) return null;
+
+            stamp = new JarStamp(timeStamp, jar.length());
+            jarStamps.put(root, stamp);
+        }
+        return stamp;
+    }
+
+    @NotNull
+    private static VirtualFile getRoot(@NotNull VirtualFile file) {
+        VirtualFile root = file;
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        return root;
+    }
+
+    @Nullable
+    public synchronized Entry get(@NotNull Key key) {
+        return entries.get(key);
+    }
+
+    public void put(@NotNull Key key, @Nullable FileBasedKotlinClass kotlinClass) {
+        Entry entry = kotlinClass == null
+                      ? Entry.NOT_A_KOTLIN_CLASS
+                      : new Entry(kotlinClass.getClassId(), kotlinClass.getClassHeader(), kotlinClass.getInnerClasses());
+        long size = entry.estimateSize(key);
+        if (size > memoryBudget) return;
+
+        synchronized (this) {
+            Entry oldEntry = entries.put(key, entry);
+            totalSize += size - (oldEntry != null ? oldEntry.estimateSize(key) : 0);
+
+            Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+            while (totalSize > memoryBudget && iterator.hasNext()) {
+                Map.Entry<Key, Entry> eldest = iterator.next();
+                iterator.remove();
+                totalSize -= eldest.getValue().estimateSize(eldest.getKey());
+            }
+        }
+    }
+
+    /* package */ synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        jarStamps.clear();
+        totalSize = 0;
+    }
+}
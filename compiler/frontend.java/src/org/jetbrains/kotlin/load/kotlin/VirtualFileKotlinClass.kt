@@ -50,16 +50,32 @@ public class VirtualFileKotlinClass private(
         private val LOG = Logger.getInstance(javaClass<VirtualFileKotlinClass>())
 
         deprecated("Use KotlinBinaryClassCache")
-        fun create(file: VirtualFile): VirtualFileKotlinClass? {
+        fun create(file: VirtualFile): VirtualFileKotlinClass? = create(file, LibraryClassHeaderCache.INSTANCE)
+
+        fun create(file: VirtualFile, cache: LibraryClassHeaderCache): VirtualFileKotlinClass? {
             assert(file.getFileType() == JavaClassFileType.INSTANCE) { "Trying to read binary data from a non-class file $file" }
+
+            val key = cache.createKey(file)
+            if (key != null) {
+                val entry = cache.get(key)
+                if (entry != null) {
+                    if (!entry.isKotlinClass()) return null
+                    return VirtualFileKotlinClass(file, entry.classId!!, entry.classHeader!!, entry.innerClasses!!)
+                }
+            }
+
             val byteContent = file.contentsToByteArray()
             if (byteContent.isEmpty()) return null
 
             try {
-                return FileBasedKotlinClass.create(byteContent) {
+                val kotlinClass = FileBasedKotlinClass.create(byteContent) {
                     name, header, innerClasses ->
                     VirtualFileKotlinClass(file, name, header, innerClasses)
                 }
+                if (key != null) {
+                    cache.put(key, kotlinClass)
+                }
+                return kotlinClass
             }
             catch (e: Throwable) {
                 LOG.warn(renderFileReadingErrorMessage(file))
@@ -23,6 +23,7 @@ import org.jetbrains.kotlin.resolve.jvm.JvmClassName
 import java.util.HashMap
 import java.io.File
 import org.jetbrains.kotlin.load.kotlin.PackagePartClassUtils
+import org.jetbrains.kotlin.resolve.BindingContext
 
 public fun IncrementalCache.getPackagesWithRemovedFiles(sourceFilesToCompile: Collection<JetFile>): Collection<FqName> {
     return getRemovedPackageParts(sourceFilesToCompile).map { it.getPackageFqName() }
@@ -41,6 +42,12 @@ public fun IncrementalCache.getRemovedPackageParts(sourceFilesToCompile: Collect
     return getRemovedPackageParts(sourceFilesToFqName).map { JvmClassName.byInternalName(it) }
 }
 
+public fun IncrementalCache.registerSymbolUsages(sourceFiles: Collection<JetFile>, bindingContext: BindingContext) {
+    for (sourceFile in sourceFiles) {
+        registerSymbolUsages(File(sourceFile.getVirtualFile()!!.getPath()), collectUsedSymbols(sourceFile, bindingContext))
+    }
+}
+
 public fun IncrementalCache.getPackageData(fqName: FqName): ByteArray? {
     return getPackageData(fqName.asString())
 }
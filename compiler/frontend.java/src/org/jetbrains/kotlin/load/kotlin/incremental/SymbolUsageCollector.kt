@@ -0,0 +1,184 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.load.kotlin.incremental
+
+import org.jetbrains.kotlin.descriptors.*
+import org.jetbrains.kotlin.load.java.JvmAbi
+import org.jetbrains.kotlin.load.kotlin.DeserializedResolverUtils
+import org.jetbrains.kotlin.load.kotlin.PackageClassUtils
+import org.jetbrains.kotlin.load.kotlin.incremental.cache.classSymbol
+import org.jetbrains.kotlin.load.kotlin.incremental.cache.memberSymbol
+import org.jetbrains.kotlin.load.kotlin.incremental.cache.subclassSymbol
+import org.jetbrains.kotlin.psi.*
+import org.jetbrains.kotlin.resolve.BindingContext
+import org.jetbrains.kotlin.resolve.DescriptorToSourceUtils
+import org.jetbrains.kotlin.resolve.DescriptorUtils
+import org.jetbrains.kotlin.resolve.OverrideResolver
+import org.jetbrains.kotlin.resolve.calls.model.ResolvedCall
+import org.jetbrains.kotlin.resolve.jvm.JvmClassName
+import org.jetbrains.kotlin.types.TypeUtils
+import java.util.HashSet
+
+/**
+ * Collects symbols (see SymbolUsages.kt) of declarations from other files which are referenced from the given file.
+ * Incremental compilation uses them to find the files affected by a change of a class or a package
+ */
+public fun collectUsedSymbols(file: JetFile, bindingContext: BindingContext): Set<String> {
+    val collector = SymbolUsageCollector(file, bindingContext)
+    file.accept(collector)
+    // Declarations of the file's own package are visible without imports, so any change in the package may affect it
+    collector.symbols.add(classSymbol(PackageClassUtils.getPackageClassInternalName(file.getPackageFqName())))
+    return collector.symbols
+}
+
+private class SymbolUsageCollector(private val file: JetFile, private val bindingContext: BindingContext) : JetTreeVisitorVoid() {
+    val symbols = HashSet<String>()
+
+    override fun visitReferenceExpression(expression: JetReferenceExpression) {
+        super.visitReferenceExpression(expression)
+        recordDescriptor(bindingContext[BindingContext.REFERENCE_TARGET, expression])
+    }
+
+    override fun visitArrayAccessExpression(expression: JetArrayAccessExpression) {
+        super.visitArrayAccessExpression(expression)
+        recordCall(bindingContext[BindingContext.INDEXED_LVALUE_GET, expression])
+        recordCall(bindingContext[BindingContext.INDEXED_LVALUE_SET, expression])
+    }
+
+    override fun visitForExpression(expression: JetForExpression) {
+        super.visitForExpression(expression)
+        val loopRange = expression.getLoopRange() ?: return
+        recordCall(bindingContext[BindingContext.LOOP_RANGE_ITERATOR_RESOLVED_CALL, loopRange])
+        recordCall(bindingContext[BindingContext.LOOP_RANGE_HAS_NEXT_RESOLVED_CALL, loopRange])
+        recordCall(bindingContext[BindingContext.LOOP_RANGE_NEXT_RESOLVED_CALL, loopRange])
+    }
+
+    override fun visitMultiDeclarationEntry(multiDeclarationEntry: JetMultiDeclarationEntry) {
+        super.visitMultiDeclarationEntry(multiDeclarationEntry)
+        recordCall(bindingContext[BindingContext.COMPONENT_RESOLVED_CALL, multiDeclarationEntry])
+    }
+
+    override fun visitProperty(property: JetProperty) {
+        super.visitProperty(property)
+        if (!property.hasDelegate()) return
+        val descriptor = bindingContext[BindingContext.VARIABLE, property] as? PropertyDescriptor ?: return
+        for (accessor in listOf(descriptor.getGetter(), descriptor.getSetter())) {
+            if (accessor != null) {
+                recordCall(bindingContext[BindingContext.DELEGATED_PROPERTY_RESOLVED_CALL, accessor])
+            }
+        }
+    }
+
+    override fun visitClass(klass: JetClass) {
+        super.visitClass(klass)
+        recordSupertypes(klass)
+    }
+
+    override fun visitObjectDeclaration(declaration: JetObjectDeclaration) {
+        super.visitObjectDeclaration(declaration)
+        recordSupertypes(declaration)
+    }
+
+    // A change in any superclass may affect overrides and member resolution in this file, so all of them are dependencies
+    private fun recordSupertypes(classOrObject: JetClassOrObject) {
+        val descriptor = bindingContext[BindingContext.CLASS, classOrObject] ?: return
+        for (supertype in TypeUtils.getAllSupertypes(descriptor.getDefaultType())) {
+            val superclass = supertype.getConstructor().getDeclarationDescriptor() as? ClassDescriptor ?: continue
+            val internalName = getInternalName(superclass) ?: continue
+            symbols.add(classSymbol(internalName))
+            symbols.add(subclassSymbol(internalName))
+        }
+    }
+
+    private fun recordCall(resolvedCall: ResolvedCall<*>?) {
+        if (resolvedCall != null) {
+            recordDescriptor(resolvedCall.getResultingDescriptor())
+        }
+    }
+
+    private fun recordDescriptor(target: DeclarationDescriptor?) {
+        if (target == null) return
+        val descriptor = target.getOriginal()
+
+        when (descriptor) {
+            is PackageViewDescriptor ->
+                symbols.add(classSymbol(PackageClassUtils.getPackageClassInternalName(descriptor.getFqName())))
+            is ClassDescriptor ->
+                recordClass(descriptor)
+            is ConstructorDescriptor ->
+                recordClass(descriptor.getContainingDeclaration())
+            is CallableMemberDescriptor -> {
+                recordMember(descriptor)
+                if (descriptor.getKind() != CallableMemberDescriptor.Kind.DECLARATION) {
+                    OverrideResolver.getOverriddenDeclarations(descriptor).forEach { recordMember(it) }
+                }
+            }
+        }
+    }
+
+    private fun recordClass(descriptor: ClassDescriptor) {
+        if (isDeclaredLocally(descriptor)) return
+
+        if (descriptor.getKind() == ClassKind.ENUM_ENTRY) {
+            // Enum entries are compiled to fields of the enum class
+            val enumClass = descriptor.getContainingDeclaration() as? ClassDescriptor ?: return
+            recordMember(enumClass, descriptor.getName().asString())
+            return
+        }
+
+        symbols.add(classSymbol(getInternalName(descriptor) ?: return))
+    }
+
+    private fun recordMember(descriptor: CallableMemberDescriptor) {
+        if (isDeclaredLocally(descriptor)) return
+
+        val owner = descriptor.getContainingDeclaration()
+        val name = descriptor.getName().asString()
+        when (owner) {
+            is PackageFragmentDescriptor -> {
+                val facade = PackageClassUtils.getPackageClassInternalName(owner.getFqName())
+                symbols.add(classSymbol(facade))
+                symbols.add(memberSymbol(facade, name))
+            }
+            is ClassDescriptor -> {
+                recordMember(owner, name)
+                if (owner.getKind() == ClassKind.CLASS_OBJECT) {
+                    // Constants of a class object are stored in static fields of the outer class
+                    val outerClass = owner.getContainingDeclaration() as? ClassDescriptor ?: return
+                    recordMember(outerClass, name)
+                }
+            }
+        }
+    }
+
+    private fun recordMember(owner: ClassDescriptor, name: String) {
+        val internalName = getInternalName(owner) ?: return
+        symbols.add(classSymbol(internalName))
+        symbols.add(memberSymbol(internalName, name))
+    }
+
+    private fun isDeclaredLocally(descriptor: DeclarationDescriptor): Boolean {
+        return DescriptorUtils.isLocal(descriptor) || DescriptorToSourceUtils.getContainingFile(descriptor) == file
+    }
+
+    private fun getInternalName(descriptor: ClassDescriptor): String? {
+        if (DescriptorUtils.isLocal(descriptor)) return null
+        val classId = DeserializedResolverUtils.kotlinClassIdToJavaClassId(DeserializedResolverUtils.getClassId(descriptor))
+        return JvmClassName.byClassId(classId).getInternalName()
+    }
+}
@@ -26,5 +26,8 @@ public trait IncrementalCache {
 
     public fun getPackageData(fqName: String): ByteArray?
 
+    // Replaces all symbols recorded for the source file, see SymbolUsages.kt for the format of symbols
+    public fun registerSymbolUsages(sourceFile: File, usedSymbols: Collection<String>)
+
     public fun close()
 }
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.load.kotlin.incremental.cache
+
+// Symbols are the units of dependency tracking between source files in incremental compilation.
+// Format: <owner JVM internal name> for a class itself, <owner>#<member name> for a member of a class or a package facade,
+// <owner># for anything inherited from the owner (i.e. the file declares a subclass of it)
+
+private val MEMBER_SEPARATOR = '#'
+
+public fun classSymbol(internalName: String): String = internalName
+
+public fun memberSymbol(ownerInternalName: String, memberName: String): String = "$ownerInternalName$MEMBER_SEPARATOR$memberName"
+
+public fun subclassSymbol(ownerInternalName: String): String = "$ownerInternalName$MEMBER_SEPARATOR"
+
+public fun getSymbolOwner(symbol: String): String = symbol.substringBefore(MEMBER_SEPARATOR)
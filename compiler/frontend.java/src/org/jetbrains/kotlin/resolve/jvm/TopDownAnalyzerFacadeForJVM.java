@@ -94,12 +94,12 @@ public enum TopDownAnalyzerFacadeForJVM {
     }
 
     @NotNull
-    private static AnalysisResult analyzeFilesWithJavaIntegration(
-            Project project,
-            Collection<JetFile> files,
-            BindingTrace trace,
-            TopDownAnalysisParameters topDownAnalysisParameters,
-            ModuleDescriptorImpl module,
+    public static AnalysisResult analyzeFilesWithJavaIntegration(
+            @NotNull Project project,
+            @NotNull Collection<JetFile> files,
+            @NotNull BindingTrace trace,
+            @NotNull TopDownAnalysisParameters topDownAnalysisParameters,
+            @NotNull ModuleDescriptorImpl module,
             @Nullable List<String> moduleIds,
             @Nullable IncrementalCacheProvider incrementalCacheProvider
     ) {
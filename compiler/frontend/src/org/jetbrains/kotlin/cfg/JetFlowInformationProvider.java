@@ -33,7 +33,6 @@ import org.jetbrains.kotlin.cfg.PseudocodeVariablesData.VariableUseState;
 import org.jetbrains.kotlin.cfg.pseudocode.PseudoValue;
 import org.jetbrains.kotlin.cfg.pseudocode.Pseudocode;
 import org.jetbrains.kotlin.cfg.pseudocode.PseudocodePackage;
-import org.jetbrains.kotlin.cfg.pseudocode.PseudocodeUtil;
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.Instruction;
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.InstructionVisitor;
 import org.jetbrains.kotlin.cfg.pseudocode.instructions.JetElementInstruction;
@@ -604,8 +603,7 @@ public class JetFlowInformationProvider {
                         VariableContext ctxt = new VariableUseContext(instruction, reportedDiagnosticMap, in, out);
                         Set<VariableDescriptor> declaredVariables =
                                 pseudocodeVariablesData.getDeclaredVariables(instruction.getOwner(), false);
-                        VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(
-                                instruction, false, trace.getBindingContext());
+                        VariableDescriptor variableDescriptor = pseudocodeVariablesData.getVariableDescriptor(instruction, false);
                         if (variableDescriptor == null || !declaredVariables.contains(variableDescriptor)
                                 || !ExpressionTypingUtils.isLocal(variableDescriptor.getContainingDeclaration(), variableDescriptor)) {
                             return;
@@ -953,7 +951,7 @@ public class JetFlowInformationProvider {
         ) {
             this.instruction = instruction;
             reportedDiagnosticMap = map;
-            variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, true, trace.getBindingContext());
+            variableDescriptor = getPseudocodeVariablesData().getVariableDescriptor(instruction, true);
         }
     }
 
@@ -61,107 +61,181 @@ public fun <D> Pseudocode.collectData(
         updateEdge: (Instruction, Instruction, D) -> D,
         initialDataValue: D
 ): Map<Instruction, Edges<D>> {
-    val edgesMap = LinkedHashMap<Instruction, Edges<D>>()
-    initializeEdgesMap(edgesMap, initialDataValue)
-    edgesMap.put(getStartInstruction(traversalOrder), Edges(initialDataValue, initialDataValue))
-
-    val changed = BooleanArray(1)
-    changed[0] = true
-    while (changed[0]) {
-        changed[0] = false
-        collectDataFromSubgraph(
-                traversalOrder, mergeDataWithLocalDeclarations, edgesMap,
-                mergeEdges, updateEdge, Collections.emptyList<Instruction>(), changed, false)
+    val graph = DataFlowGraph(this, traversalOrder, mergeDataWithLocalDeclarations)
+    val size = graph.nodes.size()
+
+    val initialEdge = Edges(initialDataValue, initialDataValue)
+    val data = ArrayList<Edges<D>>(size)
+    for (i in 0..size - 1) {
+        data.add(initialEdge)
     }
+
+    // Worklist: an instruction is recomputed only if the data of its predecessors has changed since it was computed last time.
+    // Dirty instructions are visited in the traversal order, so the data flows through the whole graph in one pass if there are no loops
+    val dirty = BitSet(size)
+    dirty.set(0, size)
+    var index = dirty.nextSetBit(0)
+    while (index >= 0) {
+        dirty.clear(index)
+        val newValue = graph.computeData(index, data, mergeEdges, updateEdge)
+        if (newValue != null && newValue != data[index]) {
+            data[index] = newValue
+            for (dependent in graph.nodes[index].dependents) {
+                dirty.set(dependent)
+            }
+        }
+        index = dirty.nextSetBit(index + 1)
+        if (index < 0) {
+            index = dirty.nextSetBit(0)
+        }
+    }
+
+    val edgesMap = LinkedHashMap<Instruction, Edges<D>>()
+    fillEdgesMap(edgesMap, graph, data)
     return edgesMap
 }
 
-private fun <D> Pseudocode.initializeEdgesMap(
+private fun <D> Pseudocode.fillEdgesMap(
         edgesMap: MutableMap<Instruction, Edges<D>>,
-        initialDataValue: D
+        graph: DataFlowGraph,
+        data: List<Edges<D>>
 ) {
-    val instructions = getInstructions()
-    val initialEdge = Edges(initialDataValue, initialDataValue)
-    for (instruction in instructions) {
-        edgesMap.put(instruction, initialEdge)
+    for (instruction in getInstructions()) {
+        val index = graph.indexOf(instruction)
+        if (index != null) {
+            edgesMap.put(instruction, data[index])
+        }
         if (instruction is LocalFunctionDeclarationInstruction) {
-            instruction.body.initializeEdgesMap(edgesMap, initialDataValue)
+            instruction.body.fillEdgesMap(edgesMap, graph, data)
         }
     }
 }
 
-private fun <D> Pseudocode.collectDataFromSubgraph(
-        traversalOrder: TraversalOrder,
-        mergeDataWithLocalDeclarations: Boolean,
-        edgesMap: MutableMap<Instruction, Edges<D>>,
-        mergeEdges: (Instruction, Collection<D>) -> Edges<D>,
-        updateEdge: (Instruction, Instruction, D) -> D,
-        previousSubGraphInstructions: Collection<Instruction>,
-        changed: BooleanArray,
-        isLocal: Boolean
+private enum class DataFlowNodeKind {
+    // Start instruction of the analyzed pseudocode, keeps the initial data
+    START
+    // Merges the data coming from the previous instructions
+    MERGE
+    // Local declaration merged with its containing pseudocode, takes the data from the last instruction of its body
+    LOCAL_DECLARATION
+}
+
+private class DataFlowNode(val instruction: Instruction, val kind: DataFlowNodeKind, val previousInstructions: Collection<Instruction>) {
+    var previous: IntArray = IntArray(0)
+    var dependents: IntArray = IntArray(0)
+}
+
+/**
+ * Instructions of a pseudocode and of all its local declarations in the order they are traversed, with the data flow edges
+ * between them resolved to indices once, instead of on each pass over the pseudocode
+ */
+private class DataFlowGraph(
+        pseudocode: Pseudocode,
+        private val traversalOrder: TraversalOrder,
+        private val mergeDataWithLocalDeclarations: Boolean
 ) {
-    val instructions = getInstructions(traversalOrder)
-    val startInstruction = getStartInstruction(traversalOrder)
+    val nodes = ArrayList<DataFlowNode>()
+    private val indices = HashMap<Instruction, Int>()
 
-    for (instruction in instructions) {
-        val isStart = instruction.isStartInstruction(traversalOrder)
-        if (!isLocal && isStart)
-            continue
-
-        fun getPreviousIncludingSubGraphInstructions(): Collection<Instruction> {
-            val previous = instruction.getPreviousInstructions(traversalOrder)
-            if (instruction != startInstruction || previousSubGraphInstructions.isEmpty()) {
-                return previous
+    {
+        addSubgraph(pseudocode, Collections.emptyList<Instruction>(), false)
+        resolveEdges()
+    }
+
+    fun indexOf(instruction: Instruction): Int? = indices[instruction]
+
+    private fun addSubgraph(pseudocode: Pseudocode, previousSubGraphInstructions: Collection<Instruction>, isLocal: Boolean) {
+        val startInstruction = pseudocode.getStartInstruction(traversalOrder)
+
+        for (instruction in pseudocode.getInstructions(traversalOrder)) {
+            if (!isLocal && instruction.isStartInstruction(traversalOrder)) {
+                addNode(DataFlowNode(instruction, DataFlowNodeKind.START, Collections.emptyList<Instruction>()))
+                continue
             }
-            val result = ArrayList(previous)
-            result.addAll(previousSubGraphInstructions)
-            return result
-        }
-        val previousInstructions = getPreviousIncludingSubGraphInstructions()
-
-        fun updateEdgeDataForInstruction(
-                previousValue: Edges<D>?,
-                newValue: Edges<D>?
-        ) {
-            if (previousValue != newValue && newValue != null) {
-                changed[0] = true
-                edgesMap.put(instruction, newValue)
+
+            var previousInstructions = instruction.getPreviousInstructions(traversalOrder)
+            if (instruction == startInstruction && !previousSubGraphInstructions.isEmpty()) {
+                val result = ArrayList(previousInstructions)
+                result.addAll(previousSubGraphInstructions)
+                previousInstructions = result
+            }
+
+            if (instruction is LocalFunctionDeclarationInstruction) {
+                val subroutinePseudocode = instruction.body
+                val previous = if (mergeDataWithLocalDeclarations) previousInstructions else Collections.emptyList<Instruction>()
+                addSubgraph(subroutinePseudocode, previous, true)
+                if (mergeDataWithLocalDeclarations) {
+                    val lastInstruction = subroutinePseudocode.getLastInstruction(traversalOrder)
+                    addNode(DataFlowNode(instruction, DataFlowNodeKind.LOCAL_DECLARATION, Collections.singletonList(lastInstruction)))
+                    continue
+                }
             }
+
+            addNode(DataFlowNode(instruction, DataFlowNodeKind.MERGE, previousInstructions))
+        }
+    }
+
+    private fun addNode(node: DataFlowNode) {
+        indices.put(node.instruction, nodes.size())
+        nodes.add(node)
+    }
+
+    private fun resolveEdges() {
+        val dependents = ArrayList<MutableList<Int>>(nodes.size())
+        for (node in nodes) {
+            dependents.add(ArrayList<Int>(1))
         }
 
-        if (instruction is LocalFunctionDeclarationInstruction) {
-            val subroutinePseudocode = instruction.body
-            val previous = if (mergeDataWithLocalDeclarations) previousInstructions else Collections.emptyList()
-            subroutinePseudocode.collectDataFromSubgraph(
-                    traversalOrder, mergeDataWithLocalDeclarations,
-                    edgesMap, mergeEdges, updateEdge, previous, changed, true)
-            if (mergeDataWithLocalDeclarations) {
-                val lastInstruction = subroutinePseudocode.getLastInstruction(traversalOrder)
-                val previousValue = edgesMap.get(instruction)
-                val newValue = edgesMap.get(lastInstruction)
-                val updatedValue =
-                        if (newValue == null)
-                            null
-                        else
-                            Edges(updateEdge(lastInstruction, instruction, newValue.incoming),
-                                  updateEdge(lastInstruction, instruction, newValue.outgoing))
-                updateEdgeDataForInstruction(previousValue, updatedValue)
-                continue
+        for ((index, node) in nodes.withIndex()) {
+            // Instructions outside of the analyzed pseudocode don't contribute any data
+            val previous = node.previousInstructions.map { indices[it] }.filterNotNull()
+            node.previous = toIntArray(previous)
+            for (previousIndex in previous) {
+                dependents[previousIndex].add(index)
             }
         }
-        val previousDataValue = edgesMap.get(instruction)
 
-        val incomingEdgesData = HashSet<D>()
+        for ((index, node) in nodes.withIndex()) {
+            node.dependents = toIntArray(dependents[index])
+        }
+    }
+
+    private fun toIntArray(list: List<Int>): IntArray {
+        val result = IntArray(list.size())
+        for ((i, value) in list.withIndex()) {
+            result[i] = value
+        }
+        return result
+    }
 
-        for (previousInstruction in previousInstructions) {
-            val previousData = edgesMap.get(previousInstruction)
-            if (previousData != null) {
-                incomingEdgesData.add(updateEdge(
-                        previousInstruction, instruction, previousData.outgoing))
+    // Returns null if the data of the instruction doesn't depend on other instructions
+    fun <D> computeData(
+            index: Int,
+            data: List<Edges<D>>,
+            mergeEdges: (Instruction, Collection<D>) -> Edges<D>,
+            updateEdge: (Instruction, Instruction, D) -> D
+    ): Edges<D>? {
+        val node = nodes[index]
+        val instruction = node.instruction
+        when (node.kind) {
+            DataFlowNodeKind.START -> return null
+            DataFlowNodeKind.LOCAL_DECLARATION -> {
+                if (node.previous.isEmpty()) return null
+                val lastIndex = node.previous[0]
+                val lastInstruction = nodes[lastIndex].instruction
+                val lastData = data[lastIndex]
+                return Edges(updateEdge(lastInstruction, instruction, lastData.incoming),
+                             updateEdge(lastInstruction, instruction, lastData.outgoing))
+            }
+            DataFlowNodeKind.MERGE -> {
+                val incomingEdgesData = HashSet<D>()
+                for (previousIndex in node.previous) {
+                    incomingEdgesData.add(updateEdge(nodes[previousIndex].instruction, instruction, data[previousIndex].outgoing))
+                }
+                return mergeEdges(instruction, incomingEdgesData)
             }
+            else -> throw IllegalStateException("Unknown node kind: ${node.kind}")
         }
-        val mergedData = mergeEdges(instruction, incomingEdgesData)
-        updateEdgeDataForInstruction(previousDataValue, mergedData)
     }
 }
 
@@ -54,7 +54,12 @@ public class PseudocodeVariablesData {
     private final Map<Pseudocode, Set<VariableDescriptor>> declaredVariablesForDeclaration = Maps.newHashMap();
     private final Map<Pseudocode, Set<VariableDescriptor>> usedVariablesForDeclaration = Maps.newHashMap();
 
+    // Both dataflow fixpoints below look up the variables of the same instructions on every iteration
+    private final Map<Instruction, VariableDescriptor> variableDescriptors = Maps.newHashMap();
+    private final Map<Instruction, VariableDescriptor> referencedVariableDescriptors = Maps.newHashMap();
+
     private Map<Instruction, Edges<Map<VariableDescriptor, VariableInitState>>> variableInitializers;
+    private Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> variableUseStatusData;
 
     public PseudocodeVariablesData(@NotNull Pseudocode pseudocode, @NotNull BindingContext bindingContext) {
         this.pseudocode = pseudocode;
@@ -72,6 +77,26 @@ public class PseudocodeVariablesData {
         return pseudocodeVariableDataCollector.getLexicalScopeVariableInfo();
     }
 
+    /**
+     * Same as {@link PseudocodeUtil#extractVariableDescriptorIfAny}, but the result is cached per instruction
+     */
+    @Nullable
+    public VariableDescriptor getVariableDescriptor(@NotNull Instruction instruction, boolean onlyReference) {
+        if (!(instruction instanceof ReadValueInstruction) &&
+            !(instruction instanceof WriteValueInstruction) &&
+            !(instruction instanceof VariableDeclarationInstruction)) {
+            return null;
+        }
+
+        Map<Instruction, VariableDescriptor> cache = onlyReference ? referencedVariableDescriptors : variableDescriptors;
+        VariableDescriptor descriptor = cache.get(instruction);
+        if (descriptor == null && !cache.containsKey(instruction)) {
+            descriptor = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, onlyReference, bindingContext);
+            cache.put(instruction, descriptor);
+        }
+        return descriptor;
+    }
+
     @NotNull
     public Set<VariableDescriptor> getUsedVariables(@NotNull Pseudocode pseudocode) {
         Set<VariableDescriptor> usedVariables = usedVariablesForDeclaration.get(pseudocode);
@@ -80,8 +105,7 @@ public class PseudocodeVariablesData {
             PseudocodeTraverserPackage.traverse(pseudocode, FORWARD, new Function1<Instruction, Unit>() {
                 @Override
                 public Unit invoke(@NotNull Instruction instruction) {
-                    VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(
-                            instruction, false, bindingContext);
+                    VariableDescriptor variableDescriptor = getVariableDescriptor(instruction, false);
                     if (variableDescriptor != null) {
                         result.add(variableDescriptor);
                     }
@@ -222,7 +246,7 @@ public class PseudocodeVariablesData {
         if (!(instruction instanceof WriteValueInstruction) && !(instruction instanceof VariableDeclarationInstruction)) {
             return enterInstructionData;
         }
-        VariableDescriptor variable = PseudocodeUtil.extractVariableDescriptorIfAny(instruction, false, bindingContext);
+        VariableDescriptor variable = getVariableDescriptor(instruction, false);
         if (variable == null) {
             return enterInstructionData;
         }
@@ -251,6 +275,15 @@ public class PseudocodeVariablesData {
 
     @NotNull
     public Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> getVariableUseStatusData() {
+        if (variableUseStatusData == null) {
+            variableUseStatusData = computeVariableUseStatusData();
+        }
+
+        return variableUseStatusData;
+    }
+
+    @NotNull
+    private Map<Instruction, Edges<Map<VariableDescriptor, VariableUseState>>> computeVariableUseStatusData() {
         return pseudocodeVariableDataCollector.collectData(
                 BACKWARD, /*mergeDataWithLocalDeclarations=*/ true,
                 new InstructionDataMergeStrategy<VariableUseState>() {
@@ -269,8 +302,7 @@ public class PseudocodeVariablesData {
                                 enterResult.put(variableDescriptor, variableUseState.merge(enterResult.get(variableDescriptor)));
                             }
                         }
-                        VariableDescriptor variableDescriptor = PseudocodeUtil.extractVariableDescriptorIfAny(
-                                instruction, true, bindingContext);
+                        VariableDescriptor variableDescriptor = getVariableDescriptor(instruction, true);
                         if (variableDescriptor == null ||
                             (!(instruction instanceof ReadValueInstruction) && !(instruction instanceof WriteValueInstruction))) {
                             return new Edges<Map<VariableDescriptor, VariableUseState>>(enterResult, enterResult);
@@ -19,6 +19,7 @@ package org.jetbrains.kotlin.context
 import org.jetbrains.kotlin.storage.StorageManager
 import org.jetbrains.kotlin.storage.ExceptionTracker
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
+import org.jetbrains.kotlin.storage.ConcurrentStorageManager
 
 public trait GlobalContext {
     public val storageManager: StorageManager
@@ -42,6 +43,14 @@ public fun GlobalContext(): GlobalContextImpl {
     return GlobalContextImpl(LockBasedStorageManager.createWithExceptionHandling(tracker), tracker)
 }
 
+/**
+ * A context for analysis running in several threads: unrelated lazy values and memoized functions are computed without blocking each other
+ */
+public fun ConcurrentGlobalContext(): GlobalContext {
+    val tracker = ExceptionTracker()
+    return SimpleGlobalContext(ConcurrentStorageManager.createWithExceptionHandling(tracker), tracker)
+}
+
 deprecated("Used temporarily while we are in transition from to lazy resolve")
 public open class LazinessToken {
     deprecated("Used temporarily while we are in transition from to lazy resolve")
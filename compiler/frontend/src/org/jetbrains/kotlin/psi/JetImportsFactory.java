@@ -42,7 +42,7 @@ public class JetImportsFactory {
     }
 
     @NotNull
-    public JetImportDirective createImportDirective(@NotNull ImportPath importPath) {
+    public synchronized JetImportDirective createImportDirective(@NotNull ImportPath importPath) {
         JetImportDirective directive = importsCache.get(importPath);
         if (directive != null) {
             return directive;
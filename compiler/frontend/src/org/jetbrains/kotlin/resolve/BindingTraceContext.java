@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.resolve;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
@@ -31,6 +32,9 @@ public class BindingTraceContext implements BindingTrace {
     /* package */ final static boolean TRACK_REWRITES = false;
     /* package */ final static boolean TRACK_WITH_STACK_TRACES = true;
 
+    // Bindings are stored in PartitionedSlicedMap instead of SlicedMapImpl if this property is set
+    private final static boolean USE_PARTITIONED_MAP = Boolean.getBoolean("kotlin.binding.map.partitioned");
+
     private final MutableSlicedMap map;
     private final MutableDiagnosticsWithSuppression mutableDiagnostics;
 
@@ -62,16 +66,33 @@ public class BindingTraceContext implements BindingTrace {
     };
 
     public BindingTraceContext() {
-        //noinspection ConstantConditions
-        this(TRACK_REWRITES ? new TrackingSlicedMap(TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create());
+        this(false);
     }
 
+    protected BindingTraceContext(boolean threadSafe) {
+        this(threadSafe ? new SynchronizedSlicedMap(createMap()) : createMap());
+    }
 
     private BindingTraceContext(@NotNull MutableSlicedMap map) {
         this.map = map;
         this.mutableDiagnostics = new MutableDiagnosticsWithSuppression(bindingContext, Diagnostics.EMPTY);
     }
 
+    @NotNull
+    /* package */ static MutableSlicedMap createMap() {
+        //noinspection ConstantConditions
+        if (TRACK_REWRITES) return new TrackingSlicedMap(TRACK_WITH_STACK_TRACES);
+        return USE_PARTITIONED_MAP ? PartitionedSlicedMap.create() : SlicedMapImpl.create();
+    }
+
+    /**
+     * Creates a trace which can be read and written from several threads at once, e.g. during parallel body resolution
+     */
+    @NotNull
+    public static BindingTraceContext createThreadSafe() {
+        return new BindingTraceContext(true);
+    }
+
     @TestOnly
     public static BindingTraceContext createTraceableBindingTrace() {
         return new BindingTraceContext(new TrackingSlicedMap(TRACK_WITH_STACK_TRACES));
@@ -79,13 +100,23 @@ public class BindingTraceContext implements BindingTrace {
 
     @Override
     public void report(@NotNull Diagnostic diagnostic) {
-        mutableDiagnostics.report(diagnostic);
+        synchronized (mutableDiagnostics) {
+            mutableDiagnostics.report(diagnostic);
+        }
     }
 
     public void clearDiagnostics() {
         mutableDiagnostics.clear();
     }
 
+    /**
+     * Forgets everything recorded for the keys satisfying the predicate, in all slices. Diagnostics are kept.
+     * Used to release the results of analysis which are not going to be read anymore
+     */
+    public void removeRecords(@NotNull Predicate<Object> keyPredicate) {
+        map.removeKeys(keyPredicate);
+    }
+
     @NotNull
     @Override
     public BindingContext getBindingContext() {
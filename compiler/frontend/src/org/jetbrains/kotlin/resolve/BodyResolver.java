@@ -31,14 +31,23 @@ import org.jetbrains.kotlin.resolve.calls.util.CallMaker;
 import org.jetbrains.kotlin.resolve.constants.CompileTimeConstant;
 import org.jetbrains.kotlin.resolve.scopes.*;
 import org.jetbrains.kotlin.resolve.scopes.receivers.ReceiverValue;
+import org.jetbrains.kotlin.storage.ConcurrentStorageManager;
 import org.jetbrains.kotlin.types.*;
+import org.jetbrains.kotlin.types.checker.SubtypingCache;
 import org.jetbrains.kotlin.types.expressions.ExpressionTypingServices;
 import org.jetbrains.kotlin.util.Box;
 import org.jetbrains.kotlin.util.ReenteringLazyValueComputationException;
 import org.jetbrains.kotlin.util.slicedMap.WritableSlice;
+import org.jetbrains.kotlin.utils.PerformanceReport;
+import org.jetbrains.kotlin.utils.UtilsPackage;
 
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.jetbrains.kotlin.descriptors.ReceiverParameterDescriptor.NO_RECEIVER_PARAMETER;
 import static org.jetbrains.kotlin.diagnostics.Errors.*;
@@ -132,10 +141,18 @@ public class BodyResolver {
     }
 
     public void resolveBodies(@NotNull BodiesResolveContext c) {
+        PerformanceReport performanceReport = c.getTopDownAnalysisParameters().getPerformanceReport();
+
+        PerformanceReport.Phase resolveBodies = performanceReport.start(PerformanceReport.RESOLVE_BODIES);
         resolveBehaviorDeclarationBodies(c);
+        resolveBodies.end();
+
+        // Declaration checks and function analyzer extensions are counted together with the control flow analysis
+        PerformanceReport.Phase cfa = performanceReport.start(PerformanceReport.CFA);
         controlFlowAnalyzer.process(c);
         declarationsChecker.process(c);
         functionAnalyzerExtension.process(c);
+        cfa.end();
     }
 
     private void resolveDelegationSpecifierLists(@NotNull BodiesResolveContext c) {
@@ -577,6 +594,12 @@ public class BodyResolver {
     }
 
     private void resolveFunctionBodies(@NotNull BodiesResolveContext c) {
+        int threads = c.getTopDownAnalysisParameters().getBodyResolveThreads();
+        if (threads > 1 && c.getFunctions().size() > 1 && canResolveInParallel(c)) {
+            resolveFunctionBodiesInParallel(c, threads);
+            return;
+        }
+
         for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : c.getFunctions().entrySet()) {
             JetNamedFunction declaration = entry.getKey();
             SimpleFunctionDescriptor descriptor = entry.getValue();
@@ -595,6 +618,98 @@ public class BodyResolver {
         }
     }
 
+    // Workers share the state below, which is known to be safe to use from several threads:
+    //  - lazy descriptors, lazy scopes and deferred types created on the storage manager, which is concurrent here;
+    //  - declared return types: they are computed on the submitting thread before a body is handed to a worker;
+    //  - the main trace (see BindingTraceContext.createThreadSafe), which lazy resolution started by a worker records into;
+    //  - member scopes of interned types (SubstitutingScope), writable scopes locked for reading (reads don't allocate),
+    //    the call resolver extension cache and the imports factory, which synchronize their caches.
+    // Everything else a body resolution creates (local scopes, local deferred types, resolution caches) is confined to its worker.
+    // Non-lazy analysis creates scopes and descriptors that were not reviewed for this, so it always resolves sequentially
+    private static boolean canResolveInParallel(@NotNull BodiesResolveContext c) {
+        TopDownAnalysisParameters parameters = c.getTopDownAnalysisParameters();
+        return parameters.isLazy() && parameters.getStorageManager() instanceof ConcurrentStorageManager;
+    }
+
+    // Each body is resolved into its own trace, which is merged into the main one in declaration order,
+    // so diagnostics and recorded data do not depend on the order in which the workers finish
+    private void resolveFunctionBodiesInParallel(@NotNull final BodiesResolveContext c, int threads) {
+        List<Future<DelegatingBindingTrace>> shards = new ArrayList<Future<DelegatingBindingTrace>>(c.getFunctions().size());
+
+        // Workers do a part of the same analysis, so they share the subtyping cache entered by the caller, if any
+        final SubtypingCache subtypingCache = SubtypingCache.getCurrent();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Map.Entry<JetNamedFunction, SimpleFunctionDescriptor> entry : c.getFunctions().entrySet()) {
+                final JetNamedFunction declaration = entry.getKey();
+                final SimpleFunctionDescriptor descriptor = entry.getValue();
+
+                computeDeferredType(descriptor.getReturnType());
+
+                final JetScope declaringScope = c.getDeclaringScopes().apply(declaration);
+                assert declaringScope != null;
+
+                if (!c.getTopDownAnalysisParameters().isLazy()) {
+                    resolveAnnotationArguments(declaringScope, declaration);
+                }
+
+                shards.add(executor.submit(new Callable<DelegatingBindingTrace>() {
+                    @Override
+                    public DelegatingBindingTrace call() {
+                        SubtypingCache.Scope subtypingCacheScope = subtypingCache != null ? subtypingCache.enter() : null;
+                        try {
+                            DelegatingBindingTrace shard =
+                                    new DelegatingBindingTrace(trace.getBindingContext(), "Parallel body resolution", declaration);
+                            resolveFunctionBody(c, shard, declaration, descriptor, declaringScope);
+                            // Deferred types created during the resolution write to the shard, so they should be computed before it is merged
+                            forceDeferredTypes(shard.getKeys(DEFERRED_TYPE));
+                            return shard;
+                        }
+                        finally {
+                            if (subtypingCacheScope != null) {
+                                subtypingCacheScope.exit();
+                            }
+                        }
+                    }
+                }));
+            }
+
+            for (Future<DelegatingBindingTrace> shard : shards) {
+                getResult(shard).addAllMyDataTo(trace);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @NotNull
+    private static <T> T getResult(@NotNull Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            throw UtilsPackage.rethrow(e.getCause());
+        }
+        catch (InterruptedException e) {
+            throw UtilsPackage.rethrow(e);
+        }
+    }
+
+    private static void forceDeferredTypes(@NotNull Collection<Box<DeferredType>> deferredTypes) {
+        for (Box<DeferredType> deferredType : deferredTypes) {
+            if (!deferredType.getData().isComputed()) {
+                try {
+                    deferredType.getData().getDelegate(); // to compute
+                }
+                catch (ReenteringLazyValueComputationException e) {
+                    // A problem should be reported while computing the type
+                }
+            }
+        }
+    }
+
     public void resolveFunctionBody(
             @NotNull BodiesResolveContext c,
             @NotNull BindingTrace trace,
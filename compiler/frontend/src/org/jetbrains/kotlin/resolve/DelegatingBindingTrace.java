@@ -32,8 +32,7 @@ import java.util.List;
 import java.util.Map;
 
 public class DelegatingBindingTrace implements BindingTrace {
-    @SuppressWarnings("ConstantConditions")
-    private final MutableSlicedMap map = BindingTraceContext.TRACK_REWRITES ? new TrackingSlicedMap(BindingTraceContext.TRACK_WITH_STACK_TRACES) : SlicedMapImpl.create();
+    private final MutableSlicedMap map;
 
     private final BindingContext parentContext;
     private final String name;
@@ -70,6 +69,12 @@ public class DelegatingBindingTrace implements BindingTrace {
     };
 
     public DelegatingBindingTrace(BindingContext parentContext, String debugName) {
+        this(parentContext, debugName, false);
+    }
+
+    private DelegatingBindingTrace(BindingContext parentContext, String debugName, boolean threadSafe) {
+        MutableSlicedMap map = BindingTraceContext.createMap();
+        this.map = threadSafe ? new SynchronizedSlicedMap(map) : map;
         this.parentContext = parentContext;
         this.name = debugName;
         this.mutableDiagnostics = new MutableDiagnosticsWithSuppression(bindingContext, parentContext.getDiagnostics());
@@ -79,6 +84,14 @@ public class DelegatingBindingTrace implements BindingTrace {
         this(parentContext, AnalyzingUtils.formDebugNameForBindingTrace(debugName, resolutionSubjectForMessage));
     }
 
+    /**
+     * Creates a trace which can be accessed from several threads at once. The parent context should be thread-safe as well
+     */
+    @NotNull
+    public static DelegatingBindingTrace createThreadSafe(@NotNull BindingContext parentContext, @NotNull String debugName) {
+        return new DelegatingBindingTrace(parentContext, debugName, true);
+    }
+
     @Override
     @NotNull
     public BindingContext getBindingContext() {
@@ -161,7 +174,9 @@ public class DelegatingBindingTrace implements BindingTrace {
 
     @Override
     public void report(@NotNull Diagnostic diagnostic) {
-        mutableDiagnostics.report(diagnostic);
+        synchronized (mutableDiagnostics) {
+            mutableDiagnostics.report(diagnostic);
+        }
     }
 
     @Override
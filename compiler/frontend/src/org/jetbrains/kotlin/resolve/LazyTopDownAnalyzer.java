@@ -33,6 +33,7 @@ import org.jetbrains.kotlin.resolve.lazy.LazyImportScope;
 import org.jetbrains.kotlin.resolve.lazy.descriptors.LazyClassDescriptor;
 import org.jetbrains.kotlin.resolve.resolveUtil.ResolveUtilPackage;
 import org.jetbrains.kotlin.resolve.varianceChecker.VarianceChecker;
+import org.jetbrains.kotlin.utils.PerformanceReport;
 
 import javax.inject.Inject;
 import java.util.ArrayList;
@@ -141,6 +142,10 @@ public class LazyTopDownAnalyzer {
     ) {
         assert topDownAnalysisParameters.isLazy() : "Lazy analyzer is run in non-lazy mode";
 
+        PerformanceReport performanceReport = topDownAnalysisParameters.getPerformanceReport();
+        // Not in try/finally: the phase is not interesting if analysis fails with an exception
+        PerformanceReport.Phase resolveDeclarations = performanceReport.start(PerformanceReport.RESOLVE_DECLARATIONS);
+
         final TopDownAnalysisContext c = new TopDownAnalysisContext(topDownAnalysisParameters);
         final Multimap<FqName, JetElement> topLevelFqNames = HashMultimap.create();
 
@@ -309,6 +314,10 @@ public class LazyTopDownAnalyzer {
 
         overloadResolver.process(c);
 
+        resolveDeclarations.end();
+        performanceReport.count(PerformanceReport.DESCRIPTORS,
+                                c.getAllClasses().size() + c.getFunctions().size() + c.getProperties().size());
+
         bodyResolver.resolveBodies(c);
 
         return c;
@@ -23,6 +23,7 @@ import org.jetbrains.kotlin.context.GlobalContext;
 import org.jetbrains.kotlin.context.LazinessToken;
 import org.jetbrains.kotlin.storage.ExceptionTracker;
 import org.jetbrains.kotlin.storage.StorageManager;
+import org.jetbrains.kotlin.utils.PerformanceReport;
 
 /**
  * Various junk that cannot be placed into context (yet).
@@ -44,7 +45,7 @@ public class TopDownAnalysisParameters extends LazinessToken implements GlobalCo
             boolean declaredLocally
     ) {
         return new TopDownAnalysisParameters(storageManager, exceptionTracker, analyzeCompletely, analyzingBootstrapLibrary,
-                                             declaredLocally, LAZY);
+                                             declaredLocally, LAZY, 1, PerformanceReport.DISABLED);
     }
 
     @NotNull
@@ -53,7 +54,8 @@ public class TopDownAnalysisParameters extends LazinessToken implements GlobalCo
             @NotNull ExceptionTracker exceptionTracker,
             @NotNull Predicate<PsiFile> analyzeCompletely
     ) {
-        return new TopDownAnalysisParameters(storageManager, exceptionTracker, analyzeCompletely, false, true, false);
+        return new TopDownAnalysisParameters(storageManager, exceptionTracker, analyzeCompletely, false, true, false, 1,
+                                             PerformanceReport.DISABLED);
     }
 
     @NotNull private final StorageManager storageManager;
@@ -62,6 +64,8 @@ public class TopDownAnalysisParameters extends LazinessToken implements GlobalCo
     private final boolean analyzingBootstrapLibrary;
     private final boolean declaredLocally;
     private final boolean lazyTopDownAnalysis;
+    private final int bodyResolveThreads;
+    @NotNull private final PerformanceReport performanceReport;
 
     private TopDownAnalysisParameters(
             @NotNull StorageManager storageManager,
@@ -69,7 +73,9 @@ public class TopDownAnalysisParameters extends LazinessToken implements GlobalCo
             @NotNull Predicate<PsiFile> analyzeCompletely,
             boolean analyzingBootstrapLibrary,
             boolean declaredLocally,
-            boolean lazyTopDownAnalysis
+            boolean lazyTopDownAnalysis,
+            int bodyResolveThreads,
+            @NotNull PerformanceReport performanceReport
     ) {
         this.storageManager = storageManager;
         this.exceptionTracker = exceptionTracker;
@@ -77,6 +83,29 @@ public class TopDownAnalysisParameters extends LazinessToken implements GlobalCo
         this.analyzingBootstrapLibrary = analyzingBootstrapLibrary;
         this.declaredLocally = declaredLocally;
         this.lazyTopDownAnalysis = lazyTopDownAnalysis;
+        this.bodyResolveThreads = bodyResolveThreads;
+        this.performanceReport = performanceReport;
+    }
+
+    /**
+     * Function bodies will be resolved on {@code threads} worker threads if it's greater than 1.
+     * The trace passed to the analyzer along with these parameters must be thread-safe in that case
+     * (see {@link BindingTraceContext#createThreadSafe()})
+     */
+    @NotNull
+    public TopDownAnalysisParameters withBodyResolveThreads(int threads) {
+        assert threads > 0 : "Number of body resolve threads should be positive: " + threads;
+        return new TopDownAnalysisParameters(storageManager, exceptionTracker, analyzeCompletely, analyzingBootstrapLibrary,
+                                             declaredLocally, lazyTopDownAnalysis, threads, performanceReport);
+    }
+
+    /**
+     * Time spent in the analysis phases will be recorded to the given report
+     */
+    @NotNull
+    public TopDownAnalysisParameters withPerformanceReport(@NotNull PerformanceReport report) {
+        return new TopDownAnalysisParameters(storageManager, exceptionTracker, analyzeCompletely, analyzingBootstrapLibrary,
+                                             declaredLocally, lazyTopDownAnalysis, bodyResolveThreads, report);
     }
 
     @Override
@@ -104,6 +133,15 @@ public class TopDownAnalysisParameters extends LazinessToken implements GlobalCo
         return declaredLocally;
     }
 
+    public int getBodyResolveThreads() {
+        return bodyResolveThreads;
+    }
+
+    @NotNull
+    public PerformanceReport getPerformanceReport() {
+        return performanceReport;
+    }
+
     // Used temporarily while we are transitioning from eager to lazy analysis of headers in the IDE
     @Override
     @Deprecated
@@ -44,8 +44,9 @@ public class CallResolverExtensionProvider {
     }
 
     // create extension list with default one at the end
+    // synchronized: one provider serves all body resolution threads
     @NotNull
-    private List<CallResolverExtension> createExtensions(@NotNull DeclarationDescriptor declaration) {
+    private synchronized List<CallResolverExtension> createExtensions(@NotNull DeclarationDescriptor declaration) {
         Map<DeclarationDescriptor, List<CallResolverExtension>> map;
         if (extensionsCache == null || (map = extensionsCache.get()) == null) {
             map = new HashMap<DeclarationDescriptor, List<CallResolverExtension>>();
@@ -118,7 +118,7 @@ public class WritableScopeImpl(scope: JetScope,
         checkMayRead()
 
         val superResult = super.getDeclarationsByLabel(labelName)
-        val declarationDescriptors = getLabelsToDescriptors()[labelName]
+        val declarationDescriptors = labelsToDescriptors?.get(labelName)
         if (declarationDescriptors == null) return superResult
         if (superResult.isEmpty()) return declarationDescriptors
         return declarationDescriptors + superResult
@@ -179,7 +179,7 @@ public class WritableScopeImpl(scope: JetScope,
     override fun getProperties(name: Name): Set<VariableDescriptor> {
         checkMayRead()
 
-        val result = Sets.newLinkedHashSet(getPropertyGroups().get(name))
+        val result = Sets.newLinkedHashSet(propertyGroups?.get(name) ?: setOf())
 
         result.addAll(workerScope.getProperties(name))
 
@@ -191,8 +191,8 @@ public class WritableScopeImpl(scope: JetScope,
     override fun getLocalVariable(name: Name): VariableDescriptor? {
         checkMayRead()
 
-        val descriptor = getVariableOrClassDescriptors()[name]
-        if (descriptor is VariableDescriptor && !getPropertyGroups()[name].contains(descriptor)) {
+        val descriptor = variableOrClassDescriptors?.get(name)
+        if (descriptor is VariableDescriptor && propertyGroups?.containsEntry(name, descriptor) != true) {
             return descriptor
         }
 
@@ -223,7 +223,7 @@ public class WritableScopeImpl(scope: JetScope,
     override fun getFunctions(name: Name): Collection<FunctionDescriptor> {
         checkMayRead()
 
-        val result = Sets.newLinkedHashSet(getFunctionGroups().get(name))
+        val result = Sets.newLinkedHashSet(functionGroups?.get(name) ?: setOf())
 
         result.addAll(workerScope.getFunctions(name))
 
@@ -305,7 +305,7 @@ public class WritableScopeImpl(scope: JetScope,
     override fun getClassifier(name: Name): ClassifierDescriptor? {
         checkMayRead()
 
-        return getVariableOrClassDescriptors()[name] as? ClassifierDescriptor
+        return variableOrClassDescriptors?.get(name) as? ClassifierDescriptor
                ?: workerScope.getClassifier(name)
                ?: super.getClassifier(name)
     }
@@ -313,7 +313,7 @@ public class WritableScopeImpl(scope: JetScope,
     override fun getPackage(name: Name): PackageViewDescriptor? {
         checkMayRead()
 
-        return getPackageAliases().get(name)
+        return packageAliases?.get(name)
                ?: workerScope.getPackage(name)
                ?: super.getPackage(name)
     }
@@ -30,7 +30,7 @@ public abstract class WritableScopeWithImports(override val workerScope: JetScop
 
     private var imports: MutableList<JetScope>? = null
     private var currentIndividualImportScope: WritableScope? = null
-    private var implicitReceiverHierarchy: List<ReceiverParameterDescriptor>? = null
+    volatile private var implicitReceiverHierarchy: List<ReceiverParameterDescriptor>? = null
 
 
     private var lockLevel: WritableScope.LockLevel = WritableScope.LockLevel.WRITING
@@ -39,7 +39,9 @@ public abstract class WritableScopeWithImports(override val workerScope: JetScop
         if (lockLevel.ordinal() < this.lockLevel.ordinal()) {
             throw IllegalStateException("cannot lower lock level from " + this.lockLevel + " to " + lockLevel + " at " + toString())
         }
-        this.lockLevel = lockLevel
+        if (this.lockLevel != lockLevel) {
+            this.lockLevel = lockLevel
+        }
         return this
     }
 
@@ -61,12 +63,8 @@ public abstract class WritableScopeWithImports(override val workerScope: JetScop
         }
     }
 
-    protected fun getImports(): MutableList<JetScope> {
-        if (imports == null) {
-            imports = ArrayList<JetScope>()
-        }
-        return imports!!
-    }
+    // Scopes locked for reading may be shared between body resolution threads, so reads must not allocate state
+    protected fun getImports(): List<JetScope> = imports ?: listOf()
 
     override fun importScope(imported: JetScope) {
         if (imported == this) {
@@ -75,17 +73,22 @@ public abstract class WritableScopeWithImports(override val workerScope: JetScop
 
         checkMayWrite()
 
-        getImports().add(0, imported)
+        if (imports == null) {
+            imports = ArrayList<JetScope>()
+        }
+        imports!!.add(0, imported)
         currentIndividualImportScope = null
     }
 
     override fun getImplicitReceiversHierarchy(): List<ReceiverParameterDescriptor> {
         checkMayRead()
 
-        if (implicitReceiverHierarchy == null) {
-            implicitReceiverHierarchy = computeImplicitReceiversHierarchy()
-        }
-        return implicitReceiverHierarchy!!
+        val hierarchy = implicitReceiverHierarchy
+        if (hierarchy != null) return hierarchy
+
+        val computed = computeImplicitReceiversHierarchy()
+        implicitReceiverHierarchy = computed
+        return computed
     }
 
     protected open fun computeImplicitReceiversHierarchy(): List<ReceiverParameterDescriptor> {
@@ -196,7 +199,7 @@ public abstract class WritableScopeWithImports(override val workerScope: JetScop
 
     override fun clearImports() {
         currentIndividualImportScope = null
-        getImports().clear()
+        imports?.clear()
     }
 
     override fun toString(): String {
@@ -57,6 +57,14 @@ public class BasicWritableSlice<K, V> implements WritableSlice<K, V> {
         return new SlicedMapKey<K, V>(this, key);
     }
 
+    /**
+     * True if {@link #makeKey(Object)} returns a key of this slice with the given key object as is.
+     * Maps that don't need {@link SlicedMapKey} instances rely on it, so subclasses overriding makeKey() should override this too
+     */
+    public boolean storesKeysAsIs() {
+        return true;
+    }
+
     // True to put, false to skip
     @Override
     public boolean check(K key, V value) {
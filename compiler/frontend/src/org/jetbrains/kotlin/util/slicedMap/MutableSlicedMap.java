@@ -16,6 +16,7 @@
 
 package org.jetbrains.kotlin.util.slicedMap;
 
+import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.TestOnly;
@@ -28,6 +29,11 @@ public interface MutableSlicedMap extends SlicedMap {
 
     void clear();
 
+    /**
+     * Removes the entries of all slices whose keys satisfy the given predicate
+     */
+    void removeKeys(@NotNull Predicate<Object> keyPredicate);
+
     @NotNull
     @TestOnly
     <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice);
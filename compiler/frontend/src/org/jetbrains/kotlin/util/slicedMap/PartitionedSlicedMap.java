@@ -0,0 +1,378 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Keeps the values of each slice in a separate open-addressing table, so that no {@link SlicedMapKey} is created on put() and get()
+ * (unless the slice normalizes keys or delegates to another one, see {@link BasicWritableSlice#storesKeysAsIs()}),
+ * and keys of collective slices don't have to be stored separately.
+ *
+ * Keys are compared with equals(), which is identity for most of them (PSI elements and descriptors).
+ * Entries of a slice are iterated in the insertion order, slices are iterated in the order of their first put.
+ */
+public class PartitionedSlicedMap implements MutableSlicedMap {
+    private static final int INITIAL_SLICE_CAPACITY = 8;
+
+    @NotNull
+    public static PartitionedSlicedMap create() {
+        return new PartitionedSlicedMap();
+    }
+
+    // Open-addressing table: slice (by identity) -> its entries
+    private WritableSlice<?, ?>[] slices = new WritableSlice<?, ?>[INITIAL_SLICE_CAPACITY];
+    private SliceTable[] tables = new SliceTable[INITIAL_SLICE_CAPACITY];
+    private final List<SliceTable> tablesInOrder = new ArrayList<SliceTable>();
+
+    @Override
+    public <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        if (!slice.check(key, value)) {
+            return;
+        }
+
+        WritableSlice<?, ?> storageSlice = slice;
+        Object storageKey = key;
+        if (!storesKeysAsIs(slice)) {
+            SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+            storageSlice = slicedMapKey.getSlice();
+            storageKey = slicedMapKey.getKey();
+        }
+
+        SliceTable table = getOrCreateTable(storageSlice);
+        RewritePolicy rewritePolicy = slice.getRewritePolicy();
+        if (rewritePolicy.rewriteProcessingNeeded(key)) {
+            int position = table.find(storageKey);
+            if (position >= 0) {
+                //noinspection unchecked
+                if (!rewritePolicy.processRewrite(slice, key, (V) table.values[position], value)) {
+                    return;
+                }
+            }
+        }
+
+        table.put(storageKey, value);
+        slice.afterPut(this, key, value);
+    }
+
+    @Override
+    public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        WritableSlice<?, ?> storageSlice;
+        Object storageKey;
+        if (storesKeysAsIs(slice)) {
+            storageSlice = (WritableSlice<?, ?>) slice;
+            storageKey = key;
+        }
+        else {
+            SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+            storageSlice = slicedMapKey.getSlice();
+            storageKey = slicedMapKey.getKey();
+        }
+
+        SliceTable table = getTable(storageSlice);
+        int position = table == null ? -1 : table.find(storageKey);
+        //noinspection unchecked
+        V value = position >= 0 ? (V) table.values[position] : null;
+        return slice.computeValue(this, key, value, position < 0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        assert slice.isCollective() : "Keys are not collected for slice " + slice;
+        SliceTable table = getTable(slice);
+        return table == null ? Collections.<K>emptyList() : (Collection<K>) table.keys();
+    }
+
+    @Override
+    public <K, V> V remove(RemovableSlice<K, V> slice, K key) {
+        SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
+        SliceTable table = getTable(slicedMapKey.getSlice());
+        //noinspection unchecked
+        return table == null ? null : (V) table.remove(slicedMapKey.getKey());
+    }
+
+    @Override
+    public void clear() {
+        slices = new WritableSlice<?, ?>[INITIAL_SLICE_CAPACITY];
+        tables = new SliceTable[INITIAL_SLICE_CAPACITY];
+        tablesInOrder.clear();
+    }
+
+    @Override
+    public void removeKeys(@NotNull Predicate<Object> keyPredicate) {
+        for (SliceTable table : tablesInOrder) {
+            table.removeKeys(keyPredicate);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> iterator() {
+        List<Map.Entry<SlicedMapKey<?, ?>, ?>> entries = new ArrayList<Map.Entry<SlicedMapKey<?, ?>, ?>>();
+        for (SliceTable table : tablesInOrder) {
+            table.addEntriesTo(entries);
+        }
+        return entries.iterator();
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        SliceTable table = slice instanceof WritableSlice ? getTable((WritableSlice<?, ?>) slice) : null;
+        if (table != null) {
+            for (int i = 0; i < table.size; i++) {
+                if (table.keys[i] != SliceTable.REMOVED) {
+                    builder.put((K) SliceTable.unmaskNull(table.keys[i]), (V) table.values[i]);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static boolean storesKeysAsIs(@NotNull ReadOnlySlice<?, ?> slice) {
+        return slice instanceof BasicWritableSlice && ((BasicWritableSlice) slice).storesKeysAsIs();
+    }
+
+    @Nullable
+    private SliceTable getTable(@NotNull WritableSlice<?, ?> slice) {
+        int mask = slices.length - 1;
+        for (int i = System.identityHashCode(slice) & mask; ; i = (i + 1) & mask) {
+            WritableSlice<?, ?> candidate = slices[i];
+            if (candidate == slice) return tables[i];
+            if (candidate == null) return null;
+        }
+    }
+
+    @NotNull
+    private SliceTable getOrCreateTable(@NotNull WritableSlice<?, ?> slice) {
+        SliceTable table = getTable(slice);
+        if (table != null) return table;
+
+        table = new SliceTable(slice);
+        if ((tablesInOrder.size() + 1) * 2 > slices.length) {
+            WritableSlice<?, ?>[] oldSlices = slices;
+            SliceTable[] oldTables = tables;
+            slices = new WritableSlice<?, ?>[oldSlices.length * 2];
+            tables = new SliceTable[oldTables.length * 2];
+            for (int i = 0; i < oldSlices.length; i++) {
+                if (oldSlices[i] != null) {
+                    addTable(oldSlices[i], oldTables[i]);
+                }
+            }
+        }
+        addTable(slice, table);
+        tablesInOrder.add(table);
+        return table;
+    }
+
+    private void addTable(@NotNull WritableSlice<?, ?> slice, @NotNull SliceTable table) {
+        int mask = slices.length - 1;
+        int i = System.identityHashCode(slice) & mask;
+        while (slices[i] != null) {
+            i = (i + 1) & mask;
+        }
+        slices[i] = slice;
+        tables[i] = table;
+    }
+
+    /**
+     * Entries are stored in the insertion order in {@link #keys} and {@link #values}, {@link #index} is a linear probing table
+     * of positions in these arrays (plus one, so that zero means an empty slot). Removed entries are compacted on resize
+     */
+    private static final class SliceTable {
+        private static final Object NULL_KEY = new Object();
+        private static final Object REMOVED = new Object();
+        private static final int INITIAL_CAPACITY = 4;
+
+        private final WritableSlice<?, ?> slice;
+        private Object[] keys = new Object[INITIAL_CAPACITY];
+        private Object[] values = new Object[INITIAL_CAPACITY];
+        private int[] index = new int[INITIAL_CAPACITY * 2];
+        private int size;
+        private int removedCount;
+
+        SliceTable(@NotNull WritableSlice<?, ?> slice) {
+            this.slice = slice;
+        }
+
+        private static Object maskNull(@Nullable Object key) {
+            return key == null ? NULL_KEY : key;
+        }
+
+        private static Object unmaskNull(@NotNull Object key) {
+            return key == NULL_KEY ? null : key;
+        }
+
+        private static int hash(@NotNull Object key) {
+            int h = key.hashCode();
+            return h ^ (h >>> 16);
+        }
+
+        private int findSlot(@NotNull Object maskedKey) {
+            int mask = index.length - 1;
+            for (int slot = hash(maskedKey) & mask; ; slot = (slot + 1) & mask) {
+                int position = index[slot] - 1;
+                if (position < 0) return -1;
+                Object candidate = keys[position];
+                if (candidate == maskedKey || candidate.equals(maskedKey)) return slot;
+            }
+        }
+
+        int find(@Nullable Object key) {
+            int slot = findSlot(maskNull(key));
+            return slot < 0 ? -1 : index[slot] - 1;
+        }
+
+        void put(@Nullable Object key, @Nullable Object value) {
+            Object maskedKey = maskNull(key);
+            int slot = findSlot(maskedKey);
+            if (slot >= 0) {
+                values[index[slot] - 1] = value;
+                return;
+            }
+
+            if (size == keys.length) {
+                resize();
+            }
+            keys[size] = maskedKey;
+            values[size] = value;
+            size++;
+            insertIntoIndex(maskedKey, size);
+        }
+
+        @Nullable
+        Object remove(@Nullable Object key) {
+            int slot = findSlot(maskNull(key));
+            if (slot < 0) return null;
+
+            int position = index[slot] - 1;
+            Object oldValue = values[position];
+            keys[position] = REMOVED;
+            values[position] = null;
+            removedCount++;
+            deleteFromIndex(slot);
+            return oldValue;
+        }
+
+        // Compacts the table and shrinks it to fit the remaining entries
+        void removeKeys(@NotNull Predicate<Object> keyPredicate) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (keys[i] != REMOVED && !keyPredicate.apply(unmaskNull(keys[i]))) {
+                    keys[newSize] = keys[i];
+                    values[newSize] = values[i];
+                    newSize++;
+                }
+            }
+            if (newSize == size) return;
+
+            int capacity = INITIAL_CAPACITY;
+            while (capacity < newSize) {
+                capacity *= 2;
+            }
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+            Arrays.fill(keys, newSize, capacity, null);
+            Arrays.fill(values, newSize, capacity, null);
+            size = newSize;
+            removedCount = 0;
+
+            index = new int[capacity * 2];
+            for (int i = 0; i < size; i++) {
+                insertIntoIndex(keys[i], i + 1);
+            }
+        }
+
+        @NotNull
+        List<Object> keys() {
+            List<Object> result = new ArrayList<Object>(size - removedCount);
+            for (int i = 0; i < size; i++) {
+                if (keys[i] != REMOVED) {
+                    result.add(unmaskNull(keys[i]));
+                }
+            }
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        void addEntriesTo(@NotNull List<Map.Entry<SlicedMapKey<?, ?>, ?>> entries) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] != REMOVED) {
+                    SlicedMapKey<?, ?> key = new SlicedMapKey<Object, Object>((WritableSlice) slice, unmaskNull(keys[i]));
+                    entries.add(new AbstractMap.SimpleImmutableEntry<SlicedMapKey<?, ?>, Object>(key, values[i]));
+                }
+            }
+        }
+
+        private void insertIntoIndex(@NotNull Object maskedKey, int positionPlusOne) {
+            int mask = index.length - 1;
+            int slot = hash(maskedKey) & mask;
+            while (index[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            index[slot] = positionPlusOne;
+        }
+
+        // Backward shift deletion: moves the following entries of the probe sequence so that no tombstones are needed
+        private void deleteFromIndex(int slot) {
+            int mask = index.length - 1;
+            int hole = slot;
+            for (int next = (hole + 1) & mask; index[next] != 0; next = (next + 1) & mask) {
+                int home = hash(keys[index[next] - 1]) & mask;
+                // Move the entry to the hole unless its home slot lies cyclically in (hole, next]
+                if (hole <= next ? (home <= hole || home > next) : (home <= hole && home > next)) {
+                    index[hole] = index[next];
+                    hole = next;
+                }
+            }
+            index[hole] = 0;
+        }
+
+        private void resize() {
+            int liveCount = size - removedCount;
+            int capacity = liveCount * 2 > keys.length ? keys.length * 2 : keys.length;
+
+            Object[] newKeys = new Object[capacity];
+            Object[] newValues = new Object[capacity];
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (keys[i] != REMOVED) {
+                    newKeys[newSize] = keys[i];
+                    newValues[newSize] = values[i];
+                    newSize++;
+                }
+            }
+            keys = newKeys;
+            values = newValues;
+            size = newSize;
+            removedCount = 0;
+
+            index = new int[capacity * 2];
+            for (int i = 0; i < size; i++) {
+                insertIntoIndex(keys[i], i + 1);
+            }
+        }
+    }
+}
@@ -16,12 +16,12 @@
 
 package org.jetbrains.kotlin.util.slicedMap;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.*;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -77,6 +77,20 @@ public class SlicedMapImpl implements MutableSlicedMap {
         map.clear();
     }
 
+    @Override
+    public void removeKeys(@NotNull Predicate<Object> keyPredicate) {
+        for (Iterator<SlicedMapKey<?, ?>> iterator = map.keySet().iterator(); iterator.hasNext(); ) {
+            if (keyPredicate.apply(iterator.next().getKey())) {
+                iterator.remove();
+            }
+        }
+
+        for (WritableSlice<?, ?> slice : new ArrayList<WritableSlice<?, ?>>(collectiveSliceKeys.keySet())) {
+            Collection<Object> keys = collectiveSliceKeys.get(slice);
+            collectiveSliceKeys.replaceValues(slice, Lists.newArrayList(Collections2.filter(keys, Predicates.not(keyPredicate))));
+        }
+    }
+
     @Override
     public <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
         SlicedMapKey<K, V> slicedMapKey = slice.makeKey(key);
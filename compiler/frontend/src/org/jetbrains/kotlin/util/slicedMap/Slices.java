@@ -194,6 +194,11 @@ public class Slices {
             return super.makeKey(keyNormalizer.normalize(key));
         }
 
+        @Override
+        public boolean storesKeysAsIs() {
+            return keyNormalizer == null;
+        }
+
     }
 
     public static class SetSlice<K> extends BasicRemovableSlice<K, Boolean> {
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.TestOnly;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Serializes all accesses to the delegate map. Collections returned by this map are snapshots
+ */
+public class SynchronizedSlicedMap implements MutableSlicedMap {
+    private final MutableSlicedMap delegate;
+
+    public SynchronizedSlicedMap(@NotNull MutableSlicedMap delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public synchronized <K, V> void put(WritableSlice<K, V> slice, K key, V value) {
+        delegate.put(slice, key, value);
+    }
+
+    @Override
+    public synchronized <K, V> V remove(RemovableSlice<K, V> slice, K key) {
+        return delegate.remove(slice, key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public synchronized void removeKeys(@NotNull Predicate<Object> keyPredicate) {
+        delegate.removeKeys(keyPredicate);
+    }
+
+    @Override
+    public synchronized <K, V> V get(ReadOnlySlice<K, V> slice, K key) {
+        return delegate.get(slice, key);
+    }
+
+    @Override
+    public synchronized <K, V> Collection<K> getKeys(WritableSlice<K, V> slice) {
+        return Lists.newArrayList(delegate.getKeys(slice));
+    }
+
+    @NotNull
+    @Override
+    public synchronized Iterator<Map.Entry<SlicedMapKey<?, ?>, ?>> iterator() {
+        List<Map.Entry<SlicedMapKey<?, ?>, ?>> entries = Lists.<Map.Entry<SlicedMapKey<?, ?>, ?>>newArrayList(delegate);
+        return entries.iterator();
+    }
+
+    @NotNull
+    @TestOnly
+    @Override
+    public synchronized <K, V> ImmutableMap<K, V> getSliceContents(@NotNull ReadOnlySlice<K, V> slice) {
+        return delegate.getSliceContents(slice);
+    }
+}
@@ -0,0 +1,7 @@
+package a
+
+fun foo(): Int = b.twice { b.bar() } + 1
+
+class A {
+    val x = foo()
+}
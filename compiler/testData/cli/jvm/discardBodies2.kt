@@ -0,0 +1,5 @@
+package b
+
+inline fun twice(f: () -> Int): Int = f() + f()
+
+fun bar() = 20
@@ -0,0 +1,8 @@
+fun a(): Int = unresolvedA
+fun b(): Int {
+    return unresolvedB
+}
+fun c() {
+    a()
+    unresolvedC()
+}
@@ -0,0 +1,3 @@
+package a
+
+fun foo() = b.bar() + 1
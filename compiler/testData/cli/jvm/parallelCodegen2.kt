@@ -0,0 +1,7 @@
+package b
+
+fun bar() = 41
+
+class C {
+    val x = { bar() }
+}
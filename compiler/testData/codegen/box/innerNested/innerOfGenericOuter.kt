@@ -0,0 +1,15 @@
+class Outer<T>(val t: T) {
+    inner class Inner {
+        fun get(): T = t
+    }
+
+    fun inner(): Inner = Inner()
+}
+
+fun box(): String {
+    val i: Int = Outer(42).inner().get()
+    if (i != 42) return "Fail: $i"
+
+    val s: String = Outer("OK").inner().get()
+    return s
+}
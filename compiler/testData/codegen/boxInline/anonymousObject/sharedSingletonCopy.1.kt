@@ -0,0 +1,15 @@
+import test.*
+
+fun first() = createLambda()
+
+fun second() = createLambda()
+
+fun box(): String {
+    val f1 = first()
+    val f2 = second()
+    if (f1.javaClass != f2.javaClass) return "fail: ${f1.javaClass} != ${f2.javaClass}"
+    if (f1 !== f2) return "fail: lambda should be a singleton"
+
+    if (f2() != "OK") return "fail: ${f2()}"
+    return f1()
+}
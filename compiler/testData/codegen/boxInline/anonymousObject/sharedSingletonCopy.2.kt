@@ -0,0 +1,5 @@
+package test
+
+inline fun createLambda(): () -> String {
+    return { "OK" }
+}
@@ -0,0 +1,41 @@
+import java.util.ArrayList
+
+fun box(): String {
+    val list = listOf("a", "b", "c")
+    val indices = ArrayList<Int>()
+    for (i in list.indices) indices.add(i)
+    if (indices != listOf(0, 1, 2)) return "Wrong indices: $indices"
+
+    val reversedIndices = ArrayList<Int>()
+    for (i in list.indices.reversed()) reversedIndices.add(i)
+    if (reversedIndices != listOf(2, 1, 0)) return "Wrong reversed indices: $reversedIndices"
+
+    val emptyIndices = ArrayList<Int>()
+    for (i in IntArray(0).indices) emptyIndices.add(i)
+    for (i in IntArray(0).indices.reversed()) emptyIndices.add(i)
+    if (!emptyIndices.isEmpty()) return "Wrong empty indices: $emptyIndices"
+
+    val stepped = ArrayList<Int>()
+    for (i in (list.indices step 2).reversed()) stepped.add(i)
+    if (stepped != listOf(2, 0)) return "Wrong stepped reversed indices: $stepped"
+
+    val chars = ArrayList<Char>()
+    for (c in ('a'..'e' step 2).reversed()) chars.add(c)
+    if (chars != listOf('e', 'c', 'a')) return "Wrong chars: $chars"
+
+    val longs = ArrayList<Long>()
+    for (l in 10L downTo 1 step 4L) longs.add(l)
+    if (longs != listOf(10L, 6L, 2L)) return "Wrong longs: $longs"
+
+    try {
+        for (i in 0..10 step 0) {
+            return "Zero step should fail"
+        }
+        return "Zero step should fail"
+    }
+    catch (e: IllegalArgumentException) {
+        if (e.getMessage() != "Step must be positive, was: 0") return "Wrong message: ${e.getMessage()}"
+    }
+
+    return "OK"
+}
@@ -0,0 +1,17 @@
+fun test(a: Int, b: Long, c: Char, list: List<String>, array: IntArray): Int {
+    var result = 0
+    for (i in a downTo 0) result += i
+    for (i in (0..a).reversed()) result += i
+    for (i in 0..a step 2) result += i
+    for (i in b downTo 0L step 3L) result += i.toInt()
+    for (i in c downTo 'a') result += i.toInt()
+    for (i in list.indices) result += i
+    for (i in array.indices.reversed()) result += i
+    return result
+}
+
+// 0 INVOKESTATIC kotlin/KotlinPackage
+// 0 Progression\.
+// 0 Range\.
+// 0 iterator
+// 2 getProgressionFinalElement
@@ -0,0 +1,9 @@
+fun call(f: () -> Unit) = f()
+
+fun test(): Int {
+    var x = 0
+    call { x++ }
+    return x
+}
+
+// 1 NEW kotlin/jvm/internal/Ref\$IntRef
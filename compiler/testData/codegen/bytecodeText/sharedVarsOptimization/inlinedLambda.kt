@@ -0,0 +1,17 @@
+inline fun <T> Iterable<T>.each(f: (T) -> Unit) {
+    for (element in this) f(element)
+}
+
+fun sum(list: List<Int>): Int {
+    var result = 0
+    list.each { result += it }
+    return result
+}
+
+fun concat(list: List<String>): String {
+    var result = ""
+    list.each { result += it }
+    return result
+}
+
+// 0 Ref\$
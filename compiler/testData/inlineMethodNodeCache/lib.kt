@@ -0,0 +1,9 @@
+package lib
+
+inline fun first(f: () -> Unit) {
+    f()
+}
+
+inline fun second(f: () -> Unit) {
+    f()
+}
@@ -0,0 +1,5 @@
+package lib
+
+class A {
+    fun before() {}
+}
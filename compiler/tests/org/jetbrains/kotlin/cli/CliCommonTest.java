@@ -16,12 +16,15 @@
 
 package org.jetbrains.kotlin.cli;
 
+import com.intellij.openapi.util.io.FileUtil;
 import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
 import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.utils.PerformanceReport;
 import org.junit.Assert;
 import org.junit.Test;
 
 import java.io.File;
+import java.util.jar.JarFile;
 
 public class CliCommonTest extends CliBaseTest {
     @Test
@@ -48,6 +51,21 @@ public class CliCommonTest extends CliBaseTest {
         Assert.assertTrue(new File(tmpdir.getTmpDir(), PackageClassUtils.getPackageClassName(FqName.ROOT) + ".class").isFile());
     }
 
+    @Test
+    public void jarOutput() throws Exception {
+        executeCompilerCompareOutputJVM();
+
+        String packageClassName = PackageClassUtils.getPackageClassName(FqName.ROOT);
+        JarFile jar = new JarFile(new File(tmpdir.getTmpDir(), "out.jar"));
+        try {
+            Assert.assertNotNull(jar.getEntry(packageClassName + ".class"));
+            Assert.assertEquals(packageClassName, jar.getManifest().getMainAttributes().getValue("Main-Class"));
+        }
+        finally {
+            jar.close();
+        }
+    }
+
     @Test
     public void duplicateSourcesInModule() throws Exception {
         executeCompilerCompareOutputJVM();
@@ -63,6 +81,41 @@ public class CliCommonTest extends CliBaseTest {
         executeCompilerCompareOutputJVM();
     }
 
+    @Test
+    public void parallelBodyResolution() throws Exception {
+        executeCompilerCompareOutputJVM();
+    }
+
+    @Test
+    public void parallelCodegen() throws Exception {
+        executeCompilerCompareOutputJVM();
+
+        Assert.assertTrue(new File(tmpdir.getTmpDir(), "a/" + PackageClassUtils.getPackageClassName(new FqName("a")) + ".class").isFile());
+        Assert.assertTrue(new File(tmpdir.getTmpDir(), "b/C.class").isFile());
+    }
+
+    @Test
+    public void discardBodies() throws Exception {
+        executeCompilerCompareOutputJVM();
+
+        Assert.assertTrue(new File(tmpdir.getTmpDir(), "a/" + PackageClassUtils.getPackageClassName(new FqName("a")) + ".class").isFile());
+        Assert.assertTrue(new File(tmpdir.getTmpDir(), "a/A.class").isFile());
+        Assert.assertTrue(new File(tmpdir.getTmpDir(), "b/" + PackageClassUtils.getPackageClassName(new FqName("b")) + ".class").isFile());
+    }
+
+    @Test
+    public void reportPerf() throws Exception {
+        executeCompilerCompareOutputJVM();
+
+        String report = FileUtil.loadFile(new File(tmpdir.getTmpDir(), "perf.json"));
+        Assert.assertTrue(report, report.contains("\"name\": \"" + PerformanceReport.RESOLVE_BODIES + "\""));
+        Assert.assertTrue(report, report.contains("\"" + PerformanceReport.FILES + "\": 1"));
+
+        String trace = FileUtil.loadFile(new File(tmpdir.getTmpDir(), "perf.trace"));
+        Assert.assertTrue(trace, trace.startsWith("{\"traceEvents\": ["));
+        Assert.assertTrue(trace, trace.contains("\"name\": \"" + PerformanceReport.CODEGEN + "\""));
+    }
+
     @Test
     public void suppressAllWarningsJvm() throws Exception {
         executeCompilerCompareOutputJVM();
@@ -57,6 +57,12 @@ public class KotlincExecutableTestGenerated extends AbstractKotlincExecutableTes
             doJvmTest(fileName);
         }
 
+        @TestMetadata("discardBodies.args")
+        public void testDiscardBodies() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/discardBodies.args");
+            doJvmTest(fileName);
+        }
+
         @TestMetadata("duplicateSources.args")
         public void testDuplicateSources() throws Exception {
             String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/duplicateSources.args");
@@ -81,6 +87,12 @@ public class KotlincExecutableTestGenerated extends AbstractKotlincExecutableTes
             doJvmTest(fileName);
         }
 
+        @TestMetadata("jarOutput.args")
+        public void testJarOutput() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/jarOutput.args");
+            doJvmTest(fileName);
+        }
+
         @TestMetadata("multipleTextRangesInDiagnosticsOrder.args")
         public void testMultipleTextRangesInDiagnosticsOrder() throws Exception {
             String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/multipleTextRangesInDiagnosticsOrder.args");
@@ -99,6 +111,24 @@ public class KotlincExecutableTestGenerated extends AbstractKotlincExecutableTes
             doJvmTest(fileName);
         }
 
+        @TestMetadata("parallelBodyResolution.args")
+        public void testParallelBodyResolution() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/parallelBodyResolution.args");
+            doJvmTest(fileName);
+        }
+
+        @TestMetadata("parallelCodegen.args")
+        public void testParallelCodegen() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/parallelCodegen.args");
+            doJvmTest(fileName);
+        }
+
+        @TestMetadata("reportPerf.args")
+        public void testReportPerf() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/reportPerf.args");
+            doJvmTest(fileName);
+        }
+
         @TestMetadata("signatureClash.args")
         public void testSignatureClash() throws Exception {
             String fileName = JetTestUtils.navigationMetadata("compiler/testData/cli/jvm/signatureClash.args");
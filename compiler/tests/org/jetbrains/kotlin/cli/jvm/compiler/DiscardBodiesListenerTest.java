@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.cli.jvm.compiler;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.codegen.ClassBuilderFactories;
+import org.jetbrains.kotlin.codegen.CompilationErrorHandler;
+import org.jetbrains.kotlin.codegen.KotlinCodegenFacade;
+import org.jetbrains.kotlin.codegen.state.GenerationState;
+import org.jetbrains.kotlin.context.ContextPackage;
+import org.jetbrains.kotlin.descriptors.VariableDescriptor;
+import org.jetbrains.kotlin.psi.*;
+import org.jetbrains.kotlin.resolve.AnalyzingUtils;
+import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.BindingTraceContext;
+import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM;
+import org.jetbrains.kotlin.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.kotlin.test.JetTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class DiscardBodiesListenerTest extends KotlinTestWithEnvironment {
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(getTestRootDisposable());
+    }
+
+    public void testBodiesAreSweptAndInlineFunctionsKept() {
+        JetFile inlineFile = JetTestUtils.createFile(
+                "a.kt",
+                "package a\n\n" +
+                "inline fun twice(f: () -> Int): Int = f() + f()\n",
+                getProject());
+        JetFile file = JetTestUtils.createFile(
+                "b.kt",
+                "package b\n\n" +
+                "fun user(): Int {\n" +
+                "    val captured = 1\n" +
+                "    val literal = { y: Int -> y + captured }\n" +
+                "    fun local(p: Int) = p\n" +
+                "    return a.twice { literal(local(2)) }\n" +
+                "}\n\n" +
+                "class B {\n" +
+                "    fun member(q: Int) = q\n" +
+                "}\n",
+                getProject());
+        // Generated after b in one of the orders, in the other one it's b that inlines a function of the kept file after a sweep
+        JetFile otherFile = JetTestUtils.createFile(
+                "c.kt",
+                "package c\n\n" +
+                "fun other() = a.twice { 3 }\n",
+                getProject());
+        List<JetFile> files = Arrays.asList(inlineFile, file, otherFile);
+
+        BindingTraceContext trace = new BindingTraceContext();
+        AnalysisResult analysisResult = TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationWithCustomContext(
+                getProject(), ContextPackage.GlobalContext(), files, trace, Predicates.<PsiFile>alwaysTrue(),
+                TopDownAnalyzerFacadeForJVM.createSealedJavaModule(), null, null
+        );
+        AnalyzingUtils.throwExceptionOnErrors(analysisResult.getBindingContext());
+        BindingContext context = trace.getBindingContext();
+
+        JetNamedFunction user = find(file, JetNamedFunction.class, "user");
+        JetNamedFunction local = find(file, JetNamedFunction.class, "local");
+        JetNamedFunction member = find(file, JetNamedFunction.class, "member");
+        JetProperty captured = find(file, JetProperty.class, "captured");
+        JetFunctionLiteral literal = PsiTreeUtil.findChildOfType(file, JetFunctionLiteral.class);
+        JetParameter literalParameter = find(file, JetParameter.class, "y");
+        JetParameter memberParameter = find(file, JetParameter.class, "q");
+        JetNamedFunction twice = find(inlineFile, JetNamedFunction.class, "twice");
+
+        VariableDescriptor capturedDescriptor = context.get(BindingContext.VARIABLE, captured);
+        assertNotNull(capturedDescriptor);
+        assertNotNull("Control flow analysis should record the captured variable",
+                      context.get(BindingContext.CAPTURED_IN_CLOSURE, capturedDescriptor));
+        assertNotNull(context.get(BindingContext.FUNCTION, local));
+        assertNotNull(context.get(BindingContext.FUNCTION, literal));
+        assertNotNull(context.get(BindingContext.EXPRESSION_TYPE, captured.getInitializer()));
+
+        GenerationState state = new GenerationState(getProject(), ClassBuilderFactories.TEST, analysisResult.getModuleDescriptor(),
+                                                    context, files);
+        DiscardBodiesListener listener = new DiscardBodiesListener(trace, state.getFactory(), null, MessageCollector.NONE, 1);
+        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION, listener);
+        listener.flush();
+
+        // Body-only data is gone
+        assertNull(context.get(BindingContext.FUNCTION, local));
+        assertNull(context.get(BindingContext.FUNCTION, literal));
+        assertNull(context.get(BindingContext.VARIABLE, captured));
+        assertNull(context.get(BindingContext.VALUE_PARAMETER, literalParameter));
+        assertNull(context.get(BindingContext.CAPTURED_IN_CLOSURE, capturedDescriptor));
+        assertNull(context.get(BindingContext.EXPRESSION_TYPE, captured.getInitializer()));
+
+        // Declarations other packages may refer to are kept
+        assertNotNull(context.get(BindingContext.FUNCTION, user));
+        assertNotNull(context.get(BindingContext.FUNCTION, member));
+        assertNotNull(context.get(BindingContext.VALUE_PARAMETER, memberParameter));
+        assertNotNull(context.get(BindingContext.CLASS, find(file, JetClass.class, "B")));
+
+        // The file with the inline function is kept completely, and its callers were compiled
+        assertNotNull(context.get(BindingContext.FUNCTION, twice));
+        assertNotNull(context.get(BindingContext.EXPRESSION_TYPE, twice.getBodyExpression()));
+        assertNotNull(state.getFactory().get("b/BPackage.class"));
+        assertNotNull(state.getFactory().get("c/CPackage.class"));
+    }
+
+    @NotNull
+    private static <T extends JetNamedDeclaration> T find(@NotNull JetFile file, @NotNull Class<T> type, @NotNull String name) {
+        for (T declaration : PsiTreeUtil.findChildrenOfType(file, type)) {
+            if (name.equals(declaration.getName())) return declaration;
+        }
+        throw new AssertionError("No " + type.getSimpleName() + " " + name + " in " + file.getName());
+    }
+}
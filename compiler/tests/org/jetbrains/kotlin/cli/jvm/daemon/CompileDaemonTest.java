@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.cli.jvm.daemon;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.common.ExitCode;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollectorToString;
+import org.jetbrains.kotlin.load.kotlin.PackageClassUtils;
+import org.jetbrains.kotlin.name.FqName;
+import org.jetbrains.kotlin.test.Tmpdir;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class CompileDaemonTest {
+    private static final String JVM_TEST_DATA = "compiler/testData/cli/jvm";
+
+    @Rule
+    public final Tmpdir tmpdir = new Tmpdir();
+
+    @Test
+    public void compileSeveralTimes() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        File tokenFile = new File(tmpdir.getTmpDir(), "daemon.token");
+        K2JVMCompileDaemon daemon = new K2JVMCompileDaemon(0, tokenFile);
+        Thread daemonThread = startDaemon(daemon);
+
+        CompileDaemonClient client = new CompileDaemonClient(daemon.getPort(), tokenFile);
+        try {
+            File wrongTokenFile = new File(tmpdir.getTmpDir(), "wrong.token");
+            CompileDaemonProtocol.writeTokenFile(wrongTokenFile);
+            try {
+                new CompileDaemonClient(daemon.getPort(), wrongTokenFile).compile(new String[] {
+                        new File(JVM_TEST_DATA, "simple.kt").getAbsolutePath(), "-d", tmpdir.getTmpDir().getAbsolutePath()
+                }, new MessageCollectorToString());
+                Assert.fail("A client with a wrong token should be rejected");
+            }
+            catch (IOException expected) {
+            }
+
+            for (int i = 0; i < 2; i++) {
+                File destination = new File(tmpdir.getTmpDir(), "out" + i);
+                MessageCollectorToString collector = new MessageCollectorToString();
+                ExitCode exitCode = client.compile(new String[] {
+                        new File(JVM_TEST_DATA, "simple.kt").getAbsolutePath(), "-d", destination.getAbsolutePath()
+                }, collector);
+
+                Assert.assertEquals(collector.getString(), ExitCode.OK, exitCode);
+                Assert.assertTrue(new File(destination, PackageClassUtils.getPackageClassName(FqName.ROOT) + ".class").isFile());
+            }
+
+            MessageCollectorToString collector = new MessageCollectorToString();
+            ExitCode exitCode = client.compile(new String[] {
+                    new File(JVM_TEST_DATA, "conflictingOverloads.kt").getAbsolutePath(),
+                    "-d", tmpdir.getTmpDir().getAbsolutePath()
+            }, collector);
+            Assert.assertEquals(ExitCode.COMPILATION_ERROR, exitCode);
+            Assert.assertTrue(collector.getString(), collector.getString().contains("conflictingOverloads.kt"));
+        }
+        finally {
+            client.shutdown();
+            daemonThread.join();
+        }
+        Assert.assertFalse("The token file should be deleted on shutdown", tokenFile.exists());
+    }
+
+    @Test
+    public void libraryJarRebuiltBetweenRequests() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+
+        File tokenFile = new File(tmpdir.getTmpDir(), "daemon.token");
+        K2JVMCompileDaemon daemon = new K2JVMCompileDaemon(0, tokenFile);
+        Thread daemonThread = startDaemon(daemon);
+
+        CompileDaemonClient client = new CompileDaemonClient(daemon.getPort(), tokenFile);
+        try {
+            File jar = new File(tmpdir.getTmpDir(), "lib.jar");
+            compileSuccessfully(client, writeSource("lib1/lib.kt", "package lib\n\nfun foo() = 1\n"), "-d", jar.getAbsolutePath());
+            compileSuccessfully(client, writeSource("usage1/usage.kt", "fun usage() = lib.foo()\n"),
+                                "-classpath", jar.getAbsolutePath(), "-d", new File(tmpdir.getTmpDir(), "out1").getAbsolutePath());
+
+            long lastModified = jar.lastModified();
+            compileSuccessfully(client, writeSource("lib2/lib.kt", "package lib\n\nfun bar() = 2\n"), "-d", jar.getAbsolutePath());
+            // The resolution of file timestamps may be too coarse to notice the change otherwise
+            Assert.assertTrue(jar.setLastModified(lastModified + 2000));
+
+            compileSuccessfully(client, writeSource("usage2/usage.kt", "fun usage() = lib.bar()\n"),
+                                "-classpath", jar.getAbsolutePath(), "-d", new File(tmpdir.getTmpDir(), "out2").getAbsolutePath());
+        }
+        finally {
+            client.shutdown();
+            daemonThread.join();
+        }
+    }
+
+    @NotNull
+    private static Thread startDaemon(@NotNull final K2JVMCompileDaemon daemon) {
+        Thread daemonThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                daemon.run();
+            }
+        }, "Kotlin compile daemon");
+        daemonThread.start();
+        return daemonThread;
+    }
+
+    @NotNull
+    private File writeSource(@NotNull String relativePath, @NotNull String text) throws IOException {
+        File file = new File(tmpdir.getTmpDir(), relativePath);
+        FileUtil.writeToFile(file, text);
+        return file;
+    }
+
+    private static void compileSuccessfully(@NotNull CompileDaemonClient client, @NotNull File source, @NotNull String... args)
+            throws IOException {
+        String[] allArgs = new String[args.length + 1];
+        allArgs[0] = source.getAbsolutePath();
+        System.arraycopy(args, 0, allArgs, 1, args.length);
+
+        MessageCollectorToString collector = new MessageCollectorToString();
+        ExitCode exitCode = client.compile(allArgs, collector);
+        Assert.assertEquals(collector.getString(), ExitCode.OK, exitCode);
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.codegen;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.analyzer.AnalysisResult;
+import org.jetbrains.kotlin.backend.common.output.OutputFile;
+import org.jetbrains.kotlin.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.kotlin.codegen.state.GenerationState;
+import org.jetbrains.kotlin.codegen.state.Progress;
+import org.jetbrains.kotlin.context.ContextPackage;
+import org.jetbrains.kotlin.diagnostics.DiagnosticSink;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.resolve.AnalyzingUtils;
+import org.jetbrains.kotlin.resolve.BindingTraceContext;
+import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM;
+import org.jetbrains.kotlin.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.kotlin.test.JetTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ParallelCodegenTest extends KotlinTestWithEnvironment {
+    private static final int PACKAGES = 20;
+    private static final int THREADS = 4;
+    private static final int RUNS = 3;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(getTestRootDisposable());
+    }
+
+    public void testOutputIsTheSameAsSequential() {
+        List<JetFile> files = createFiles();
+
+        BindingTraceContext trace = BindingTraceContext.createThreadSafe();
+        AnalysisResult analysisResult = TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationWithCustomContext(
+                getProject(), ContextPackage.GlobalContext(), files, trace, Predicates.<PsiFile>alwaysTrue(),
+                TopDownAnalyzerFacadeForJVM.createSealedJavaModule(), null, null
+        );
+        AnalyzingUtils.throwExceptionOnErrors(analysisResult.getBindingContext());
+
+        Map<String, byte[]> expected = generate(analysisResult, files, 1);
+        assertTrue("All packages should be generated", expected.size() > PACKAGES);
+
+        for (int run = 0; run < RUNS; run++) {
+            Map<String, byte[]> actual = generate(analysisResult, files, THREADS);
+            assertEquals("Parallel run #" + run + " produced other files", new ArrayList<String>(expected.keySet()),
+                         new ArrayList<String>(actual.keySet()));
+            for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+                assertTrue("Parallel run #" + run + " produced other bytes for " + entry.getKey(),
+                           Arrays.equals(entry.getValue(), actual.get(entry.getKey())));
+            }
+        }
+    }
+
+    // Packages inline functions of a common package and of the standard library, and use lambdas, objects, SAM wrappers
+    // and when by enum, which are all named and registered in the shared factory
+    @NotNull
+    private List<JetFile> createFiles() {
+        List<JetFile> files = new ArrayList<JetFile>();
+        files.add(JetTestUtils.createFile(
+                "common.kt",
+                "package common\n\n" +
+                "import kotlin.InlineOption.*\n\n" +
+                "enum class Color { RED GREEN BLUE }\n\n" +
+                "inline fun <T> twice(f: () -> T): List<T> = listOf(f(), f())\n\n" +
+                "inline fun runnable(inlineOptions(ONLY_LOCAL_RETURN) f: () -> Unit): Runnable = object : Runnable {\n" +
+                "    override fun run() = f()\n" +
+                "}\n",
+                getProject()));
+
+        for (int i = 0; i < PACKAGES; i++) {
+            files.add(JetTestUtils.createFile(
+                    "p" + i + ".kt",
+                    "package p" + i + "\n\n" +
+                    "import common.*\n\n" +
+                    "class Item" + i + "(val color: Color) {\n" +
+                    "    fun name() = when (color) {\n" +
+                    "        Color.RED -> twice { \"red" + i + "\" }\n" +
+                    "        Color.GREEN -> twice { color.name() }\n" +
+                    "        Color.BLUE -> listOf(" + i + ").map { it.toString() }.filter { it.isNotEmpty() }\n" +
+                    "    }\n" +
+                    "}\n\n" +
+                    "fun task" + i + "(): Runnable = runnable { Item" + i + "(Color.RED).name() }\n\n" +
+                    "fun thread" + i + "(f: () -> Unit) = Thread(f)\n\n" +
+                    "fun sum" + i + "(xs: List<Int>) = xs.fold(" + i + ") { a, b -> a + b }\n",
+                    getProject()));
+        }
+        return files;
+    }
+
+    @NotNull
+    private Map<String, byte[]> generate(@NotNull AnalysisResult analysisResult, @NotNull List<JetFile> files, int threads) {
+        GenerationState state = new GenerationState(
+                getProject(), ClassBuilderFactories.BINARIES, Progress.DEAF, analysisResult.getModuleDescriptor(),
+                analysisResult.getBindingContext(), files, true, true, GenerationState.GenerateClassFilter.GENERATE_ALL,
+                false, false, null, null, DiagnosticSink.DO_NOTHING, null, threads
+        );
+        KotlinCodegenFacade.compileCorrectFiles(state, CompilationErrorHandler.THROW_EXCEPTION);
+
+        Map<String, byte[]> result = new LinkedHashMap<String, byte[]>();
+        for (OutputFile file : state.getFactory().asList()) {
+            result.put(file.getRelativePath(), file.asByteArray());
+        }
+        return result;
+    }
+}
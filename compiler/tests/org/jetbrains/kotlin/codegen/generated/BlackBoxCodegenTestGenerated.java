@@ -3954,6 +3954,12 @@ public class BlackBoxCodegenTestGenerated extends AbstractBlackBoxCodegenTest {
             doTest(fileName);
         }
 
+        @TestMetadata("innerOfGenericOuter.kt")
+        public void testInnerOfGenericOuter() throws Exception {
+            String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/box/innerNested/innerOfGenericOuter.kt");
+            doTest(fileName);
+        }
+
         @TestMetadata("innerSimple.kt")
         public void testInnerSimple() throws Exception {
             String fileName = JetTestUtils.navigationMetadata("compiler/testData/codegen/box/innerNested/innerSimple.kt");
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.codegen.inline;
+
+import com.intellij.openapi.vfs.StandardFileSystems;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import org.jetbrains.kotlin.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.kotlin.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.MockLibraryUtil;
+import org.jetbrains.org.objectweb.asm.tree.MethodNode;
+
+import java.io.File;
+
+public class InlineMethodNodeCacheTest extends KotlinTestWithEnvironment {
+    private static final String DESCRIPTOR = "(Lkotlin/Function0;)V";
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(getTestRootDisposable());
+    }
+
+    public void testEntriesOfCollectedMethodNodesAreRemoved() throws Exception {
+        File jar = MockLibraryUtil.compileLibraryToJar("compiler/testData/inlineMethodNodeCache", "lib", false);
+        VirtualFile classFile = VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.JAR_PROTOCOL)
+                .findFileByPath(jar.getPath() + "!/lib/LibPackage.class");
+        assertNotNull(classFile);
+
+        InlineMethodNodeCache cache = new InlineMethodNodeCache();
+
+        MethodNode first = cache.getMethodNode(classFile, "first", DESCRIPTOR);
+        assertNotNull(first);
+        MethodNode firstAgain = cache.getMethodNode(classFile, "first", DESCRIPTOR);
+        assertNotNull(firstAgain);
+        assertNotSame(first, firstAgain);
+        assertEquals(first.instructions.size(), firstAgain.instructions.size());
+        assertEquals(1, cache.size());
+
+        cache.collectAll();
+
+        assertNotNull(cache.getMethodNode(classFile, "second", DESCRIPTOR));
+        assertEquals(1, cache.size());
+
+        cache.collectAll();
+
+        MethodNode reread = cache.getMethodNode(classFile, "first", DESCRIPTOR);
+        assertNotNull(reread);
+        assertEquals(first.instructions.size(), reread.instructions.size());
+        assertEquals(1, cache.size());
+    }
+}
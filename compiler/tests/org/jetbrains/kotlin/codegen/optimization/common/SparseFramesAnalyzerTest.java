@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.codegen.optimization.common;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.codegen.optimization.transformer.MethodTransformer;
+import org.jetbrains.org.objectweb.asm.Label;
+import org.jetbrains.org.objectweb.asm.Opcodes;
+import org.jetbrains.org.objectweb.asm.tree.AbstractInsnNode;
+import org.jetbrains.org.objectweb.asm.tree.MethodNode;
+import org.jetbrains.org.objectweb.asm.tree.VarInsnNode;
+import org.jetbrains.org.objectweb.asm.tree.analysis.*;
+
+public class SparseFramesAnalyzerTest extends TestCase {
+    private static final String OWNER = "Test";
+
+    private static final Predicate<AbstractInsnNode> ALL = Predicates.alwaysTrue();
+
+    private static final Predicate<AbstractInsnNode> VARIABLE_INSNS = new Predicate<AbstractInsnNode>() {
+        @Override
+        public boolean apply(@Nullable AbstractInsnNode insn) {
+            return insn instanceof VarInsnNode;
+        }
+    };
+
+    public void testLoop() throws Exception {
+        // static int sum(int n) { int s = 0; while (n > 0) { s += n; n--; } return s; }
+        MethodNode method = new MethodNode(Opcodes.ASM5, Opcodes.ACC_STATIC, "sum", "(I)I", null, null);
+        Label loop = new Label();
+        Label end = new Label();
+        method.visitInsn(Opcodes.ICONST_0);
+        method.visitVarInsn(Opcodes.ISTORE, 1);
+        method.visitLabel(loop);
+        method.visitVarInsn(Opcodes.ILOAD, 0);
+        method.visitJumpInsn(Opcodes.IFLE, end);
+        method.visitVarInsn(Opcodes.ILOAD, 1);
+        method.visitVarInsn(Opcodes.ILOAD, 0);
+        method.visitInsn(Opcodes.IADD);
+        method.visitVarInsn(Opcodes.ISTORE, 1);
+        method.visitIincInsn(0, -1);
+        method.visitJumpInsn(Opcodes.GOTO, loop);
+        method.visitLabel(end);
+        method.visitVarInsn(Opcodes.ILOAD, 1);
+        method.visitInsn(Opcodes.IRETURN);
+        method.visitMaxs(2, 2);
+
+        checkAllInterpreters(method);
+    }
+
+    public void testMergeOfDifferentValues() throws Exception {
+        // The branches leave values of different types in a local and different values on the stack
+        MethodNode method = new MethodNode(Opcodes.ASM5, Opcodes.ACC_STATIC, "choose", "(Z)Ljava/lang/Object;", null, null);
+        Label otherwise = new Label();
+        Label join = new Label();
+        method.visitVarInsn(Opcodes.ILOAD, 0);
+        method.visitJumpInsn(Opcodes.IFEQ, otherwise);
+        method.visitLdcInsn("a");
+        method.visitInsn(Opcodes.ICONST_1);
+        method.visitVarInsn(Opcodes.ISTORE, 1);
+        method.visitJumpInsn(Opcodes.GOTO, join);
+        method.visitLabel(otherwise);
+        method.visitInsn(Opcodes.ACONST_NULL);
+        method.visitLdcInsn("b");
+        method.visitVarInsn(Opcodes.ASTORE, 1);
+        method.visitLabel(join);
+        method.visitVarInsn(Opcodes.ALOAD, 1);
+        method.visitInsn(Opcodes.POP);
+        method.visitInsn(Opcodes.ARETURN);
+        method.visitMaxs(2, 2);
+
+        checkAllInterpreters(method);
+    }
+
+    public void testExceptionHandlers() throws Exception {
+        // void foo() { int x; try { bar(); x = 1; } catch (Exception e) { x = 2; } finally { baz(); } }
+        MethodNode method = new MethodNode(Opcodes.ASM5, 0, "foo", "()V", null, null);
+        Label tryStart = new Label();
+        Label tryEnd = new Label();
+        Label catchHandler = new Label();
+        Label finallyHandler = new Label();
+        Label finallyEnd = new Label();
+        Label after = new Label();
+        method.visitTryCatchBlock(tryStart, tryEnd, catchHandler, "java/lang/Exception");
+        method.visitTryCatchBlock(tryStart, finallyEnd, finallyHandler, null);
+        method.visitLabel(tryStart);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OWNER, "bar", "()V", false);
+        method.visitInsn(Opcodes.ICONST_1);
+        method.visitVarInsn(Opcodes.ISTORE, 1);
+        method.visitLabel(tryEnd);
+        method.visitJumpInsn(Opcodes.GOTO, after);
+        method.visitLabel(catchHandler);
+        method.visitVarInsn(Opcodes.ASTORE, 2);
+        method.visitInsn(Opcodes.ICONST_2);
+        method.visitVarInsn(Opcodes.ISTORE, 1);
+        method.visitLabel(finallyEnd);
+        method.visitJumpInsn(Opcodes.GOTO, after);
+        method.visitLabel(finallyHandler);
+        method.visitVarInsn(Opcodes.ASTORE, 3);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OWNER, "baz", "()V", false);
+        method.visitVarInsn(Opcodes.ALOAD, 3);
+        method.visitInsn(Opcodes.ATHROW);
+        method.visitLabel(after);
+        method.visitVarInsn(Opcodes.ALOAD, 0);
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, OWNER, "baz", "()V", false);
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(1, 4);
+
+        checkAllInterpreters(method);
+    }
+
+    public void testTooLargeMethod() throws Exception {
+        MethodNode method = new MethodNode(Opcodes.ASM5, Opcodes.ACC_STATIC, "large", "()V", null, null);
+        for (int i = 0; i < 1000; i++) {
+            method.visitInsn(Opcodes.NOP);
+        }
+        method.visitInsn(Opcodes.RETURN);
+        method.visitMaxs(0xFFFF, 0xFFFF);
+
+        assertNull("Frames for every instruction of a method with many locals should not be computed",
+                   AnalyzingTransformer.analyze(method, ALL));
+
+        Predicate<AbstractInsnNode> returnOnly = new Predicate<AbstractInsnNode>() {
+            @Override
+            public boolean apply(@Nullable AbstractInsnNode insn) {
+                return insn != null && insn.getOpcode() == Opcodes.RETURN;
+            }
+        };
+        Frame<BasicValue>[] frames = AnalyzingTransformer.analyze(method, returnOnly);
+        assertNotNull("Frames for a few instructions of the same method fit into the limit", frames);
+        assertNotNull(frames[frames.length - 1]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void checkAllInterpreters(@NotNull MethodNode method) throws AnalyzerException {
+        for (Predicate<AbstractInsnNode> framesNeeded : new Predicate[] {ALL, VARIABLE_INSNS}) {
+            checkSameFrames(method, new BasicInterpreter(), framesNeeded);
+            checkSameFrames(method, new OptimizationBasicInterpreter(), framesNeeded);
+            checkSameFrames(method, new SourceInterpreter(), framesNeeded);
+        }
+    }
+
+    private static <V extends Value> void checkSameFrames(
+            @NotNull MethodNode method,
+            @NotNull Interpreter<V> interpreter,
+            @NotNull Predicate<AbstractInsnNode> framesNeeded
+    ) throws AnalyzerException {
+        Frame<V>[] expected = new Analyzer<V>(interpreter).analyze(OWNER, method);
+        Frame<V>[] actual = new SparseFramesAnalyzer<V>(OWNER, method, interpreter, framesNeeded).analyze();
+
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            String message = interpreter.getClass().getSimpleName() + ", instruction " + i;
+            if (framesNeeded.apply(method.instructions.get(i))) {
+                assertSameFrame(message, expected[i], actual[i]);
+            }
+            else {
+                assertNull(message + ": frame was not requested", actual[i]);
+            }
+        }
+    }
+
+    private static <V extends Value> void assertSameFrame(@NotNull String message, @Nullable Frame<V> expected, @Nullable Frame<V> actual) {
+        if (expected == null) {
+            assertNull(message + ": instruction is unreachable", actual);
+            return;
+        }
+        assertNotNull(message, actual);
+
+        assertEquals(message + ": locals", expected.getLocals(), actual.getLocals());
+        for (int i = 0; i < expected.getLocals(); i++) {
+            assertEquals(message + ": local " + i, expected.getLocal(i), actual.getLocal(i));
+        }
+
+        assertEquals(message + ": stack size", expected.getStackSize(), actual.getStackSize());
+        for (int i = 0; i < expected.getStackSize(); i++) {
+            assertEquals(message + ": stack " + i, expected.getStack(i), actual.getStack(i));
+        }
+    }
+
+    private static class AnalyzingTransformer extends MethodTransformer {
+        @Nullable
+        public static Frame<BasicValue>[] analyze(@NotNull MethodNode method, @NotNull Predicate<AbstractInsnNode> framesNeeded) {
+            return analyze(OWNER, method, new BasicInterpreter(), framesNeeded);
+        }
+
+        @Override
+        public void transform(@NotNull String internalClassName, @NotNull MethodNode methodNode) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -28,6 +28,8 @@ import com.intellij.psi.search.GlobalSearchScope
 import org.jetbrains.kotlin.load.java.structure.impl.JavaClassImpl
 import kotlin.test.assertEquals
 import kotlin.test.assertNotNull
+import kotlin.test.assertNull
+import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles
 
 public class KotlinClassFinderTest : KotlinTestWithEnvironmentManagement() {
@@ -52,4 +54,26 @@ public class KotlinClassFinderTest : KotlinTestWithEnvironmentManagement() {
 
         assertEquals("test/A.B.C", binaryClass?.getClassId()?.toString())
     }
+
+    fun testClassPathLookups() {
+        val tmpdir = JetTestUtils.tmpDirForTest(this)
+        JetTestUtils.compileKotlinWithJava(
+                listOf(), listOf(File("compiler/testData/kotlinClassFinder/nestedClass.kt")), tmpdir, getTestRootDisposable()!!
+        )
+
+        val environment = JetCoreEnvironment.createForTests(getTestRootDisposable()!!,
+                                                            JetTestUtils.compilerConfigurationForTests(
+                                                                    ConfigurationKind.ALL, TestJdkKind.MOCK_JDK, tmpdir),
+                                                            EnvironmentConfigFiles.JVM_CONFIG_FILES)
+
+        val finder = VirtualFileFinder.SERVICE.getInstance(environment.getProject())
+
+        assertEquals("A\$B\$C.class", finder.findVirtualFile("test/A\$B\$C")?.getName())
+        assertEquals("A\$B\$C.class", finder.findVirtualFileWithHeader(FqName("test.A.B.C"))?.getName())
+        assertNotNull(finder.findVirtualFile("java/lang/String"), "Classes from the JDK should be found")
+
+        assertNull(finder.findVirtualFile("test/Missing"))
+        assertNull(finder.findVirtualFile("missing/A\$B\$C"))
+        assertNull(finder.findVirtualFileWithHeader(FqName("test.A.Missing")))
+    }
 }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.load.kotlin;
+
+import com.intellij.core.CoreJarFileSystem;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.StandardFileSystems;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.kotlin.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.test.MockLibraryUtil;
+
+import java.io.File;
+import java.util.Arrays;
+
+public class LibraryClassHeaderCacheJarTest extends KotlinTestWithEnvironment {
+    private static final String TEST_DATA_PATH = "compiler/testData/libraryClassHeaderCache/";
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(getTestRootDisposable());
+    }
+
+    public void testKotlinClassHeaderIsCachedUntilJarIsRebuilt() throws Exception {
+        File jar = MockLibraryUtil.compileLibraryToJar(TEST_DATA_PATH + "v1", "lib", false);
+        CoreJarFileSystem jarFileSystem =
+                (CoreJarFileSystem) VirtualFileManager.getInstance().getFileSystem(StandardFileSystems.JAR_PROTOCOL);
+        LibraryClassHeaderCache cache = new LibraryClassHeaderCache(1024 * 1024);
+
+        VirtualFile classFile = findClassFile(jarFileSystem, jar);
+        VirtualFileKotlinClass read = VirtualFileKotlinClass.OBJECT$.create(classFile, cache);
+        assertNotNull(read);
+
+        LibraryClassHeaderCache.Key key = cache.createKey(classFile);
+        assertNotNull(key);
+        LibraryClassHeaderCache.Entry entry = cache.get(key);
+        assertNotNull(entry);
+        assertTrue(entry.isKotlinClass());
+        assertEquals(read.getClassId(), entry.classId);
+
+        // The second time the header comes from the cache
+        VirtualFileKotlinClass cached = VirtualFileKotlinClass.OBJECT$.create(classFile, cache);
+        assertNotNull(cached);
+        assertSame(entry.classHeader, cached.getClassHeader());
+
+        // Rebuild the jar between two compilations, which makes them drop the jar handlers
+        File rebuilt = MockLibraryUtil.compileLibraryToJar(TEST_DATA_PATH + "v2", "lib-rebuilt", false);
+        FileUtil.copy(rebuilt, jar);
+        assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+        jarFileSystem.clearHandlersCache();
+
+        VirtualFile rebuiltClassFile = findClassFile(jarFileSystem, jar);
+        assertFalse(key.equals(cache.createKey(rebuiltClassFile)));
+
+        VirtualFileKotlinClass reread = VirtualFileKotlinClass.OBJECT$.create(rebuiltClassFile, cache);
+        assertNotNull(reread);
+        assertNotSame(entry.classHeader, reread.getClassHeader());
+        assertFalse(Arrays.equals(entry.classHeader.getAnnotationData(), reread.getClassHeader().getAnnotationData()));
+        assertEquals(2, cache.size());
+    }
+
+    @NotNull
+    private static VirtualFile findClassFile(@NotNull CoreJarFileSystem jarFileSystem, @NotNull File jar) {
+        VirtualFile classFile = jarFileSystem.findFileByPath(jar.getPath() + "!/lib/A.class");
+        assertNotNull("No class file in " + jar, classFile);
+        return classFile;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.load.kotlin;
+
+import junit.framework.TestCase;
+
+public class LibraryClassHeaderCacheTest extends TestCase {
+    private static final LibraryClassHeaderCache.Key A = new LibraryClassHeaderCache.Key("lib.jar!/a/A.class", 1, 100);
+    private static final LibraryClassHeaderCache.Key B = new LibraryClassHeaderCache.Key("lib.jar!/a/B.class", 1, 100);
+    private static final LibraryClassHeaderCache.Key C = new LibraryClassHeaderCache.Key("lib.jar!/a/C.class", 1, 100);
+
+    public void testModifiedJarIsAnotherKey() {
+        LibraryClassHeaderCache cache = new LibraryClassHeaderCache(1024 * 1024);
+        cache.put(A, null);
+
+        assertNotNull(cache.get(new LibraryClassHeaderCache.Key("lib.jar!/a/A.class", 1, 100)));
+        assertNull(cache.get(new LibraryClassHeaderCache.Key("lib.jar!/a/A.class", 2, 100)));
+        assertNull(cache.get(new LibraryClassHeaderCache.Key("lib.jar!/a/A.class", 1, 101)));
+    }
+
+    public void testNonKotlinClassIsCached() {
+        LibraryClassHeaderCache cache = new LibraryClassHeaderCache(1024 * 1024);
+        cache.put(A, null);
+
+        LibraryClassHeaderCache.Entry entry = cache.get(A);
+        assertNotNull(entry);
+        assertFalse(entry.isKotlinClass());
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        // Enough for two entries only
+        LibraryClassHeaderCache cache = new LibraryClassHeaderCache(2 * (128 + 2 * "lib.jar!/a/A.class".length()));
+        cache.put(A, null);
+        cache.put(B, null);
+        cache.get(A);
+        cache.put(C, null);
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(A));
+        assertNull(cache.get(B));
+        assertNotNull(cache.get(C));
+    }
+
+    public void testDisabled() {
+        LibraryClassHeaderCache cache = new LibraryClassHeaderCache(0);
+        cache.put(A, null);
+
+        assertEquals(0, cache.size());
+    }
+}
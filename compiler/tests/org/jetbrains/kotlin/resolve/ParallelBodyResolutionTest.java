@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.resolve;
+
+import com.google.common.base.Predicates;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.kotlin.cli.jvm.compiler.JetCoreEnvironment;
+import org.jetbrains.kotlin.context.ContextPackage;
+import org.jetbrains.kotlin.context.GlobalContext;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
+import org.jetbrains.kotlin.diagnostics.Diagnostic;
+import org.jetbrains.kotlin.psi.JetExpression;
+import org.jetbrains.kotlin.psi.JetFile;
+import org.jetbrains.kotlin.psi.JetReferenceExpression;
+import org.jetbrains.kotlin.renderer.DescriptorRenderer;
+import org.jetbrains.kotlin.resolve.jvm.TopDownAnalyzerFacadeForJVM;
+import org.jetbrains.kotlin.resolve.lazy.KotlinTestWithEnvironment;
+import org.jetbrains.kotlin.test.JetTestUtils;
+import org.jetbrains.kotlin.types.JetType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class ParallelBodyResolutionTest extends KotlinTestWithEnvironment {
+    private static final int FUNCTIONS = 100;
+    private static final int THREADS = 4;
+    private static final int RUNS = 5;
+
+    @Override
+    protected JetCoreEnvironment createEnvironment() {
+        return JetTestUtils.createEnvironmentWithMockJdkAndIdeaAnnotations(getTestRootDisposable());
+    }
+
+    public void testManyCrossReferencingBodies() {
+        JetFile file = JetTestUtils.createFile("stress.kt", generateSource(), getProject());
+
+        String expected = analyze(file, 1);
+        assertTrue("Intentional errors should be reported", expected.contains("TYPE_MISMATCH"));
+
+        for (int run = 0; run < RUNS; run++) {
+            assertEquals("Parallel run #" + run + " differs from the sequential one", expected, analyze(file, THREADS));
+        }
+    }
+
+    // Bodies call each other in both directions, have inferred types computed on demand, local functions,
+    // inner classes of generic classes and stdlib generics, so workers hit shared lazy scopes at the same time
+    @NotNull
+    private static String generateSource() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package stress\n\n");
+        sb.append("open class Base<T>(val value: T) {\n");
+        sb.append("    open fun get(): T = value\n");
+        sb.append("}\n\n");
+        sb.append("class Box<T>(value: T) : Base<T>(value) {\n");
+        sb.append("    inner class Ref {\n");
+        sb.append("        fun unwrap(): T = get()\n");
+        sb.append("    }\n");
+        sb.append("}\n\n");
+
+        for (int i = 0; i < FUNCTIONS; i++) {
+            if (i == 0) {
+                sb.append("fun f0(x: Int) = x + 1\n\n");
+            }
+            else {
+                sb.append("fun f").append(i).append("(x: Int) = f").append(i - 1).append("(x) + listOf(x, f").append(i / 2)
+                        .append("(x)).map { it * ").append(i).append(" }.fold(0) { a, b -> a + b }\n\n");
+            }
+
+            sb.append("fun g").append(i).append("(x: Int): Int {\n");
+            sb.append("    fun local(y: Int) = y + f").append(i).append("(y)\n");
+            sb.append("    val box = Box(x)\n");
+            sb.append("    return if (x > 0) local(box.Ref().unwrap()) + g").append((i + 1) % FUNCTIONS)
+                    .append("(x - 1) + C").append(i).append("().m(Box(\"s\")) else 0\n");
+            sb.append("}\n\n");
+
+            sb.append("class C").append(i).append(" {\n");
+            sb.append("    fun m(b: Box<String>) = b.Ref().unwrap().length + g").append(FUNCTIONS - 1 - i).append("(1)\n");
+            sb.append("    fun n(): String = f").append(i).append("(0)\n");
+            sb.append("}\n\n");
+        }
+        return sb.toString();
+    }
+
+    // Renders the diagnostics, the types of all expressions and the targets of all references
+    @NotNull
+    private String analyze(@NotNull JetFile file, int threads) {
+        GlobalContext globalContext = threads > 1 ? ContextPackage.ConcurrentGlobalContext() : ContextPackage.GlobalContext();
+        TopDownAnalysisParameters parameters = TopDownAnalysisParameters.create(
+                globalContext.getStorageManager(), globalContext.getExceptionTracker(), Predicates.<PsiFile>alwaysTrue(), false, false
+        ).withBodyResolveThreads(threads);
+        BindingTraceContext trace = threads > 1 ? BindingTraceContext.createThreadSafe() : new BindingTraceContext();
+
+        BindingContext context = TopDownAnalyzerFacadeForJVM.analyzeFilesWithJavaIntegrationNoIncremental(
+                getProject(), Collections.singletonList(file), trace, parameters, TopDownAnalyzerFacadeForJVM.createSealedJavaModule()
+        ).getBindingContext();
+
+        List<String> diagnostics = new ArrayList<String>();
+        for (Diagnostic diagnostic : context.getDiagnostics().all()) {
+            diagnostics.add(diagnostic.getFactory().getName() + " " + diagnostic.getTextRanges());
+        }
+        Collections.sort(diagnostics);
+
+        StringBuilder sb = new StringBuilder();
+        for (String diagnostic : diagnostics) {
+            sb.append(diagnostic).append("\n");
+        }
+        for (JetExpression expression : PsiTreeUtil.collectElementsOfType(file, JetExpression.class)) {
+            JetType type = context.get(BindingContext.EXPRESSION_TYPE, expression);
+            sb.append(expression.getTextOffset()).append(": ").append(type);
+            if (expression instanceof JetReferenceExpression) {
+                DeclarationDescriptor target = context.get(BindingContext.REFERENCE_TARGET, (JetReferenceExpression) expression);
+                sb.append(" -> ").append(target == null ? null : DescriptorRenderer.FQ_NAMES_IN_TYPES.render(target));
+            }
+            sb.append("\n");
+        }
+        return sb.toString();
+    }
+}
@@ -22,6 +22,9 @@ import org.jetbrains.kotlin.codegen.forTestCompile.ForTestCompileRuntime
 import org.jetbrains.kotlin.test.JetTestUtils
 import org.jetbrains.kotlin.storage.LockBasedStorageManager
 import java.io.FileInputStream
+import java.io.InputStream
+import org.jetbrains.kotlin.builtins.BuiltInsImage
+import org.jetbrains.kotlin.builtins.BuiltInsSerializationUtil
 import org.jetbrains.kotlin.builtins.BuiltinsPackageFragment
 import org.jetbrains.kotlin.builtins.KotlinBuiltIns
 import org.jetbrains.kotlin.test.util.RecursiveDescriptorComparator
@@ -37,14 +40,21 @@ public class BuiltInsSerializerTest : TestCaseWithTmpdir() {
                 onComplete = { totalSize, totalFiles -> }
         )
 
-        val module = JetTestUtils.createEmptyModule("<module>")
-
-        val packageFragment = BuiltinsPackageFragment(TEST_PACKAGE_FQNAME, LockBasedStorageManager(), module) {
+        checkLoadedPackage(source) {
             path ->
             val file = File(tmpdir, path)
             if (file.exists()) FileInputStream(file) else null
         }
 
+        val image = BuiltInsImage.load(File(tmpdir, BuiltInsSerializationUtil.getImageFilePath(TEST_PACKAGE_FQNAME)))
+        checkLoadedPackage(source) { path -> image.getStream(path) }
+    }
+
+    private fun checkLoadedPackage(source: String, loadResource: (String) -> InputStream?) {
+        val module = JetTestUtils.createEmptyModule("<module>")
+
+        val packageFragment = BuiltinsPackageFragment(TEST_PACKAGE_FQNAME, LockBasedStorageManager(), module, loadResource)
+
         module.initialize(packageFragment.provider)
         module.addDependencyOnModule(module)
         module.addDependencyOnModule(KotlinBuiltIns.getInstance().getBuiltInsModule())
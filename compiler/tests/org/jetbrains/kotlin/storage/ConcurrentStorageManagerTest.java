@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.Function0;
+import kotlin.Function1;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ConcurrentStorageManagerTest extends StorageManagerTest {
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        m = new ConcurrentStorageManager();
+    }
+
+    public void testLazyValueComputedOnceByManyThreads() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        final CountDownLatch computing = new CountDownLatch(1);
+        final NotNullLazyValue<String> value = m.createLazyValue(new Function0<String>() {
+            @Override
+            public String invoke() {
+                counter.incrementAndGet();
+                await(computing);
+                return "ok";
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] futures = new Future<?>[4];
+            for (int i = 0; i < futures.length; i++) {
+                futures[i] = executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() {
+                        return value.invoke();
+                    }
+                });
+            }
+            computing.countDown();
+            for (Future<?> future : futures) {
+                assertEquals("ok", future.get(10, TimeUnit.SECONDS));
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, counter.get());
+    }
+
+    public void testMemoizedFunctionDoesNotBlockOtherKeys() throws Exception {
+        final CountDownLatch firstStarted = new CountDownLatch(1);
+        final CountDownLatch secondComputed = new CountDownLatch(1);
+        final MemoizedFunctionToNotNull<Integer, Integer> function = m.createMemoizedFunction(new Function1<Integer, Integer>() {
+            @Override
+            public Integer invoke(Integer key) {
+                if (key == 1) {
+                    firstStarted.countDown();
+                    // Would never finish if computations of different keys were serialized
+                    await(secondComputed);
+                }
+                return key * 10;
+            }
+        });
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> first = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return function.invoke(1);
+                }
+            });
+            await(firstStarted);
+            assertEquals(20, function.invoke(2).intValue());
+            secondComputed.countDown();
+            assertEquals(10, first.get(10, TimeUnit.SECONDS).intValue());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    public void testRecursionAcrossThreadsIsDetected() throws Exception {
+        final CountDownLatch aStarted = new CountDownLatch(1);
+        final CountDownLatch bStarted = new CountDownLatch(1);
+
+        class C {
+            NotNullLazyValue<String> a = m.createRecursionTolerantLazyValue(new Function0<String>() {
+                @Override
+                public String invoke() {
+                    aStarted.countDown();
+                    await(bStarted);
+                    return "a" + b.invoke();
+                }
+            }, "?");
+
+            NotNullLazyValue<String> b = m.createRecursionTolerantLazyValue(new Function0<String>() {
+                @Override
+                public String invoke() {
+                    bStarted.countDown();
+                    await(aStarted);
+                    return "b" + a.invoke();
+                }
+            }, "?");
+        }
+        final C c = new C();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> a = executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return c.a.invoke();
+                }
+            });
+            Future<String> b = executor.submit(new Callable<String>() {
+                @Override
+                public String call() {
+                    return c.b.invoke();
+                }
+            });
+
+            String resultA = a.get(10, TimeUnit.SECONDS);
+            String resultB = b.get(10, TimeUnit.SECONDS);
+            assertTrue(resultA + " " + resultB,
+                       (resultA.equals("ab?") && resultB.equals("b?")) || (resultA.equals("a?") && resultB.equals("ba?")));
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue("Timed out", latch.await(10, TimeUnit.SECONDS));
+        }
+        catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import org.jetbrains.kotlin.test.ConfigurationKind;
 import org.jetbrains.kotlin.test.JetLiteFixture;
 import org.jetbrains.kotlin.test.JetTestUtils;
 import org.jetbrains.kotlin.types.checker.JetTypeChecker;
+import org.jetbrains.kotlin.types.checker.SubtypingCache;
 import org.jetbrains.kotlin.types.expressions.ExpressionTypingServices;
 
 import java.io.File;
@@ -309,6 +310,33 @@ public class JetTypeCheckerTest extends JetLiteFixture {
 //        assertSubtype("java.lang.Integer", "java.lang.Comparable<java.lang.Integer>?");
     }
 
+    public void testSubtypingCache() throws Exception {
+        JetType list = makeType("List<Int>");
+        JetType collection = makeType("Collection<Any>");
+
+        SubtypingCache cache = new SubtypingCache();
+        SubtypingCache.Scope scope = cache.enter();
+        try {
+            assertTrue(JetTypeChecker.DEFAULT.isSubtypeOf(list, collection));
+            long hits = cache.getHits();
+            assertTrue(JetTypeChecker.DEFAULT.isSubtypeOf(list, collection));
+            assertEquals(hits + 1, cache.getHits());
+
+            assertFalse(JetTypeChecker.DEFAULT.isSubtypeOf(collection, list));
+            assertFalse(JetTypeChecker.DEFAULT.isSubtypeOf(collection, list));
+        }
+        finally {
+            scope.exit();
+        }
+
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        assertTrue(JetTypeChecker.DEFAULT.isSubtypeOf(list, collection));
+        assertEquals(hits, cache.getHits());
+        assertEquals(misses, cache.getMisses());
+        assertNull(SubtypingCache.getCurrent());
+    }
+
     public void testNullable() throws Exception {
         assertSubtype("Any?", "Any?");
         assertSubtype("Any", "Any?");
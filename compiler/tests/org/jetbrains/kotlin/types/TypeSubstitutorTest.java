@@ -290,6 +290,17 @@ public class TypeSubstitutorTest extends KotlinTestWithEnvironment {
         );
     }
 
+    @SuppressWarnings("unchecked")
+    public void testSubstitutedTypesAreInterned() throws Exception {
+        JetType initialType = resolveType("C<P<T, P<T, R>>>");
+        TypeSubstitutor substitutor = TypeSubstitutor.create(stringsToSubstitutionMap(new Pair[] {map("T", "Int"), map("R", "String")}));
+
+        JetType first = substitutor.substitute(initialType, Variance.INVARIANT);
+        JetType second = substitutor.substitute(initialType, Variance.INVARIANT);
+        assertNotNull(first);
+        assertSame(first, second);
+    }
+
     public void testShallowType() throws Exception {
         doTest(
                 "String",
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.util.slicedMap;
+
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class PartitionedSlicedMapTest extends TestCase {
+    private final PartitionedSlicedMap map = PartitionedSlicedMap.create();
+
+    public void testPutAndGet() {
+        WritableSlice<String, Integer> LENGTH = Slices.<String, Integer>sliceBuilder().setDebugName("LENGTH").build();
+        WritableSlice<String, Integer> HASH = Slices.<String, Integer>sliceBuilder().setDebugName("HASH").build();
+
+        map.put(LENGTH, "abc", 3);
+        map.put(HASH, "abc", "abc".hashCode());
+        map.put(LENGTH, null, 0);
+
+        assertEquals(3, (int) map.get(LENGTH, "abc"));
+        assertEquals(0, (int) map.get(LENGTH, null));
+        assertEquals("abc".hashCode(), (int) map.get(HASH, "abc"));
+        assertNull(map.get(HASH, "abcd"));
+        assertNull(map.get(HASH, null));
+    }
+
+    public void testRewritePolicy() {
+        RewritePolicy keepFirst = new RewritePolicy() {
+            @Override
+            public <K> boolean rewriteProcessingNeeded(K key) {
+                return true;
+            }
+
+            @Override
+            public <K, V> boolean processRewrite(WritableSlice<K, V> slice, K key, V oldValue, V newValue) {
+                return false;
+            }
+        };
+        WritableSlice<String, Integer> FIRST = new BasicWritableSlice<String, Integer>(keepFirst);
+        WritableSlice<String, Integer> LAST = new BasicWritableSlice<String, Integer>(RewritePolicy.DO_NOTHING);
+
+        map.put(FIRST, "a", 1);
+        map.put(FIRST, "a", 2);
+        map.put(LAST, "a", 1);
+        map.put(LAST, "a", 2);
+
+        assertEquals(1, (int) map.get(FIRST, "a"));
+        assertEquals(2, (int) map.get(LAST, "a"));
+    }
+
+    public void testOppositeSliceAndFurtherLookup() {
+        WritableSlice<Integer, String> COLOR_NAME = Slices.<Integer, String>sliceBuilder().setDebugName("COLOR_NAME").build();
+        WritableSlice<String, Integer> NAME_COLOR =
+                Slices.<String, Integer>sliceBuilder().setOpposite(COLOR_NAME).setDebugName("NAME_COLOR").build();
+        @SuppressWarnings("unchecked")
+        WritableSlice<String, Object> NAME_OBJECT = Slices.<String, Object>sliceBuilder()
+                .setFurtherLookupSlices(new ReadOnlySlice[] {NAME_COLOR})
+                .setDebugName("NAME_OBJECT").build();
+
+        map.put(NAME_COLOR, "RED", 0xff0000);
+
+        assertEquals("RED", map.get(COLOR_NAME, 0xff0000));
+        assertEquals(0xff0000, map.get(NAME_OBJECT, "RED"));
+        assertEquals(0xff0000, (int) map.get(NAME_COLOR.makeRawValueVersion(), "RED"));
+    }
+
+    public void testKeyNormalizer() {
+        WritableSlice<String, Integer> CASE_INSENSITIVE = Slices.<String, Integer>sliceBuilder()
+                .setKeyNormalizer(new Slices.KeyNormalizer<String>() {
+                    @Override
+                    public String normalize(String key) {
+                        return key.toLowerCase();
+                    }
+                })
+                .setDebugName("CASE_INSENSITIVE").build();
+
+        map.put(CASE_INSENSITIVE, "Key", 1);
+
+        assertEquals(1, (int) map.get(CASE_INSENSITIVE, "KEY"));
+        assertEquals(ImmutableMap.of("key", 1), map.getSliceContents(CASE_INSENSITIVE));
+    }
+
+    public void testCollectiveKeysInInsertionOrder() {
+        WritableSlice<String, Boolean> NAMES = Slices.createCollectiveSetSlice();
+
+        assertTrue(map.getKeys(NAMES).isEmpty());
+
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 100; i++) {
+            map.put(NAMES, "name" + i, true);
+            expected.add("name" + i);
+        }
+        map.put(NAMES, "name0", true);
+
+        assertEquals(expected, new ArrayList<String>(map.getKeys(NAMES)));
+    }
+
+    public void testRemove() {
+        RemovableSlice<Integer, Boolean> NUMBERS = Slices.createRemovableSetSlice();
+        Random random = new Random(42);
+        Set<Integer> expected = new HashSet<Integer>();
+
+        for (int i = 0; i < 10000; i++) {
+            // Small key range so that keys are put, removed and put back many times, colliding in the table
+            int key = random.nextInt(500) * 64;
+            if (random.nextBoolean()) {
+                map.put(NUMBERS, key, true);
+                expected.add(key);
+            }
+            else {
+                assertEquals(expected.remove(key) ? Boolean.TRUE : null, map.remove(NUMBERS, key));
+            }
+        }
+
+        assertEquals(expected, map.getSliceContents(NUMBERS).keySet());
+        for (int key = 0; key < 500 * 64; key += 64) {
+            assertEquals(expected.contains(key), (boolean) map.get(NUMBERS, key));
+        }
+    }
+
+    public void testRemoveKeys() {
+        WritableSlice<Integer, String> NAMES = Slices.<Integer, String>sliceBuilder().setDebugName("NAMES").build();
+        WritableSlice<Integer, Boolean> ODD = Slices.createCollectiveSetSlice();
+
+        for (int i = 0; i < 1000; i++) {
+            map.put(NAMES, i, "name" + i);
+            if (i % 2 == 1) {
+                map.put(ODD, i, true);
+            }
+        }
+
+        map.removeKeys(new Predicate<Object>() {
+            @Override
+            public boolean apply(Object key) {
+                return (Integer) key >= 10;
+            }
+        });
+
+        assertEquals("name9", map.get(NAMES, 9));
+        assertNull(map.get(NAMES, 10));
+        assertEquals(Arrays.asList(1, 3, 5, 7, 9), new ArrayList<Integer>(map.getKeys(ODD)));
+
+        map.put(NAMES, 500, "again");
+        assertEquals("again", map.get(NAMES, 500));
+        assertEquals(11, map.getSliceContents(NAMES).size());
+    }
+
+    public void testIteratorAndClear() {
+        WritableSlice<String, Integer> FIRST = Slices.<String, Integer>sliceBuilder().setDebugName("FIRST").build();
+        WritableSlice<String, Integer> SECOND = Slices.<String, Integer>sliceBuilder().setDebugName("SECOND").build();
+
+        map.put(SECOND, "b", 2);
+        map.put(FIRST, "a", 1);
+        map.put(SECOND, "c", 3);
+
+        List<String> entries = new ArrayList<String>();
+        for (Map.Entry<SlicedMapKey<?, ?>, ?> entry : map) {
+            entries.add(entry.getKey().getSlice() + " " + entry.getKey().getKey() + "=" + entry.getValue());
+        }
+        assertEquals(Arrays.asList("SECOND b=2", "SECOND c=3", "FIRST a=1"), entries);
+
+        map.clear();
+
+        assertFalse(map.iterator().hasNext());
+        assertNull(map.get(SECOND, "b"));
+    }
+}
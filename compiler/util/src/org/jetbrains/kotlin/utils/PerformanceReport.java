@@ -0,0 +1,266 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects wall time, CPU time and allocation of compiler phases, and counters of the processed entities.
+ * Rendered as JSON or in the Chrome trace event format (chrome://tracing).
+ *
+ * CPU time is the time of the whole process (so that work of the worker threads in parallel phases is included),
+ * allocation is measured for the thread which runs the phase only. Both are -1 when not supported by the JVM.
+ *
+ * Phases should not overlap. {@link #DISABLED} records nothing, it's used when no report was requested.
+ */
+public class PerformanceReport {
+    public static final String PARSE = "parse";
+    public static final String RESOLVE_DECLARATIONS = "resolve declarations";
+    public static final String RESOLVE_BODIES = "resolve bodies";
+    public static final String CFA = "control flow analysis";
+    public static final String CODEGEN = "codegen";
+    public static final String WRITE = "write output";
+
+    public static final String FILES = "files";
+    public static final String CLASSES = "classes";
+    public static final String DESCRIPTORS = "descriptors";
+    public static final String SUBTYPE_CACHE_HITS = "subtype cache hits";
+    public static final String SUBTYPE_CACHE_MISSES = "subtype cache misses";
+
+    public static final PerformanceReport DISABLED = new PerformanceReport(false);
+
+    private static final Phase NO_PHASE = new Phase(null, "<none>");
+
+    private final boolean enabled;
+    private final long startNanos = System.nanoTime();
+    private final List<PhaseRecord> records = new ArrayList<PhaseRecord>();
+    private final Map<String, Long> counters = new LinkedHashMap<String, Long>();
+
+    public PerformanceReport() {
+        this(true);
+    }
+
+    private PerformanceReport(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Usage:
+     * <pre>
+     * PerformanceReport.Phase phase = report.start(PerformanceReport.CODEGEN);
+     * try { ... } finally { phase.end(); }
+     * </pre>
+     */
+    @NotNull
+    public Phase start(@NotNull String name) {
+        return enabled ? new Phase(this, name) : NO_PHASE;
+    }
+
+    public synchronized void count(@NotNull String counter, long delta) {
+        if (!enabled) return;
+
+        Long value = counters.get(counter);
+        counters.put(counter, value == null ? delta : value + delta);
+    }
+
+    private synchronized void addRecord(@NotNull PhaseRecord record) {
+        records.add(record);
+    }
+
+    /**
+     * Phases with the same name (e.g. codegen of several modules) are summed up
+     */
+    @NotNull
+    public synchronized String renderJson() {
+        Map<String, PhaseRecord> totals = new LinkedHashMap<String, PhaseRecord>();
+        for (PhaseRecord record : records) {
+            PhaseRecord total = totals.get(record.name);
+            totals.put(record.name, total == null ? record : total.plus(record));
+        }
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"phases\": [");
+        String separator = "\n";
+        for (PhaseRecord total : totals.values()) {
+            sb.append(separator).append("    {\"name\": ");
+            appendString(sb, total.name);
+            sb.append(", \"wallTimeMs\": ").append(toMillis(total.wallNanos));
+            sb.append(", ");
+            appendMeasurements(sb, total);
+            sb.append("}");
+            separator = ",\n";
+        }
+        sb.append("\n  ],\n  \"counters\": ");
+        appendCounters(sb);
+        sb.append("\n}\n");
+        return sb.toString();
+    }
+
+    @NotNull
+    public synchronized String renderChromeTrace() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"traceEvents\": [");
+        String separator = "\n";
+        long end = 0;
+        for (PhaseRecord record : records) {
+            sb.append(separator).append("  {\"name\": ");
+            appendString(sb, record.name);
+            sb.append(", \"cat\": \"compiler\", \"ph\": \"X\"");
+            sb.append(", \"ts\": ").append(toMicros(record.startNanos - startNanos));
+            sb.append(", \"dur\": ").append(toMicros(record.wallNanos));
+            sb.append(", \"pid\": 1, \"tid\": ").append(record.threadId);
+            sb.append(", \"args\": {");
+            appendMeasurements(sb, record);
+            sb.append("}}");
+            separator = ",\n";
+            end = Math.max(end, record.startNanos - startNanos + record.wallNanos);
+        }
+        if (!counters.isEmpty()) {
+            sb.append(separator).append("  {\"name\": \"counters\", \"ph\": \"C\", \"ts\": ").append(toMicros(end));
+            sb.append(", \"pid\": 1, \"args\": ");
+            appendCounters(sb);
+            sb.append("}");
+        }
+        sb.append("\n]}\n");
+        return sb.toString();
+    }
+
+    private static void appendMeasurements(@NotNull StringBuilder sb, @NotNull PhaseRecord record) {
+        sb.append("\"cpuTimeMs\": ").append(record.cpuNanos < 0 ? "null" : String.valueOf(toMillis(record.cpuNanos)));
+        sb.append(", \"allocatedBytes\": ").append(record.allocatedBytes < 0 ? "null" : String.valueOf(record.allocatedBytes));
+    }
+
+    private void appendCounters(@NotNull StringBuilder sb) {
+        sb.append("{");
+        String separator = "";
+        for (Map.Entry<String, Long> entry : counters.entrySet()) {
+            sb.append(separator);
+            appendString(sb, entry.getKey());
+            sb.append(": ").append(entry.getValue());
+            separator = ", ";
+        }
+        sb.append("}");
+    }
+
+    private static void appendString(@NotNull StringBuilder sb, @NotNull String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            }
+            else if (c < ' ') {
+                sb.append(String.format("\\u%04x", (int) c));
+            }
+            else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    private static double toMillis(long nanos) {
+        return Math.round(nanos / 1e4) / 100.0;
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos / 1000;
+    }
+
+    private static long processCpuTime() {
+        OperatingSystemMXBean bean = ManagementFactory.getOperatingSystemMXBean();
+        if (bean instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) bean).getProcessCpuTime();
+        }
+        return -1;
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+            if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+                return sunBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long difference(long start, long end) {
+        return start < 0 || end < 0 ? -1 : end - start;
+    }
+
+    public static final class Phase {
+        private final PerformanceReport report;
+        private final String name;
+        private final long threadId;
+        private final long startNanos;
+        private final long startCpuNanos;
+        private final long startAllocatedBytes;
+
+        private Phase(PerformanceReport report, @NotNull String name) {
+            this.report = report;
+            this.name = name;
+            this.threadId = Thread.currentThread().getId();
+            this.startAllocatedBytes = currentThreadAllocatedBytes();
+            this.startCpuNanos = processCpuTime();
+            this.startNanos = System.nanoTime();
+        }
+
+        public void end() {
+            if (report == null) return;
+
+            long wallNanos = System.nanoTime() - startNanos;
+            long cpuNanos = difference(startCpuNanos, processCpuTime());
+            long allocatedBytes = difference(startAllocatedBytes, currentThreadAllocatedBytes());
+            report.addRecord(new PhaseRecord(name, threadId, startNanos, wallNanos, cpuNanos, allocatedBytes));
+        }
+    }
+
+    private static final class PhaseRecord {
+        final String name;
+        final long threadId;
+        final long startNanos;
+        final long wallNanos;
+        final long cpuNanos;
+        final long allocatedBytes;
+
+        PhaseRecord(String name, long threadId, long startNanos, long wallNanos, long cpuNanos, long allocatedBytes) {
+            this.name = name;
+            this.threadId = threadId;
+            this.startNanos = startNanos;
+            this.wallNanos = wallNanos;
+            this.cpuNanos = cpuNanos;
+            this.allocatedBytes = allocatedBytes;
+        }
+
+        @NotNull
+        PhaseRecord plus(@NotNull PhaseRecord other) {
+            return new PhaseRecord(name, threadId, startNanos, wallNanos + other.wallNanos,
+                                   cpuNanos < 0 || other.cpuNanos < 0 ? -1 : cpuNanos + other.cpuNanos,
+                                   allocatedBytes < 0 || other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes);
+        }
+    }
+}
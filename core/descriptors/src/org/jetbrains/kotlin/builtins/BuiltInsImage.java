@@ -0,0 +1,194 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.builtins;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * All serialized built-in files of a package stored in one file: an index of paths followed by the contents of the files.
+ *
+ * The image is mapped into memory when it's a file on disk, or read in one go from a jar, and the files are then
+ * read from the shared buffer without copying, when the corresponding declarations are deserialized
+ */
+public final class BuiltInsImage {
+    private static final int MAGIC = 0x4B42494D; // "KBIM"
+    private static final int VERSION = 1;
+
+    private final ByteBuffer buffer;
+    // Path of a file to its offset and length in the buffer
+    private final Map<String, int[]> entries;
+
+    private BuiltInsImage(@NotNull ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        this.entries = readIndex(buffer);
+    }
+
+    /**
+     * @return the image found by the class loader at the given path, or null if there's no such resource
+     */
+    @Nullable
+    public static BuiltInsImage load(@NotNull ClassLoader classLoader, @NotNull String path) throws IOException {
+        URL url = classLoader.getResource(path);
+        if (url == null) return null;
+
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return load(new File(url.toURI()));
+            }
+            catch (URISyntaxException ignored) {
+                // Fall back to reading the stream
+            }
+        }
+
+        InputStream stream = url.openStream();
+        try {
+            return new BuiltInsImage(ByteBuffer.wrap(readFully(stream)));
+        }
+        finally {
+            stream.close();
+        }
+    }
+
+    @NotNull
+    public static BuiltInsImage load(@NotNull File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            // The mapping stays valid after the channel is closed
+            FileChannel channel = randomAccessFile.getChannel();
+            return new BuiltInsImage(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * @return contents of the file with the given path, or null if there's no such file in the image
+     */
+    @Nullable
+    public InputStream getStream(@NotNull String path) {
+        int[] entry = entries.get(path);
+        if (entry == null) return null;
+
+        ByteBuffer slice = buffer.duplicate();
+        slice.position(entry[0]);
+        slice.limit(entry[0] + entry[1]);
+        return new ByteBufferInputStream(slice);
+    }
+
+    public static void write(@NotNull OutputStream output, @NotNull Map<String, byte[]> files) throws IOException {
+        DataOutputStream stream = new DataOutputStream(output);
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+        stream.writeInt(files.size());
+        for (Map.Entry<String, byte[]> entry : files.entrySet()) {
+            stream.writeUTF(entry.getKey());
+            stream.writeInt(entry.getValue().length);
+        }
+        for (byte[] contents : files.values()) {
+            stream.write(contents);
+        }
+        stream.flush();
+    }
+
+    @NotNull
+    private static Map<String, int[]> readIndex(@NotNull ByteBuffer buffer) throws IOException {
+        DataInputStream stream = new DataInputStream(new ByteBufferInputStream(buffer.duplicate()));
+        if (stream.readInt() != MAGIC) {
+            throw new IOException("Not a built-ins image");
+        }
+        int version = stream.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported built-ins image version: " + version + ", expected " + VERSION);
+        }
+
+        int count = stream.readInt();
+        String[] paths = new String[count];
+        int[] lengths = new int[count];
+        for (int i = 0; i < count; i++) {
+            paths[i] = stream.readUTF();
+            lengths[i] = stream.readInt();
+        }
+
+        // Contents of the files follow the index
+        int offset = buffer.capacity() - stream.available();
+        Map<String, int[]> result = new HashMap<String, int[]>(count);
+        for (int i = 0; i < count; i++) {
+            if (offset + lengths[i] > buffer.capacity()) {
+                throw new IOException("Built-ins image is truncated at " + paths[i]);
+            }
+            result.put(paths[i], new int[] {offset, lengths[i]});
+            offset += lengths[i];
+        }
+        return result;
+    }
+
+    @NotNull
+    private static byte[] readFully(@NotNull InputStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(64 * 1024);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) >= 0) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(@NotNull ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.min(Math.max(n, 0), buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+    }
+}
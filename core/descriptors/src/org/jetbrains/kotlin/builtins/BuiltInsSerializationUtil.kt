@@ -24,6 +24,7 @@ public object BuiltInsSerializationUtil {
     private val PACKAGE_FILE_NAME = ".kotlin_package"
     private val STRING_TABLE_FILE_NAME = ".kotlin_string_table"
     private val CLASS_NAMES_FILE_NAME = ".kotlin_class_names"
+    private val IMAGE_FILE_NAME = ".kotlin_builtins"
     private val CLASS_OBJECT_NAME = "object"
 
     private fun relativeClassNameToFilePath(className: FqNameUnsafe): String? {
@@ -51,6 +52,9 @@ public object BuiltInsSerializationUtil {
     platformStatic public fun getClassNamesFilePath(fqName: FqName): String =
             packageFqNameToPath(fqName) + "/" + CLASS_NAMES_FILE_NAME
 
+    platformStatic public fun getImageFilePath(fqName: FqName): String =
+            packageFqNameToPath(fqName) + "/" + IMAGE_FILE_NAME
+
     private fun packageFqNameToPath(fqName: FqName): String =
             fqName.asString().replace('.', '/')
 }
@@ -36,6 +36,7 @@ import org.jetbrains.kotlin.storage.LockBasedStorageManager;
 import org.jetbrains.kotlin.types.*;
 import org.jetbrains.kotlin.types.checker.JetTypeChecker;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
 
@@ -110,11 +111,14 @@ public class KotlinBuiltIns {
         builtInsModule = new ModuleDescriptorImpl(
                 Name.special("<built-ins lazy module>"), Collections.<ImportPath>emptyList(), PlatformToKotlinClassMap.EMPTY
         );
+        final BuiltInsImage image = loadImage();
         builtinsPackageFragment = new BuiltinsPackageFragment(
                 BUILT_INS_PACKAGE_FQ_NAME, new LockBasedStorageManager(), builtInsModule,
                 new Function1<String, InputStream>() {
                     @Override
                     public InputStream invoke(String path) {
+                        // The image contains all files of the package, so a file not found there doesn't exist at all
+                        if (image != null) return image.getStream(path);
                         return KotlinBuiltIns.class.getClassLoader().getResourceAsStream(path);
                     }
                 }
@@ -131,6 +135,18 @@ public class KotlinBuiltIns {
         nonPhysicalClasses = new HashSet<ClassDescriptor>();
     }
 
+    @Nullable
+    private static BuiltInsImage loadImage() {
+        try {
+            return BuiltInsImage.load(KotlinBuiltIns.class.getClassLoader(),
+                                      BuiltInsSerializationUtil.getImageFilePath(BUILT_INS_PACKAGE_FQ_NAME));
+        }
+        catch (IOException e) {
+            // Separate files of the package are still there
+            return null;
+        }
+    }
+
     private void doInitialize() {
         for (PrimitiveType primitive : PrimitiveType.values()) {
             makePrimitive(primitive);
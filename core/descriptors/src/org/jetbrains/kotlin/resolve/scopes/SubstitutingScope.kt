@@ -25,19 +25,38 @@ import kotlin.properties.Delegates
 
 public class SubstitutingScope(private val workerScope: JetScope, private val substitutor: TypeSubstitutor) : JetScope {
 
+    // Guarded by this: substituted types are interned (see TypeInterner), so the same scope may be used by several threads
     private var substitutedDescriptors: MutableMap<DeclarationDescriptor, DeclarationDescriptor?>? = null
 
-    private val _allDescriptors by Delegates.lazy { substitute(workerScope.getDescriptors()) }
+    private val _allDescriptors by Delegates.blockingLazy { substitute(workerScope.getDescriptors()) }
 
     private fun <D : DeclarationDescriptor> substitute(descriptor: D?): D? {
         if (descriptor == null) return null
         if (substitutor.isEmpty()) return descriptor
 
-        if (substitutedDescriptors == null) {
-            substitutedDescriptors = HashMap<DeclarationDescriptor, DeclarationDescriptor>()
+        synchronized (this) {
+            val map = substitutedDescriptors
+            if (map != null && map.containsKey(descriptor)) {
+                [suppress("UNCHECKED_CAST")]
+                return map[descriptor] as D?
+            }
         }
 
-        val substituted = substitutedDescriptors!!.getOrPut(descriptor, { descriptor.substitute(substitutor) })
+        // Substitution may compute lazy parts of the descriptor under other locks, so it's done outside of this one.
+        // If two threads substitute the same descriptor at once, the first result wins
+        val substituted = descriptor.substitute(substitutor)
+
+        synchronized (this) {
+            if (substitutedDescriptors == null) {
+                substitutedDescriptors = HashMap<DeclarationDescriptor, DeclarationDescriptor?>()
+            }
+            val map = substitutedDescriptors!!
+            if (map.containsKey(descriptor)) {
+                [suppress("UNCHECKED_CAST")]
+                return map[descriptor] as D?
+            }
+            map[descriptor] = substituted
+        }
 
         [suppress("UNCHECKED_CAST")]
         return substituted as D?
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.types;
+
+import kotlin.Function0;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.descriptors.CallableDescriptor;
+import org.jetbrains.kotlin.descriptors.ClassDescriptor;
+import org.jetbrains.kotlin.descriptors.ClassifierDescriptor;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
+import org.jetbrains.kotlin.descriptors.annotations.Annotations;
+import org.jetbrains.kotlin.resolve.scopes.JetScope;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Canonical instances of structurally identical types, so that e.g. every substituted List<String> is the same object.
+ *
+ * Types are identical if they have the same type constructor object, nullability and arguments of the same projection kinds
+ * whose types are the same objects. Arguments are interned before the types containing them, so the latter holds for them too.
+ * Types with annotations or with lazily computed arguments are never interned, as well as types of classes declared inside generic
+ * classes or functions (e.g. inner and local classes): their member scopes also depend on the substitution of type parameters
+ * captured from outer declarations, which is not a part of the key.
+ *
+ * Both the types and the objects they are identified by are weakly referenced, so nothing is retained by the interner itself.
+ */
+public class TypeInterner {
+    private static final ConcurrentMap<Key, TypeReference> types = new ConcurrentHashMap<Key, TypeReference>();
+    private static final ReferenceQueue<JetType> queue = new ReferenceQueue<JetType>();
+
+    private TypeInterner() {
+    }
+
+    /**
+     * Same as {@link JetTypeImpl#JetTypeImpl}, but returns an existing instance if there's a structurally identical one.
+     * Its member scope is used then, so the given one should be equivalent to it (like any scope for the same constructor and arguments)
+     */
+    @NotNull
+    public static JetType createType(
+            @NotNull final Annotations annotations,
+            @NotNull final TypeConstructor constructor,
+            final boolean nullable,
+            @NotNull final List<? extends TypeProjection> arguments,
+            @NotNull final JetScope memberScope
+    ) {
+        if (annotations != Annotations.EMPTY || !canBeInterned(arguments) || hasCapturedTypeParameters(constructor)) {
+            return new JetTypeImpl(annotations, constructor, nullable, arguments, memberScope);
+        }
+
+        Object[] identities = new Object[arguments.size() + 1];
+        Object[] values = new Object[arguments.size() + 1];
+        identities[0] = constructor;
+        values[0] = nullable;
+        for (int i = 0; i < arguments.size(); i++) {
+            TypeProjection argument = arguments.get(i);
+            identities[i + 1] = argument.getType();
+            values[i + 1] = argument.getProjectionKind();
+        }
+
+        return intern(identities, values, new Function0<JetType>() {
+            @Override
+            public JetType invoke() {
+                return new JetTypeImpl(annotations, constructor, nullable, arguments, memberScope);
+            }
+        });
+    }
+
+    /**
+     * Returns the type registered for the key, or registers the created one. The key consists of objects compared by identity
+     * (e.g. descriptors or types) and of values compared by equals() which must not reference the former (e.g. names or flags)
+     */
+    @NotNull
+    public static JetType intern(@NotNull Object[] identities, @NotNull Object[] values, @NotNull Function0<? extends JetType> create) {
+        Key key = new Key(identities, values);
+        TypeReference reference = types.get(key);
+        JetType existing = reference != null ? reference.get() : null;
+        if (existing != null) return existing;
+
+        removeCollected();
+
+        JetType type = create.invoke();
+        TypeReference newReference = new TypeReference(key.weak(), type, queue);
+        while (true) {
+            TypeReference oldReference = types.putIfAbsent(newReference.key, newReference);
+            if (oldReference == null) return type;
+
+            JetType oldType = oldReference.get();
+            if (oldType != null) return oldType;
+
+            if (types.replace(newReference.key, oldReference, newReference)) return type;
+        }
+    }
+
+    private static boolean canBeInterned(@NotNull List<? extends TypeProjection> arguments) {
+        for (TypeProjection argument : arguments) {
+            // Other projections may compute their types lazily
+            if (argument.getClass() != TypeProjectionImpl.class) return false;
+        }
+        return true;
+    }
+
+    // Same as getCapturedTypeParameters().isNotEmpty() for the declaration of the constructor, see TypeUtils.kt
+    private static boolean hasCapturedTypeParameters(@NotNull TypeConstructor constructor) {
+        ClassifierDescriptor descriptor = constructor.getDeclarationDescriptor();
+        if (descriptor == null) return false;
+
+        for (DeclarationDescriptor container = descriptor.getContainingDeclaration();
+             container != null;
+             container = container.getContainingDeclaration()) {
+            if (container instanceof ClassDescriptor) {
+                if (!((ClassDescriptor) container).getTypeConstructor().getParameters().isEmpty()) return true;
+            }
+            else if (container instanceof CallableDescriptor) {
+                if (!((CallableDescriptor) container).getTypeParameters().isEmpty()) return true;
+            }
+        }
+        return false;
+    }
+
+    private static void removeCollected() {
+        TypeReference reference;
+        while ((reference = (TypeReference) queue.poll()) != null) {
+            types.remove(reference.key, reference);
+        }
+    }
+
+    private static class TypeReference extends WeakReference<JetType> {
+        private final Key key;
+
+        private TypeReference(@NotNull Key key, @NotNull JetType type, @NotNull ReferenceQueue<JetType> queue) {
+            super(type, queue);
+            this.key = key;
+        }
+    }
+
+    private static class Key {
+        // The objects themselves for lookups, weak references to them in the stored keys
+        private final Object[] identities;
+        private final Object[] values;
+        private final boolean isWeak;
+        private final int hashCode;
+
+        private Key(@NotNull Object[] identities, @NotNull Object[] values) {
+            this.identities = identities;
+            this.values = values;
+            this.isWeak = false;
+
+            int hashCode = Arrays.hashCode(values);
+            for (Object identity : identities) {
+                hashCode = 31 * hashCode + System.identityHashCode(identity);
+            }
+            this.hashCode = hashCode;
+        }
+
+        private Key(@NotNull Key key) {
+            this.identities = new Object[key.identities.length];
+            for (int i = 0; i < identities.length; i++) {
+                identities[i] = new WeakReference<Object>(key.identities[i]);
+            }
+            this.values = key.values;
+            this.isWeak = true;
+            this.hashCode = key.hashCode;
+        }
+
+        @NotNull
+        private Key weak() {
+            return isWeak ? this : new Key(this);
+        }
+
+        @Nullable
+        private Object getIdentity(int index) {
+            return isWeak ? ((WeakReference<?>) identities[index]).get() : identities[index];
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+
+            Key other = (Key) o;
+            if (hashCode != other.hashCode || identities.length != other.identities.length) return false;
+
+            for (int i = 0; i < identities.length; i++) {
+                Object identity = getIdentity(i);
+                if (identity == null || identity != other.getIdentity(i)) return false;
+            }
+            return Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -254,7 +254,7 @@ public class TypeSubstitutor {
                 return substitution.isEmpty();
             }
         };
-        JetType substitutedType = new JetTypeImpl(type.getAnnotations(),   // Old annotations. This is questionable
+        JetType substitutedType = TypeInterner.createType(type.getAnnotations(),   // Old annotations. This is questionable
                                            type.getConstructor(),   // The same constructor
                                            type.isMarkedNullable(),       // Same nullability
                                            substitutedArguments,
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.types.checker;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.types.DelegatingType;
+import org.jetbrains.kotlin.types.JetType;
+import org.jetbrains.kotlin.types.LazyType;
+import org.jetbrains.kotlin.types.TypeProjection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Results of subtype checks made during one analysis by a {@link TypeCheckingProcedure} whose callbacks don't record anything
+ * (e.g. no constraints are collected and nothing is captured), so that the result depends on the types only.
+ *
+ * Types are compared by identity: overload resolution asks the same questions about the same type objects
+ * (e.g. parameter types of library functions), and identity lookups are much cheaper than structural equality.
+ *
+ * Checks are cached only on the threads which have entered the cache with {@link #enter()} and not exited it yet.
+ * The entries are owned by the cache object, so they are released together with it when the analysis is over;
+ * nothing is cached if no cache was entered (e.g. in the IDE, where the code may change between two checks).
+ * Every thread has its own bounded storage, so lookups are not synchronized.
+ */
+public class SubtypingCache {
+    private static final int MAX_SIZE = 4096;
+
+    private static final ThreadLocal<Storage> CURRENT_STORAGE = new ThreadLocal<Storage>();
+
+    private final ConcurrentMap<Thread, Storage> storages = new ConcurrentHashMap<Thread, Storage>();
+
+    /**
+     * Makes the subtype checks of the current thread use this cache until {@link Scope#exit()} is called on the same thread
+     */
+    @NotNull
+    public Scope enter() {
+        Thread thread = Thread.currentThread();
+        Storage storage = storages.get(thread);
+        if (storage == null) {
+            storage = new Storage(this);
+            storages.put(thread, storage);
+        }
+
+        Scope scope = new Scope(CURRENT_STORAGE.get());
+        CURRENT_STORAGE.set(storage);
+        return scope;
+    }
+
+    // The counters are written by the owning threads only, so the sums are exact once the threads which used the cache are done
+    public long getHits() {
+        long result = 0;
+        for (Storage storage : storages.values()) {
+            result += storage.hits;
+        }
+        return result;
+    }
+
+    public long getMisses() {
+        long result = 0;
+        for (Storage storage : storages.values()) {
+            result += storage.misses;
+        }
+        return result;
+    }
+
+    /**
+     * The cache entered on the current thread, to be entered on the threads doing a part of the same analysis
+     */
+    @Nullable
+    public static SubtypingCache getCurrent() {
+        Storage storage = CURRENT_STORAGE.get();
+        return storage != null ? storage.owner : null;
+    }
+
+    @Nullable
+    /*package*/ static Storage getCurrentStorage() {
+        return CURRENT_STORAGE.get();
+    }
+
+    // Deferred types may still be under computation (and be seen as error types in the meantime), their results can't be kept.
+    // Error types are subtypes of everything, so a deferred type among the type arguments can't be cached either
+    /*package*/ static boolean isCacheable(@NotNull JetType type) {
+        if (type instanceof LazyType && type instanceof DelegatingType) return false;
+
+        for (TypeProjection argument : type.getArguments()) {
+            if (!argument.isStarProjection() && !isCacheable(argument.getType())) return false;
+        }
+        return true;
+    }
+
+    public static class Scope {
+        @Nullable
+        private final Storage previous;
+
+        private Scope(@Nullable Storage previous) {
+            this.previous = previous;
+        }
+
+        public void exit() {
+            if (previous != null) {
+                CURRENT_STORAGE.set(previous);
+            }
+            else {
+                CURRENT_STORAGE.remove();
+            }
+        }
+    }
+
+    /*package*/ static class Storage extends LinkedHashMap<TypePair, Boolean> {
+        private final SubtypingCache owner;
+        private long hits;
+        private long misses;
+
+        private Storage(@NotNull SubtypingCache owner) {
+            super(16, 0.75f, true);
+            this.owner = owner;
+        }
+
+        @Nullable
+        /*package*/ Boolean get(@NotNull JetType subtype, @NotNull JetType supertype) {
+            Boolean result = get(new TypePair(subtype, supertype));
+            if (result != null) {
+                hits++;
+            }
+            else {
+                misses++;
+            }
+            return result;
+        }
+
+        /*package*/ void put(@NotNull JetType subtype, @NotNull JetType supertype, boolean result) {
+            put(new TypePair(subtype, supertype), result);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TypePair, Boolean> eldest) {
+            return size() > MAX_SIZE;
+        }
+    }
+
+    private static class TypePair {
+        private final JetType subtype;
+        private final JetType supertype;
+        private final int hashCode;
+
+        private TypePair(@NotNull JetType subtype, @NotNull JetType supertype) {
+            this.subtype = subtype;
+            this.supertype = supertype;
+            this.hashCode = 31 * System.identityHashCode(subtype) + System.identityHashCode(supertype);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TypePair)) return false;
+
+            TypePair other = (TypePair) o;
+            return subtype == other.subtype && supertype == other.supertype;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
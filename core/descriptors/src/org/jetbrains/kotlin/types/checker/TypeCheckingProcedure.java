@@ -63,9 +63,16 @@ public class TypeCheckingProcedure {
     }
 
     private final TypeCheckingProcedureCallbacks constraints;
+    private final boolean useSubtypingCache;
 
     public TypeCheckingProcedure(TypeCheckingProcedureCallbacks constraints) {
+        this(constraints, false);
+    }
+
+    // The cache should only be used when the result of a check doesn't depend on the callbacks' state
+    public TypeCheckingProcedure(TypeCheckingProcedureCallbacks constraints, boolean useSubtypingCache) {
         this.constraints = constraints;
+        this.useSubtypingCache = useSubtypingCache;
     }
 
     public boolean equalTypes(@NotNull JetType type1, @NotNull JetType type2) {
@@ -202,6 +209,21 @@ public class TypeCheckingProcedure {
         if (!supertype.isMarkedNullable() && subtype.isMarkedNullable()) {
             return false;
         }
+        SubtypingCache.Storage cache = useSubtypingCache ? SubtypingCache.getCurrentStorage() : null;
+        if (cache == null || !SubtypingCache.isCacheable(subtype) || !SubtypingCache.isCacheable(supertype)) {
+            return checkSubtypeForRepresentatives(subtype, supertype);
+        }
+
+        Boolean cached = cache.get(subtype, supertype);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = checkSubtypeForRepresentatives(subtype, supertype);
+        cache.put(subtype, supertype, result);
+        return result;
+    }
+
+    private boolean checkSubtypeForRepresentatives(JetType subtype, JetType supertype) {
         subtype = TypeUtils.makeNotNullable(subtype);
         supertype = TypeUtils.makeNotNullable(supertype);
         if (KotlinBuiltIns.isNothingOrNullableNothing(subtype)) {
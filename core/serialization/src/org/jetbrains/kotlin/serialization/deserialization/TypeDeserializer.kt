@@ -60,13 +60,26 @@ public class TypeDeserializer(
             }
 
             return DelegatingFlexibleType.create(
-                    DeserializedType(c, proto),
-                    DeserializedType(c, proto.getFlexibleUpperBound()),
+                    simpleType(proto),
+                    simpleType(proto.getFlexibleUpperBound()),
                     capabilities
             )
         }
 
-        return DeserializedType(c, proto)
+        return simpleType(proto)
+    }
+
+    // Types of classes without arguments (such as kotlin.String or kotlin.Int?) are the same in the whole module, so they are shared
+    private fun simpleType(proto: ProtoBuf.Type): JetType {
+        val constructorProto = proto.getConstructor()
+        if (proto.getArgumentCount() != 0 || constructorProto.getKind() != ProtoBuf.Type.Constructor.Kind.CLASS) {
+            return DeserializedType(c, proto)
+        }
+
+        val classId = c.nameResolver.getClassId(constructorProto.getId())
+        return TypeInterner.intern(array<Any>(c.components.moduleDescriptor), array<Any>(classId, proto.getNullable())) {
+            DeserializedType(c, proto)
+        }
     }
 
     fun typeConstructor(proto: ProtoBuf.Type): TypeConstructor {
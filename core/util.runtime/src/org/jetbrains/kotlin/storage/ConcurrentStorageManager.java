@@ -0,0 +1,559 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jetbrains.kotlin.storage;
+
+import kotlin.Function0;
+import kotlin.Function1;
+import kotlin.Unit;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.kotlin.storage.LockBasedStorageManager.ExceptionHandlingStrategy;
+import org.jetbrains.kotlin.storage.LockBasedStorageManager.RecursionDetectedResult;
+import org.jetbrains.kotlin.utils.WrappedValues;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * A storage manager that does not serialize unrelated computations, unlike {@link LockBasedStorageManager} which runs all of them
+ * under one lock.
+ *
+ * Every lazy value and every key of a memoized function is locked separately: a thread that needs a value being computed
+ * by another thread waits only for that computation. Recursive calls are detected and handled the same way as in
+ * {@link LockBasedStorageManager}. If waiting for another thread would lead to a deadlock, i.e. the computations depend on each other,
+ * this is treated as a recursive call, because a single thread would run into the same recursion.
+ *
+ * Blocks passed to {@link #compute} are mutually exclusive. When a thread inside such a block waits for a computation
+ * of another thread, that thread may enter compute blocks as well: with one thread, it would have run the computation inside the block
+ */
+public class ConcurrentStorageManager implements StorageManager {
+
+    @NotNull
+    public static ConcurrentStorageManager createWithExceptionHandling(@NotNull ExceptionHandlingStrategy exceptionHandlingStrategy) {
+        return new ConcurrentStorageManager(exceptionHandlingStrategy);
+    }
+
+    private final ExceptionHandlingStrategy exceptionHandlingStrategy;
+    private final String debugText;
+
+    // Guards the fields below, also used to wait for computations of other threads
+    private final Object waitLock = new Object();
+    // For each blocked thread, the computation it waits for
+    private final Map<Thread, Computation> waitingFor = new HashMap<Thread, Computation>();
+    @Nullable
+    private Thread computeBlockOwner = null;
+
+    public ConcurrentStorageManager() {
+        this(getPointOfConstruction(), ExceptionHandlingStrategy.THROW);
+    }
+
+    protected ConcurrentStorageManager(@NotNull ExceptionHandlingStrategy exceptionHandlingStrategy) {
+        this(getPointOfConstruction(), exceptionHandlingStrategy);
+    }
+
+    private ConcurrentStorageManager(@NotNull String debugText, @NotNull ExceptionHandlingStrategy exceptionHandlingStrategy) {
+        this.exceptionHandlingStrategy = exceptionHandlingStrategy;
+        this.debugText = debugText;
+    }
+
+    private static String getPointOfConstruction() {
+        StackTraceElement[] trace = Thread.currentThread().getStackTrace();
+        // we need to skip frames for getStackTrace(), this method and the constructor that's calling it
+        if (trace.length <= 3) return "<unknown creating class>";
+        return trace[3].toString();
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + " (" + debugText + ")";
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(@NotNull Function1<? super K, ? extends V> compute) {
+        return createMemoizedFunction(compute, ConcurrentStorageManager.<K>createConcurrentHashMap());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNotNull<K, V> createMemoizedFunction(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new MapBasedMemoizedFunctionToNotNull<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(@NotNull Function1<? super K, ? extends V> compute) {
+        return createMemoizedFunctionWithNullableValues(compute, ConcurrentStorageManager.<K>createConcurrentHashMap());
+    }
+
+    @NotNull
+    @Override
+    public <K, V> MemoizedFunctionToNullable<K, V> createMemoizedFunctionWithNullableValues(
+            @NotNull Function1<? super K, ? extends V> compute,
+            @NotNull ConcurrentMap<K, Object> map
+    ) {
+        return new MapBasedMemoizedFunction<K, V>(map, compute);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValue(@NotNull Function0<? extends T> computable) {
+        return new ConcurrentNotNullLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createRecursionTolerantLazyValue(
+            @NotNull Function0<? extends T> computable, @NotNull final T onRecursiveCall
+    ) {
+        return new ConcurrentNotNullLazyValue<T>(computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                return RecursionDetectedResult.value(onRecursiveCall);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NotNullLazyValue<T> createLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable,
+            final Function1<? super Boolean, ? extends T> onRecursiveCall,
+            @NotNull final Function1<? super T, ? extends Unit> postCompute
+    ) {
+        return new ConcurrentNotNullLazyValue<T>(computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                if (onRecursiveCall == null) {
+                    return super.recursionDetected(firstTime);
+                }
+                return RecursionDetectedResult.value(onRecursiveCall.invoke(firstTime));
+            }
+
+            @Override
+            protected void postCompute(@NotNull T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValue(@NotNull Function0<? extends T> computable) {
+        return new ConcurrentLazyValue<T>(computable);
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createRecursionTolerantNullableLazyValue(@NotNull Function0<? extends T> computable, final T onRecursiveCall) {
+        return new ConcurrentLazyValue<T>(computable) {
+            @NotNull
+            @Override
+            protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+                return RecursionDetectedResult.value(onRecursiveCall);
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public <T> NullableLazyValue<T> createNullableLazyValueWithPostCompute(
+            @NotNull Function0<? extends T> computable, @NotNull final Function1<? super T, ? extends Unit> postCompute
+    ) {
+        return new ConcurrentLazyValue<T>(computable) {
+            @Override
+            protected void postCompute(@Nullable T value) {
+                postCompute.invoke(value);
+            }
+        };
+    }
+
+    @Override
+    public <T> T compute(@NotNull Function0<? extends T> computable) {
+        boolean acquired = enterComputeBlock();
+        try {
+            return computable.invoke();
+        }
+        catch (Throwable throwable) {
+            throw exceptionHandlingStrategy.handleException(throwable);
+        }
+        finally {
+            if (acquired) {
+                exitComputeBlock();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the current thread has become the owner of compute blocks,
+     *         {@code false} if it already was the owner or the owner waits for it
+     */
+    private boolean enterComputeBlock() {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        try {
+            synchronized (waitLock) {
+                while (true) {
+                    if (computeBlockOwner == null) {
+                        computeBlockOwner = current;
+                        return true;
+                    }
+                    if (waitsFor(computeBlockOwner, current)) {
+                        return false;
+                    }
+                    try {
+                        waitLock.wait();
+                    }
+                    catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        }
+        finally {
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    private void exitComputeBlock() {
+        synchronized (waitLock) {
+            computeBlockOwner = null;
+            waitLock.notifyAll();
+        }
+    }
+
+    /**
+     * Blocks until the computation, owned by another thread, is finished
+     *
+     * @return {@code false} if the computation can not be waited for, because its owner waits for the current thread
+     */
+    private boolean waitFor(@NotNull Computation computation) {
+        Thread current = Thread.currentThread();
+        boolean interrupted = false;
+        try {
+            synchronized (waitLock) {
+                if (waitsFor(computation.owner, current)) {
+                    return false;
+                }
+
+                waitingFor.put(current, computation);
+                // Threads waiting to enter a compute block owned by this thread may now proceed
+                waitLock.notifyAll();
+                try {
+                    computation.hasWaiters = true;
+                    while (!computation.finished) {
+                        try {
+                            waitLock.wait();
+                        }
+                        catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                }
+                finally {
+                    waitingFor.remove(current);
+                }
+                return true;
+            }
+        }
+        finally {
+            if (interrupted) {
+                current.interrupt();
+            }
+        }
+    }
+
+    // Whether the thread is the target or (transitively) waits for a computation owned by the target. Should be called under waitLock
+    private boolean waitsFor(@NotNull Thread thread, @NotNull Thread target) {
+        Thread current = thread;
+        for (int i = 0; i <= waitingFor.size(); i++) {
+            if (current == target) return true;
+
+            Computation computation = waitingFor.get(current);
+            if (computation == null) return false;
+            current = computation.owner;
+        }
+        return false;
+    }
+
+    private void finish(@NotNull Computation computation) {
+        computation.finished = true;
+        if (computation.hasWaiters) {
+            synchronized (waitLock) {
+                waitLock.notifyAll();
+            }
+        }
+    }
+
+    @NotNull
+    private static <K> ConcurrentMap<K, Object> createConcurrentHashMap() {
+        // memory optimization: fewer segments and entries stored
+        return new ConcurrentHashMap<K, Object>(3, 1, 2);
+    }
+
+    @NotNull
+    protected <T> RecursionDetectedResult<T> recursionDetectedDefault() {
+        throw new IllegalStateException("Recursive call in a lazy value under " + this);
+    }
+
+    // A value being computed by its owner thread. Stored in place of the value until the computation is finished
+    private static final class Computation {
+        private final Thread owner = Thread.currentThread();
+
+        // The two fields below are read and written without a lock, see waitFor() and finish()
+        private volatile boolean finished = false;
+        private volatile boolean hasWaiters = false;
+
+        // The fields below are accessed only by the owner
+        private boolean recursionDetected = false;
+        private boolean postComputing = false;
+        private Object computedValue = null;
+
+        @Override
+        public String toString() {
+            return "Computation in " + owner.getName();
+        }
+    }
+
+    private enum NotValue {
+        NOT_COMPUTED,
+        RECURSION_WAS_DETECTED
+    }
+
+    @SuppressWarnings("unchecked")
+    private static final AtomicReferenceFieldUpdater<ConcurrentLazyValue, Object> LAZY_VALUE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ConcurrentLazyValue.class, Object.class, "value");
+
+    private class ConcurrentLazyValue<T> implements NullableLazyValue<T> {
+
+        private final Function0<? extends T> computable;
+
+        @Nullable
+        volatile Object value = NotValue.NOT_COMPUTED;
+
+        public ConcurrentLazyValue(@NotNull Function0<? extends T> computable) {
+            this.computable = computable;
+        }
+
+        @Override
+        public boolean isComputed() {
+            Object _value = value;
+            return _value != NotValue.NOT_COMPUTED && !(_value instanceof Computation);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T invoke() {
+            while (true) {
+                Object _value = value;
+                if (_value == NotValue.NOT_COMPUTED) {
+                    Computation computation = new Computation();
+                    if (LAZY_VALUE_UPDATER.compareAndSet(this, _value, computation)) {
+                        return compute(computation);
+                    }
+                }
+                else if (_value == NotValue.RECURSION_WAS_DETECTED) {
+                    RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ false);
+                    if (!result.isFallThrough()) {
+                        return result.getValue();
+                    }
+                    Computation computation = new Computation();
+                    if (LAZY_VALUE_UPDATER.compareAndSet(this, _value, computation)) {
+                        return compute(computation);
+                    }
+                }
+                else if (_value instanceof Computation) {
+                    Computation computation = (Computation) _value;
+                    if (computation.owner == Thread.currentThread()) {
+                        if (computation.postComputing) {
+                            return (T) computation.computedValue;
+                        }
+
+                        RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ !computation.recursionDetected);
+                        computation.recursionDetected = true;
+                        if (!result.isFallThrough()) {
+                            return result.getValue();
+                        }
+                        // The outermost computation will store its own result
+                        return computable.invoke();
+                    }
+
+                    if (!waitFor(computation)) {
+                        // The computation depends on a value being computed by the current thread, so this is a recursive call
+                        RecursionDetectedResult<T> result = recursionDetected(/*firstTime = */ true);
+                        if (!result.isFallThrough()) {
+                            return result.getValue();
+                        }
+                        return computable.invoke();
+                    }
+                }
+                else {
+                    return WrappedValues.unescapeThrowable(_value);
+                }
+            }
+        }
+
+        private T compute(@NotNull Computation computation) {
+            T typedValue;
+            try {
+                typedValue = computable.invoke();
+            }
+            catch (Throwable throwable) {
+                // Store only if it's a genuine result, not something thrown through recursionDetected()
+                value = computation.recursionDetected ? NotValue.RECURSION_WAS_DETECTED : WrappedValues.escapeThrowable(throwable);
+                finish(computation);
+                throw exceptionHandlingStrategy.handleException(throwable);
+            }
+
+            // Other threads should not see the value until it's post-computed
+            computation.computedValue = typedValue;
+            computation.postComputing = true;
+            try {
+                postCompute(typedValue);
+            }
+            catch (Throwable throwable) {
+                throw exceptionHandlingStrategy.handleException(throwable);
+            }
+            finally {
+                value = typedValue;
+                finish(computation);
+            }
+            return typedValue;
+        }
+
+        /**
+         * @param firstTime {@code true} when recursion has been just detected, {@code false} otherwise
+         * @return a value to be returned on a recursive call or subsequent calls
+         */
+        @NotNull
+        protected RecursionDetectedResult<T> recursionDetected(boolean firstTime) {
+            return recursionDetectedDefault();
+        }
+
+        protected void postCompute(T value) {
+            // Doing something in post-compute helps prevent infinite recursion
+        }
+    }
+
+    private class ConcurrentNotNullLazyValue<T> extends ConcurrentLazyValue<T> implements NotNullLazyValue<T> {
+
+        public ConcurrentNotNullLazyValue(@NotNull Function0<? extends T> computable) {
+            super(computable);
+        }
+
+        @Override
+        @NotNull
+        public T invoke() {
+            T result = super.invoke();
+            assert result != null : "compute() returned null";
+            return result;
+        }
+    }
+
+    private class MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNullable<K, V> {
+        private final ConcurrentMap<K, Object> cache;
+        private final Function1<? super K, ? extends V> compute;
+
+        public MapBasedMemoizedFunction(@NotNull ConcurrentMap<K, Object> map, @NotNull Function1<? super K, ? extends V> compute) {
+            this.cache = map;
+            this.compute = compute;
+        }
+
+        @Override
+        @Nullable
+        public V invoke(K input) {
+            while (true) {
+                Object value = cache.get(input);
+                if (value == null) {
+                    Computation computation = new Computation();
+                    value = cache.putIfAbsent(input, computation);
+                    if (value == null) {
+                        return compute(input, computation);
+                    }
+                }
+
+                if (!(value instanceof Computation)) {
+                    return WrappedValues.unescapeExceptionOrNull(value);
+                }
+
+                Computation computation = (Computation) value;
+                if (computation.owner == Thread.currentThread() || !waitFor(computation)) {
+                    throw new AssertionError("Recursion detected on input: " + input + " under " + ConcurrentStorageManager.this);
+                }
+            }
+        }
+
+        @Nullable
+        private V compute(K input, @NotNull Computation computation) {
+            try {
+                V typedValue;
+                try {
+                    typedValue = compute.invoke(input);
+                }
+                catch (Throwable throwable) {
+                    if (!cache.replace(input, computation, WrappedValues.escapeThrowable(throwable))) {
+                        throw raceConditionDetected(input);
+                    }
+                    throw exceptionHandlingStrategy.handleException(throwable);
+                }
+
+                if (!cache.replace(input, computation, WrappedValues.escapeNull(typedValue))) {
+                    throw raceConditionDetected(input);
+                }
+                return typedValue;
+            }
+            finally {
+                finish(computation);
+            }
+        }
+
+        @NotNull
+        private RuntimeException raceConditionDetected(K input) {
+            throw exceptionHandlingStrategy.handleException(new AssertionError(
+                    "Race condition detected on input " + input + ". Old value is " + cache.get(input) +
+                    " under " + ConcurrentStorageManager.this));
+        }
+    }
+
+    private class MapBasedMemoizedFunctionToNotNull<K, V> extends MapBasedMemoizedFunction<K, V> implements MemoizedFunctionToNotNull<K, V> {
+
+        public MapBasedMemoizedFunctionToNotNull(
+                @NotNull ConcurrentMap<K, Object> map,
+                @NotNull Function1<? super K, ? extends V> compute
+        ) {
+            super(map, compute);
+        }
+
+        @NotNull
+        @Override
+        public V invoke(K input) {
+            V result = super.invoke(input);
+            assert result != null : "compute() returned null under " + ConcurrentStorageManager.this;
+            return result;
+        }
+    }
+}
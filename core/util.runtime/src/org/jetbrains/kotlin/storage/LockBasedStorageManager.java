@@ -227,7 +227,7 @@ public class LockBasedStorageManager implements StorageManager {
         throw new IllegalStateException("Recursive call in a lazy value under " + this);
     }
 
-    private static class RecursionDetectedResult<T> {
+    /* package */ static class RecursionDetectedResult<T> {
 
         @NotNull
         public static <T> RecursionDetectedResult<T> value(T value) {
@@ -131,12 +131,12 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
 
         registerOutputItems(outputConsumer, outputsItemsAndTargets)
 
-        val recompilationDecision: IncrementalCacheImpl.RecompilationDecision
+        val cacheChanges: IncrementalCacheImpl.CacheChanges
         if (JpsUtils.isJsKotlinModule(chunk.representativeTarget())) {
-            recompilationDecision = IncrementalCacheImpl.RecompilationDecision.DO_NOTHING
+            cacheChanges = IncrementalCacheImpl.CacheChanges.NONE
         }
         else {
-            recompilationDecision = updateKotlinIncrementalCache(compilationErrors, dirtyFilesHolder, incrementalCaches, outputsItemsAndTargets)
+            cacheChanges = updateKotlinIncrementalCache(compilationErrors, dirtyFilesHolder, filesToCompile, incrementalCaches, outputsItemsAndTargets)
             updateJavaMappings(chunk, compilationErrors, context, dirtyFilesHolder, filesToCompile, outputsItemsAndTargets)
         }
 
@@ -149,22 +149,44 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
         }
 
         if (IncrementalCompilation.ENABLED) {
-            if (recompilationDecision == IncrementalCacheImpl.RecompilationDecision.RECOMPILE_ALL) {
-                allCompiledFiles.clear()
-                return CHUNK_REBUILD_REQUIRED
-            }
-            if (recompilationDecision == IncrementalCacheImpl.RecompilationDecision.COMPILE_OTHERS) {
+            if (cacheChanges.decision == IncrementalCacheImpl.RecompilationDecision.COMPILE_OTHERS) {
                 // TODO should mark dependencies as dirty, as well
                 FSOperations.markDirty(context, chunk, { file ->
                     KotlinSourceFileCollector.isKotlinSourceFile(file) && file !in allCompiledFiles
                 })
             }
+            if (cacheChanges.decision != IncrementalCacheImpl.RecompilationDecision.DO_NOTHING) {
+                markUsagesDirty(context, chunk, incrementalCaches.values(), cacheChanges, allCompiledFiles, filesToCompile.values())
+            }
             return ADDITIONAL_PASS_REQUIRED
         }
 
         return OK
     }
 
+    private fun markUsagesDirty(
+            context: CompileContext,
+            chunk: ModuleChunk,
+            incrementalCaches: Collection<IncrementalCacheImpl>,
+            cacheChanges: IncrementalCacheImpl.CacheChanges,
+            allCompiledFiles: Set<File>,
+            compiledInThisRound: Collection<File>
+    ) {
+        val usages = THashSet<File>(FileUtil.FILE_HASHING_STRATEGY)
+        val inlinedUsages = THashSet<File>(FileUtil.FILE_HASHING_STRATEGY)
+        for (cache in incrementalCaches) {
+            usages.addAll(cache.getUsages(cacheChanges.changedSymbols))
+            inlinedUsages.addAll(cache.getUsages(cacheChanges.changedInlinedSymbols))
+        }
+
+        // Files compiled in this round already use the new inline functions and constants, files compiled in previous rounds don't
+        val compiledInThisRoundSet = THashSet<File>(compiledInThisRound, FileUtil.FILE_HASHING_STRATEGY)
+        FSOperations.markDirty(context, chunk, { file ->
+            KotlinSourceFileCollector.isKotlinSourceFile(file)
+            && (file in usages && file !in allCompiledFiles || file in inlinedUsages && file !in compiledInThisRoundSet)
+        })
+    }
+
     private fun createCompileEnvironment(incrementalCaches: Map<ModuleBuildTarget, IncrementalCache>): CompilerEnvironment {
         val compilerServices = Services.Builder()
                 .register(javaClass<IncrementalCacheProvider>(), IncrementalCacheProviderImpl(incrementalCaches))
@@ -250,27 +272,31 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
     private fun updateKotlinIncrementalCache(
             compilationErrors: Boolean,
             dirtyFilesHolder: DirtyFilesHolder<JavaSourceRootDescriptor, ModuleBuildTarget>,
+            filesToCompile: MultiMap<ModuleBuildTarget, File>,
             incrementalCaches: Map<ModuleBuildTarget, IncrementalCacheImpl>,
             outputsItemsAndTargets: List<Pair<SimpleOutputItem, ModuleBuildTarget>>
-    ): IncrementalCacheImpl.RecompilationDecision {
+    ): IncrementalCacheImpl.CacheChanges {
         if (!IncrementalCompilation.ENABLED) {
-            return IncrementalCacheImpl.RecompilationDecision.DO_NOTHING
+            return IncrementalCacheImpl.CacheChanges.NONE
         }
 
         for ((target, cache) in incrementalCaches) {
             cache.clearCacheForRemovedFiles(
                     KotlinSourceFileCollector.getRemovedKotlinFiles(dirtyFilesHolder, target),
+                    filesToCompile[target],
                     target.getOutputDir()!!,
                     !compilationErrors
             )
         }
 
-        var recompilationDecision = IncrementalCacheImpl.RecompilationDecision.DO_NOTHING
+        var cacheChanges = IncrementalCacheImpl.CacheChanges.NONE
         for ((outputItem, target) in outputsItemsAndTargets) {
-            val newDecision = incrementalCaches[target]!!.saveFileToCache(outputItem.getSourceFiles(), outputItem.getOutputFile())
-            recompilationDecision = recompilationDecision.merge(newDecision)
+            val newChanges = incrementalCaches[target]!!.saveFileToCache(outputItem.getSourceFiles(), outputItem.getOutputFile())
+            cacheChanges = cacheChanges.merge(newChanges)
         }
-        return recompilationDecision
+
+        incrementalCaches.values().forEach { it.commit() }
+        return cacheChanges
     }
 
     // if null is returned, nothing was done
@@ -411,24 +437,31 @@ public class KotlinBuilder : ModuleLevelBuilder(BuilderCategory.SOURCE_PROCESSOR
     }
 }
 
+// Chunks may be built in parallel, so the containers shared through the context are synchronized
+private val CONTEXT_CONTAINERS_LOCK = Any()
+
 private val ALL_COMPILED_FILES_KEY = Key.create<MutableSet<File>>("_all_kotlin_compiled_files_")
 private fun getAllCompiledFilesContainer(context: CompileContext): MutableSet<File> {
-    var allCompiledFiles = ALL_COMPILED_FILES_KEY.get(context)
-    if (allCompiledFiles == null) {
-        allCompiledFiles = THashSet(FileUtil.FILE_HASHING_STRATEGY)
-        ALL_COMPILED_FILES_KEY.set(context, allCompiledFiles)
+    synchronized (CONTEXT_CONTAINERS_LOCK) {
+        var allCompiledFiles = ALL_COMPILED_FILES_KEY.get(context)
+        if (allCompiledFiles == null) {
+            allCompiledFiles = Collections.synchronizedSet(THashSet(FileUtil.FILE_HASHING_STRATEGY))
+            ALL_COMPILED_FILES_KEY.set(context, allCompiledFiles)
+        }
+        return allCompiledFiles!!
     }
-    return allCompiledFiles!!
 }
 
 private val PROCESSED_TARGETS_WITH_REMOVED_FILES = Key.create<MutableSet<ModuleBuildTarget>>("_processed_targets_with_removed_files_")
 private fun getProcessedTargetsWithRemovedFilesContainer(context: CompileContext): MutableSet<ModuleBuildTarget> {
-    var set = PROCESSED_TARGETS_WITH_REMOVED_FILES.get(context)
-    if (set == null) {
-        set = HashSet<ModuleBuildTarget>()
-        PROCESSED_TARGETS_WITH_REMOVED_FILES.set(context, set)
+    synchronized (CONTEXT_CONTAINERS_LOCK) {
+        var set = PROCESSED_TARGETS_WITH_REMOVED_FILES.get(context)
+        if (set == null) {
+            set = Collections.synchronizedSet(HashSet<ModuleBuildTarget>())
+            PROCESSED_TARGETS_WITH_REMOVED_FILES.set(context, set)
+        }
+        return set!!
     }
-    return set!!
 }
 
 private fun hasKotlinDirtyOrRemovedFiles(
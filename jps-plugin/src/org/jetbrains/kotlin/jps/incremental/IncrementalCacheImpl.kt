@@ -45,16 +45,33 @@ import org.jetbrains.kotlin.load.kotlin.header.isCompatibleClassKind
 import org.jetbrains.jps.incremental.storage.BuildDataManager
 import org.jetbrains.jps.builders.BuildTarget
 import org.jetbrains.jps.builders.storage.BuildDataPaths
+import org.jetbrains.kotlin.load.kotlin.incremental.cache.classSymbol
+import org.jetbrains.kotlin.load.kotlin.incremental.cache.memberSymbol
+import org.jetbrains.kotlin.load.kotlin.incremental.cache.subclassSymbol
+import org.jetbrains.kotlin.load.kotlin.incremental.cache.getSymbolOwner
+import java.io.DataInputStream
+import java.util.ArrayList
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
 
 val INLINE_ANNOTATION_DESC = "Lkotlin/inline;"
 
 private val CACHE_DIRECTORY_NAME = "kotlin"
 
+// Shared by caches of all targets, daemon thread doesn't prevent the build process from exiting
+private val CACHE_WRITE_EXECUTOR = Executors.newSingleThreadExecutor { runnable ->
+    val thread = Thread(runnable, "Kotlin incremental cache writer")
+    thread.setDaemon(true)
+    thread
+}
+
 
 class CacheFormatVersion(targetDataRoot: File) {
     class object {
         // Change this when incremental cache format changes
-        private val INCREMENTAL_CACHE_OWN_VERSION = 1
+        private val INCREMENTAL_CACHE_OWN_VERSION = 4
         private val CACHE_FORMAT_VERSION: Int = INCREMENTAL_CACHE_OWN_VERSION * 1000000 + JvmAbi.VERSION
         val FORMAT_VERSION_FILE_PATH: String = "$CACHE_DIRECTORY_NAME/format-version.txt"
     }
@@ -78,12 +95,17 @@ class CacheFormatVersion(targetDataRoot: File) {
     }
 }
 
+// Public methods are synchronized: with parallel compilation of independent modules enabled in JPS,
+// caches are accessed from the threads of different chunks and from the build session thread
 public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, IncrementalCache {
     class object {
         val PROTO_MAP = "proto.tab"
         val CONSTANTS_MAP = "constants.tab"
         val INLINE_FUNCTIONS = "inline-functions.tab"
         val PACKAGE_PARTS = "package-parts.tab"
+        val SOURCE_TO_SYMBOLS = "source-to-symbols.tab"
+        val SYMBOL_TO_SOURCES = "symbol-to-sources.tab"
+        val SOURCE_TO_CLASSES = "source-to-classes.tab"
     }
 
     private val baseDir = File(targetDataRoot, CACHE_DIRECTORY_NAME)
@@ -91,36 +113,43 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
     private val constantsMap =  ConstantsMap()
     private val inlineFunctionsMap =  InlineFunctionsMap()
     private val packagePartMap =  PackagePartMap()
+    private val sourceToSymbolsMap = SourceToSymbolsMap()
+    private val symbolToSourcesMap = SymbolToSourcesMap()
+    private val sourceToClassesMap = SourceToClassesMap()
 
-    private val maps = listOf(protoMap, constantsMap, inlineFunctionsMap, packagePartMap)
+    private val maps = listOf(protoMap, constantsMap, inlineFunctionsMap, packagePartMap, sourceToSymbolsMap, symbolToSourcesMap, sourceToClassesMap)
+    private val classFileBasedMaps = listOf(protoMap, constantsMap, inlineFunctionsMap)
 
     private val cacheFormatVersion = CacheFormatVersion(targetDataRoot)
 
-    public fun saveFileToCache(sourceFiles: Collection<File>, classFile: File): RecompilationDecision {
-        if (classFile.extension.toLowerCase() != "class") return DO_NOTHING
+    synchronized public fun saveFileToCache(sourceFiles: Collection<File>, classFile: File): CacheChanges {
+        if (classFile.extension.toLowerCase() != "class") return CacheChanges.NONE
         
         cacheFormatVersion.saveIfNeeded()
 
         val kotlinClass = LocalFileKotlinClass.create(classFile)
-        if (kotlinClass == null) return DO_NOTHING
+        if (kotlinClass == null) return CacheChanges.NONE
 
         val fileBytes = kotlinClass.getFileContents()
         val className = JvmClassName.byClassId(kotlinClass.getClassId())
         val header = kotlinClass.getClassHeader()
 
+        sourceFiles.forEach { sourceToClassesMap.add(it, className.getInternalName()) }
+
         val annotationDataEncoded = header.annotationData
         if (annotationDataEncoded != null) {
             val data = BitEncoding.decodeBytes(annotationDataEncoded)
             when {
                 header.isCompatiblePackageFacadeKind() -> {
-                    return if (protoMap.put(className, data)) COMPILE_OTHERS else DO_NOTHING
+                    return protoChanges(className, data, isPackage = true)
                 }
                 header.isCompatibleClassKind() -> {
+                    val owner = className.getInternalName()
                     val inlinesChanged = inlineFunctionsMap.process(className, fileBytes)
-                    val protoChanged = protoMap.put(className, data)
+                    val protoChanges = protoChanges(className, data, isPackage = false)
                     val constantsChanged = constantsMap.process(className, fileBytes)
 
-                    return if (inlinesChanged) RECOMPILE_ALL else if (protoChanged || constantsChanged) COMPILE_OTHERS else DO_NOTHING
+                    return protoChanges.merge(CacheChanges.inlined(owner, inlinesChanged + constantsChanged))
                 }
                 else -> {
                     throw IllegalStateException("Unexpected kind with annotationData: ${header.kind}, isCompatible: ${header.isCompatibleAbiVersion}")
@@ -132,49 +161,221 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
             packagePartMap.putPackagePartSourceData(sourceFiles.first(), className)
             val inlinesChanged = inlineFunctionsMap.process(className, fileBytes)
             val constantsChanged = constantsMap.process(className, fileBytes)
-            return if (inlinesChanged) RECOMPILE_ALL else if (constantsChanged) COMPILE_OTHERS else DO_NOTHING
+            // Members of package parts are referenced through the package facade
+            val facade = PackageClassUtils.getPackageClassInternalName(className.getPackageFqName())
+            return CacheChanges.inlined(facade, inlinesChanged + constantsChanged)
+        }
+
+        return CacheChanges.NONE
+    }
+
+    private fun protoChanges(className: JvmClassName, data: ByteArray, isPackage: Boolean): CacheChanges {
+        val oldData = protoMap[className]
+        if (!protoMap.put(className, data)) return CacheChanges.NONE
+
+        // A new class or package may change resolution anywhere, e.g. by shadowing an imported declaration
+        if (oldData == null) return CacheChanges.COMPILE_OTHERS
+
+        val difference = if (isPackage) packageProtoDifference(oldData, data) else classProtoDifference(oldData, data)
+        if (difference.isEmpty()) return CacheChanges.NONE
+
+        val owner = className.getInternalName()
+        val symbols = HashSet<String>()
+        // An added member may be chosen by resolution instead of some other declaration anywhere the class is used
+        if (difference.headerChanged || !difference.addedMembers.isEmpty()) {
+            symbols.add(classSymbol(owner))
+        }
+        (difference.removedMembers + difference.changedMembers).mapTo(symbols) { memberSymbol(owner, it) }
+        return CacheChanges(RecompilationDecision.RECOMPILE_USAGES, symbols, setOf())
+    }
+
+    synchronized public override fun registerSymbolUsages(sourceFile: File, usedSymbols: Collection<String>) {
+        val path = sourceFile.getAbsolutePath()
+        val newSymbols = symbolsAddedFor(path, usedSymbols)
+        sourceToSymbolsMap.put(path, usedSymbols)
+        newSymbols.forEach { symbolToSourcesMap.add(it, path) }
+    }
+
+    private fun symbolsAddedFor(path: String, usedSymbols: Collection<String>): Collection<String> {
+        val oldSymbols = sourceToSymbolsMap[path]?.toHashSet() ?: return usedSymbols
+        return usedSymbols.filter { it !in oldSymbols }
+    }
+
+    // Returns files which use any of the symbols, changes in members also affect the files which inherit them
+    synchronized public fun getUsages(symbols: Collection<String>): Set<File> {
+        val symbolsWithSubclasses = HashSet<String>(symbols)
+        for (symbol in symbols) {
+            val owner = getSymbolOwner(symbol)
+            if (owner != symbol) {
+                symbolsWithSubclasses.add(subclassSymbol(owner))
+            }
         }
 
-        return DO_NOTHING
+        val result = HashSet<File>()
+        val symbolsByPath = HashMap<String, Set<String>>()
+        for (symbol in symbolsWithSubclasses) {
+            for (path in symbolToSourcesMap[symbol]) {
+                // Reverse mapping is append-only, so it may reference sources which don't use the symbol anymore
+                val usedSymbols = symbolsByPath.getOrPut(path) { sourceToSymbolsMap[path]?.toHashSet() ?: setOf() }
+                if (symbol in usedSymbols) {
+                    result.add(File(path))
+                }
+            }
+        }
+        return result
     }
 
-    public fun clearCacheForRemovedFiles(removedSourceFiles: Collection<File>, outDirectory: File, compilationSuccessful: Boolean) {
-        removedSourceFiles.forEach { packagePartMap.remove(it) }
+    synchronized public fun clearCacheForRemovedFiles(
+            removedSourceFiles: Collection<File>,
+            compiledSourceFiles: Collection<File>,
+            outDirectory: File,
+            compilationSuccessful: Boolean
+    ) {
+        removedSourceFiles.forEach {
+            packagePartMap.remove(it)
+            sourceToSymbolsMap.remove(it.getAbsolutePath())
+        }
 
         if (compilationSuccessful) {
-            inlineFunctionsMap.clearOutdated(outDirectory)
-            constantsMap.clearOutdated(outDirectory)
-            protoMap.clearOutdated(outDirectory)
+            // Only classes of recompiled and removed sources may be outdated, no need to check the whole output directory
+            for (sourceFile in removedSourceFiles + compiledSourceFiles) {
+                val classes = sourceToClassesMap[sourceFile]
+                val outdatedClasses = classes.filter {
+                    !File(outDirectory, FileUtil.toSystemDependentName(it) + ".class").exists()
+                }
+                outdatedClasses.forEach { className -> classFileBasedMaps.forEach { it.remove(className) } }
+
+                val sourceRemoved = sourceFile in removedSourceFiles
+                sourceToClassesMap.put(sourceFile, if (sourceRemoved) listOf() else classes.filter { it !in outdatedClasses })
+            }
         }
     }
 
-    public override fun getRemovedPackageParts(sourceFilesToCompileAndFqNames: Map<File, String?>): Collection<String> {
+    // Schedules writing of the updates made during the build round
+    synchronized public fun commit() {
+        maps.forEach { it.commit(CACHE_WRITE_EXECUTOR) }
+    }
+
+    synchronized public override fun getRemovedPackageParts(sourceFilesToCompileAndFqNames: Map<File, String?>): Collection<String> {
         return packagePartMap.getRemovedPackageParts(sourceFilesToCompileAndFqNames)
     }
 
-    public override fun getPackageData(fqName: String): ByteArray? {
+    synchronized public override fun getPackageData(fqName: String): ByteArray? {
         return protoMap[JvmClassName.byFqNameWithoutInnerClasses(PackageClassUtils.getPackageClassFqName(FqName(fqName)))]
     }
 
-    override fun flush(memoryCachesOnly: Boolean) {
+    synchronized override fun flush(memoryCachesOnly: Boolean) {
         maps.forEach { it.flush(memoryCachesOnly) }
     }
 
-    public override fun clean() {
+    synchronized public override fun clean() {
         maps.forEach { it.clean() }
         cacheFormatVersion.clean()
     }
 
-    public override fun close() {
+    synchronized public override fun close() {
         maps.forEach { it.close () }
     }
 
+    /**
+     * Updates are accumulated in memory during a build round and written to the storage in background by [commit].
+     * Reads see the data which is not written yet, so the write-behind is not observable by callers
+     */
     private abstract class BasicMap<V> {
-        protected var storage: PersistentHashMap<String, V> = createMap()
+        private var storage: PersistentHashMap<String, V> = createMap()
+
+        // Null value means that the key was removed
+        private var pendingUpdates = HashMap<String, V?>()
+        private var updatesBeingWritten: Map<String, V?> = mapOf()
+        private var writeTask: Future<*>? = null
 
         protected abstract fun createMap(): PersistentHashMap<String, V>
 
+        protected fun getValue(key: String): V? {
+            if (pendingUpdates.containsKey(key)) return pendingUpdates[key]
+            if (updatesBeingWritten.containsKey(key)) return updatesBeingWritten[key]
+            return storage[key]
+        }
+
+        // Storage is safe to read while a commit is being written, but it may or may not contain the values being written
+        protected fun getStoredValue(key: String): V? = storage[key]
+
+        protected fun getUnwrittenValues(key: String): List<V> = listOf(pendingUpdates[key], updatesBeingWritten[key]).filterNotNull()
+
+        protected fun getPendingValue(key: String): V? = pendingUpdates[key]
+
+        protected fun putValue(key: String, value: V) {
+            pendingUpdates[key] = value
+        }
+
+        protected fun removeValue(key: String) {
+            pendingUpdates[key] = null
+        }
+
+        protected fun processKeys(processor: (String) -> Unit) {
+            writePendingUpdates()
+            val keys = ArrayList<String>()
+            storage.processKeysWithExistingMapping { key ->
+                keys.add(key!!)
+                true
+            }
+            keys.forEach(processor)
+        }
+
+        protected open fun writeValue(storage: PersistentHashMap<String, V>, key: String, value: V) {
+            storage.put(key, value)
+        }
+
+        private fun write(updates: Map<String, V?>) {
+            for ((key, value) in updates) {
+                if (value == null) {
+                    storage.remove(key)
+                }
+                else {
+                    writeValue(storage, key, value)
+                }
+            }
+        }
+
+        public fun commit(executor: ExecutorService) {
+            waitForWrite()
+            if (pendingUpdates.isEmpty()) return
+
+            val updates = pendingUpdates
+            pendingUpdates = HashMap()
+            updatesBeingWritten = updates
+            writeTask = executor.submit(Runnable { write(updates) })
+        }
+
+        private fun waitForWrite() {
+            val task = writeTask ?: return
+            try {
+                task.get()
+            }
+            catch (e: ExecutionException) {
+                throw e.getCause() ?: e
+            }
+            finally {
+                writeTask = null
+                updatesBeingWritten = mapOf()
+            }
+        }
+
+        private fun writePendingUpdates() {
+            waitForWrite()
+            val updates = pendingUpdates
+            pendingUpdates = HashMap()
+            write(updates)
+        }
+
         public fun clean() {
+            pendingUpdates = HashMap()
+            try {
+                waitForWrite()
+            }
+            catch (ignored: Throwable) {
+            }
+
             try {
                 storage.close()
             }
@@ -190,6 +391,7 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
         }
 
         public fun flush(memoryCachesOnly: Boolean) {
+            writePendingUpdates()
             if (memoryCachesOnly) {
                 if (storage.isDirty()) {
                     storage.dropMemoryCaches()
@@ -201,29 +403,14 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
         }
 
         public fun close() {
+            writePendingUpdates()
             storage.close()
         }
     }
 
     private abstract class ClassFileBasedMap<V>: BasicMap<V>() {
-
-        // TODO may be too expensive, because it traverses all files in out directory
-        public fun clearOutdated(outDirectory: File) {
-            val keysToRemove = HashSet<String>()
-
-            storage.processKeysWithExistingMapping { key ->
-                val className = JvmClassName.byInternalName(key!!)
-                val classFile = File(outDirectory, FileUtil.toSystemDependentName(className.getInternalName()) + ".class")
-                if (!classFile.exists()) {
-                    keysToRemove.add(key)
-                }
-
-                true
-            }
-
-            for (key in keysToRemove) {
-                storage.remove(key)
-            }
+        public fun remove(className: String) {
+            removeValue(className)
         }
     }
 
@@ -236,16 +423,16 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
 
         public fun put(className: JvmClassName, data: ByteArray): Boolean {
             val key = className.getInternalName()
-            val oldData = storage[key]
+            val oldData = getValue(key)
             if (Arrays.equals(data, oldData)) {
                 return false
             }
-            storage.put(key, data)
+            putValue(key, data)
             return true
         }
 
         public fun get(className: JvmClassName): ByteArray? {
-            return storage[className.getInternalName()]
+            return getValue(className.getInternalName())
         }
     }
 
@@ -272,24 +459,25 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
             return if (result.isEmpty()) null else result
         }
 
-        public fun process(className: JvmClassName, bytes: ByteArray): Boolean {
+        // Returns names of the constants which were added, removed or changed
+        public fun process(className: JvmClassName, bytes: ByteArray): Collection<String> {
             return put(className, getConstantsMap(bytes))
         }
 
-        private fun put(className: JvmClassName, constantsMap: Map<String, Any>?): Boolean {
+        private fun put(className: JvmClassName, constantsMap: Map<String, Any>?): Collection<String> {
             val key = className.getInternalName()
 
-            val oldMap = storage[key]
+            val oldMap = getValue(key)
             if (oldMap == constantsMap) {
-                return false
+                return listOf()
             }
             if (constantsMap != null) {
-                storage.put(key, constantsMap)
+                putValue(key, constantsMap)
             }
             else {
-                storage.remove(key)
+                removeValue(key)
             }
-            return true
+            return getChangedKeys(oldMap, constantsMap)
         }
     }
 
@@ -358,6 +546,8 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
                 InlineFunctionsMapExternalizer
         )
 
+        // Hashes are computed without debug info (line numbers, local variables, frames),
+        // so that e.g. adding a comment above an inline function doesn't make its call sites recompile
         private fun getInlineFunctionsMap(bytes: ByteArray): Map<String, Long>? {
             val result = HashMap<String, Long>()
 
@@ -385,29 +575,31 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
                     }
                 }
 
-            }, 0)
+            }, ClassReader.SKIP_DEBUG or ClassReader.SKIP_FRAMES)
 
             return if (result.isEmpty()) null else result
         }
 
-        public fun process(className: JvmClassName, bytes: ByteArray): Boolean {
+        // Returns names of the inline functions which were added, removed or changed
+        public fun process(className: JvmClassName, bytes: ByteArray): Collection<String> {
             return put(className, getInlineFunctionsMap(bytes))
         }
 
-        private fun put(className: JvmClassName, inlineFunctionsMap: Map<String, Long>?): Boolean {
+        private fun put(className: JvmClassName, inlineFunctionsMap: Map<String, Long>?): Collection<String> {
             val key = className.getInternalName()
 
-            val oldMap = storage[key]
+            val oldMap = getValue(key)
             if (oldMap == inlineFunctionsMap) {
-                return false
+                return listOf()
             }
             if (inlineFunctionsMap != null) {
-                storage.put(key, inlineFunctionsMap)
+                putValue(key, inlineFunctionsMap)
             }
             else {
-                storage.remove(key)
+                removeValue(key)
             }
-            return true
+            // Keys are JVM signatures: name + desc
+            return getChangedKeys(oldMap, inlineFunctionsMap).map { it.substringBefore('(') }.toSet()
         }
     }
 
@@ -446,20 +638,20 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
         )
 
         public fun putPackagePartSourceData(sourceFile: File, className: JvmClassName) {
-            storage.put(sourceFile.getAbsolutePath(), className.getInternalName())
+            putValue(sourceFile.getAbsolutePath(), className.getInternalName())
         }
 
         public fun remove(sourceFile: File) {
-            storage.remove(sourceFile.getAbsolutePath())
+            removeValue(sourceFile.getAbsolutePath())
         }
 
         public fun getRemovedPackageParts(compiledSourceFilesToFqName: Map<File, String?>): Collection<String> {
             val result = HashSet<String>()
 
-            storage.processKeysWithExistingMapping { key ->
-                val sourceFile = File(key!!)
+            processKeys { key ->
+                val sourceFile = File(key)
 
-                val packagePartClassName = storage[key]!!
+                val packagePartClassName = getValue(key)!!
                 if (!sourceFile.exists()) {
                     result.add(packagePartClassName)
                 }
@@ -471,8 +663,6 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
                         }
                     }
                 }
-
-                true
             }
 
             return result
@@ -481,29 +671,158 @@ public class IncrementalCacheImpl(targetDataRoot: File): StorageOwner, Increment
         public fun getPackages(): Set<FqName> {
             val result = HashSet<FqName>()
 
-            storage.processKeysWithExistingMapping { key ->
-                val packagePartClassName = storage[key!!]!!
+            processKeys { key ->
+                val packagePartClassName = getValue(key)!!
 
                 val packageFqName = JvmClassName.byInternalName(packagePartClassName).getPackageFqName()
 
                 result.add(packageFqName)
+            }
 
-                true
+            return result
+        }
+    }
+
+    private inner class SourceToSymbolsMap: BasicMap<Collection<String>>() {
+        // Format: <source file path>  -->  <symbols from other files used in it>
+        override fun createMap(): PersistentHashMap<String, Collection<String>> = PersistentHashMap(
+                File(baseDir, SOURCE_TO_SYMBOLS),
+                EnumeratorStringDescriptor(),
+                StringCollectionExternalizer
+        )
+
+        public fun get(path: String): Collection<String>? = getValue(path)
+
+        public fun put(path: String, symbols: Collection<String>) {
+            putValue(path, symbols)
+        }
+
+        public fun remove(path: String) {
+            removeValue(path)
+        }
+    }
+
+    private inner class SymbolToSourcesMap: BasicMap<Collection<String>>() {
+        // Format: <symbol>  -->  <paths of source files which used it at some point>
+        // Only appended to, source-to-symbols map is the authoritative data
+        override fun createMap(): PersistentHashMap<String, Collection<String>> = PersistentHashMap(
+                File(baseDir, SYMBOL_TO_SOURCES),
+                EnumeratorStringDescriptor(),
+                StringCollectionExternalizer
+        )
+
+        // Unwritten values of this map are the paths added since the last commit, not the whole collections
+        public fun get(symbol: String): Collection<String> {
+            val result = HashSet<String>()
+            getStoredValue(symbol)?.let { result.addAll(it) }
+            getUnwrittenValues(symbol).forEach { result.addAll(it) }
+            return result
+        }
+
+        public fun add(symbol: String, path: String) {
+            val added = HashSet<String>()
+            getPendingValue(symbol)?.let { added.addAll(it) }
+            added.add(path)
+            putValue(symbol, added)
+        }
+
+        override fun writeValue(storage: PersistentHashMap<String, Collection<String>>, key: String, value: Collection<String>) {
+            storage.appendData(key, object : PersistentHashMap.ValueDataAppender {
+                override fun append(out: DataOutput) {
+                    StringCollectionExternalizer.save(out, value)
+                }
+            })
+        }
+    }
+
+    private inner class SourceToClassesMap: BasicMap<Collection<String>>() {
+        // Format: <source file path>  -->  <JVM internal names of the classes compiled from it>
+        override fun createMap(): PersistentHashMap<String, Collection<String>> = PersistentHashMap(
+                File(baseDir, SOURCE_TO_CLASSES),
+                EnumeratorStringDescriptor(),
+                StringCollectionExternalizer
+        )
+
+        public fun get(sourceFile: File): Collection<String> = getValue(sourceFile.getAbsolutePath()) ?: listOf()
+
+        public fun add(sourceFile: File, className: String) {
+            val classes = get(sourceFile)
+            if (className !in classes) {
+                putValue(sourceFile.getAbsolutePath(), classes + className)
             }
+        }
 
+        public fun put(sourceFile: File, classes: Collection<String>) {
+            if (classes.isEmpty()) {
+                removeValue(sourceFile.getAbsolutePath())
+            }
+            else {
+                putValue(sourceFile.getAbsolutePath(), classes)
+            }
+        }
+    }
+
+    private object StringCollectionExternalizer: DataExternalizer<Collection<String>> {
+        override fun save(out: DataOutput, value: Collection<String>) {
+            value.forEach { IOUtil.writeString(it, out) }
+        }
+
+        override fun read(`in`: DataInput): Collection<String> {
+            val result = HashSet<String>()
+            val stream = `in` as DataInputStream
+            while (stream.available() > 0) {
+                result.add(IOUtil.readString(stream)!!)
+            }
             return result
         }
     }
 
     enum class RecompilationDecision {
         DO_NOTHING
+        RECOMPILE_USAGES
         COMPILE_OTHERS
-        RECOMPILE_ALL
 
         fun merge(other: RecompilationDecision): RecompilationDecision {
             return if (other.ordinal() > this.ordinal()) other else this
         }
     }
+
+    /**
+     * Symbols affected by changes of compiled classes.
+     * Inlined symbols (inline functions and constants) are copied into the bytecode of their usages,
+     * so the usages have to be recompiled even if they were already compiled during this build.
+     */
+    public class CacheChanges(
+            public val decision: RecompilationDecision,
+            public val changedSymbols: Set<String>,
+            public val changedInlinedSymbols: Set<String>
+    ) {
+        class object {
+            val NONE = CacheChanges(RecompilationDecision.DO_NOTHING, setOf(), setOf())
+            val COMPILE_OTHERS = CacheChanges(RecompilationDecision.COMPILE_OTHERS, setOf(), setOf())
+
+            fun inlined(owner: String, changedMembers: Collection<String>): CacheChanges {
+                if (changedMembers.isEmpty()) return NONE
+                return CacheChanges(RecompilationDecision.RECOMPILE_USAGES, setOf(), changedMembers.map { memberSymbol(owner, it) }.toSet())
+            }
+        }
+
+        fun merge(other: CacheChanges): CacheChanges {
+            if (other == NONE) return this
+            if (this == NONE) return other
+            return CacheChanges(
+                    decision.merge(other.decision),
+                    (changedSymbols + other.changedSymbols).toSet(),
+                    (changedInlinedSymbols + other.changedInlinedSymbols).toSet()
+            )
+        }
+    }
+}
+
+private fun <V> getChangedKeys(oldMap: Map<String, V>?, newMap: Map<String, V>?): Collection<String> {
+    val oldValues = oldMap ?: mapOf()
+    val newValues = newMap ?: mapOf()
+    return (oldValues.keySet() + newValues.keySet()).filter { oldValues[it] != newValues[it] }.toSet()
 }
 
 private val storageProvider = object: StorageProvider<IncrementalCacheImpl>() {
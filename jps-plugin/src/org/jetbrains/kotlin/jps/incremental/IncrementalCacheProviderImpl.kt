@@ -19,9 +19,11 @@ package org.jetbrains.kotlin.jps.incremental
 import org.jetbrains.kotlin.load.kotlin.incremental.cache.IncrementalCacheProvider
 import org.jetbrains.jps.incremental.ModuleBuildTarget
 import org.jetbrains.kotlin.load.kotlin.incremental.cache.IncrementalCache
+import java.util.Collections
 
+// Created per chunk and never modified, so it's safe to use from concurrent compilations of different chunks
 public class IncrementalCacheProviderImpl(caches: Map<ModuleBuildTarget, IncrementalCache>): IncrementalCacheProvider {
-    private val idToCache = caches.mapKeys { it.key.getId()!! }
+    private val idToCache = Collections.unmodifiableMap(caches.mapKeys { it.key.getId()!! })
 
     override fun getIncrementalCache(moduleId: String): IncrementalCache {
         return idToCache[moduleId]!!
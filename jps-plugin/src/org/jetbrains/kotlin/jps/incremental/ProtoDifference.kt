@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2015 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.jetbrains.kotlin.jps.incremental
+
+import org.jetbrains.kotlin.serialization.ClassData
+import org.jetbrains.kotlin.serialization.Flags
+import org.jetbrains.kotlin.serialization.PackageData
+import org.jetbrains.kotlin.serialization.ProtoBuf
+import org.jetbrains.kotlin.serialization.deserialization.NameResolver
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBuf
+import org.jetbrains.kotlin.serialization.jvm.JvmProtoBufUtil
+import java.util.HashMap
+import java.util.HashSet
+
+/**
+ * ABI difference between two versions of a serialized class or package.
+ * Private class members and annotations are not a part of ABI, since they can't change the code generated for callers.
+ * Private top-level members are visible in other files of the package, so they are compared as any other member.
+ * Members are identified by name, so a change in one of the overloads reports the whole name as changed.
+ */
+public class ProtoDifference(
+        public val headerChanged: Boolean,
+        public val addedMembers: Set<String>,
+        public val removedMembers: Set<String>,
+        public val changedMembers: Set<String>
+) {
+    public fun isEmpty(): Boolean = !headerChanged && addedMembers.isEmpty() && removedMembers.isEmpty() && changedMembers.isEmpty()
+}
+
+public fun classProtoDifference(oldData: ByteArray, newData: ByteArray): ProtoDifference {
+    val registry = JvmProtoBufUtil.getExtensionRegistry()
+    val oldClass = ClassData.read(oldData, registry)
+    val newClass = ClassData.read(newData, registry)
+    return difference(
+            ProtoFingerprinter(oldClass.getNameResolver()).classHeader(oldClass.getClassProto()),
+            ProtoFingerprinter(newClass.getNameResolver()).classHeader(newClass.getClassProto()),
+            ProtoFingerprinter(oldClass.getNameResolver()).members(oldClass.getClassProto().getMemberList(), skipPrivate = true),
+            ProtoFingerprinter(newClass.getNameResolver()).members(newClass.getClassProto().getMemberList(), skipPrivate = true)
+    )
+}
+
+public fun packageProtoDifference(oldData: ByteArray, newData: ByteArray): ProtoDifference {
+    val registry = JvmProtoBufUtil.getExtensionRegistry()
+    val oldPackage = PackageData.read(oldData, registry)
+    val newPackage = PackageData.read(newData, registry)
+    return difference(
+            "", "",
+            ProtoFingerprinter(oldPackage.getNameResolver()).members(oldPackage.getPackageProto().getMemberList(), skipPrivate = false),
+            ProtoFingerprinter(newPackage.getNameResolver()).members(newPackage.getPackageProto().getMemberList(), skipPrivate = false)
+    )
+}
+
+private fun difference(
+        oldHeader: String,
+        newHeader: String,
+        oldMembers: Map<String, Set<String>>,
+        newMembers: Map<String, Set<String>>
+): ProtoDifference {
+    val added = newMembers.keySet().filter { it !in oldMembers }.toSet()
+    val removed = oldMembers.keySet().filter { it !in newMembers }.toSet()
+    val changed = newMembers.keySet().filter { it in oldMembers && oldMembers[it] != newMembers[it] }.toSet()
+    return ProtoDifference(oldHeader != newHeader, added, removed, changed)
+}
+
+// Renders protos to strings which don't depend on the string table indices and on non-ABI data
+private class ProtoFingerprinter(private val nameResolver: NameResolver) {
+    private val builder = StringBuilder()
+
+    fun classHeader(proto: ProtoBuf.Class): String {
+        builder.setLength(0)
+        flags(proto.getFlags())
+        append(proto.getExtraVisibility())
+        append(nameResolver.getClassId(proto.getFqName()))
+        proto.getTypeParameterList().forEach { typeParameter(it) }
+        proto.getSupertypeList().forEach { type(it) }
+        proto.getNestedClassNameList().forEach { append(nameResolver.getString(it)) }
+        proto.getEnumEntryList().forEach { append(nameResolver.getString(it)) }
+
+        if (proto.hasClassObject()) {
+            append("class object")
+            val classObject = proto.getClassObject()
+            if (classObject.hasData()) {
+                val data = classObject.getData()
+                append(ProtoFingerprinter(nameResolver).classHeader(data))
+                for ((name, fingerprints) in ProtoFingerprinter(nameResolver).members(data.getMemberList(), skipPrivate = true).toSortedMap()) {
+                    append("$name=${fingerprints.toSortedList()}")
+                }
+            }
+        }
+        if (proto.hasPrimaryConstructor()) {
+            append("constructor")
+            val constructor = proto.getPrimaryConstructor()
+            if (constructor.hasData() && !isPrivate(constructor.getData())) {
+                callable(constructor.getData())
+            }
+        }
+        return builder.toString()
+    }
+
+    // Member name -> fingerprints of all its overloads, except private ones if skipPrivate is true
+    fun members(members: List<ProtoBuf.Callable>, skipPrivate: Boolean): Map<String, Set<String>> {
+        val result = HashMap<String, MutableSet<String>>()
+        for (member in members) {
+            if (skipPrivate && isPrivate(member)) continue
+
+            builder.setLength(0)
+            callable(member)
+            result.getOrPut(nameResolver.getString(member.getName())) { HashSet() }.add(builder.toString())
+        }
+        return result
+    }
+
+    private fun isPrivate(callable: ProtoBuf.Callable): Boolean =
+            Flags.VISIBILITY.get(callable.getFlags()) == ProtoBuf.Visibility.PRIVATE
+
+    private fun callable(proto: ProtoBuf.Callable) {
+        flags(proto.getFlags())
+        append(proto.getExtraVisibility())
+        if (proto.hasGetterFlags()) flags(proto.getGetterFlags())
+        if (proto.hasSetterFlags()) flags(proto.getSetterFlags())
+        proto.getTypeParameterList().forEach { typeParameter(it) }
+        if (proto.hasReceiverType()) type(proto.getReceiverType())
+        append(nameResolver.getString(proto.getName()))
+        for (parameter in proto.getValueParameterList()) {
+            flags(parameter.getFlags())
+            append(nameResolver.getString(parameter.getName()))
+            type(parameter.getType())
+            if (parameter.hasVarargElementType()) type(parameter.getVarargElementType())
+        }
+        type(proto.getReturnType())
+
+        // JVM signatures are a part of ABI for the generated code, the name of the implementation class is not
+        if (proto.hasExtension(JvmProtoBuf.methodSignature)) {
+            methodSignature(proto.getExtension(JvmProtoBuf.methodSignature))
+        }
+        if (proto.hasExtension(JvmProtoBuf.propertySignature)) {
+            val signature = proto.getExtension(JvmProtoBuf.propertySignature)
+            if (signature.hasField()) {
+                val field = signature.getField()
+                append(nameResolver.getString(field.getName()))
+                jvmType(field.getType())
+                append(field.getIsStaticInOuter())
+            }
+            if (signature.hasSyntheticMethod()) methodSignature(signature.getSyntheticMethod())
+            if (signature.hasGetter()) methodSignature(signature.getGetter())
+            if (signature.hasSetter()) methodSignature(signature.getSetter())
+        }
+    }
+
+    private fun typeParameter(proto: ProtoBuf.TypeParameter) {
+        append(proto.getId())
+        append(nameResolver.getString(proto.getName()))
+        append(proto.getReified())
+        append(proto.getVariance())
+        proto.getUpperBoundList().forEach { type(it) }
+    }
+
+    private fun type(proto: ProtoBuf.Type) {
+        builder.append('(')
+        val constructor = proto.getConstructor()
+        append(constructor.getKind())
+        append(if (constructor.getKind() == ProtoBuf.Type.Constructor.Kind.CLASS)
+                   nameResolver.getClassId(constructor.getId())
+               else
+                   constructor.getId())
+        for (argument in proto.getArgumentList()) {
+            append(argument.getProjection())
+            type(argument.getType())
+        }
+        append(proto.getNullable())
+        if (proto.hasFlexibleTypeCapabilitiesId()) {
+            append(nameResolver.getString(proto.getFlexibleTypeCapabilitiesId()))
+            type(proto.getFlexibleUpperBound())
+        }
+        builder.append(')')
+    }
+
+    private fun methodSignature(proto: JvmProtoBuf.JvmMethodSignature) {
+        append(nameResolver.getString(proto.getName()))
+        jvmType(proto.getReturnType())
+        proto.getParameterTypeList().forEach { jvmType(it) }
+    }
+
+    private fun jvmType(proto: JvmProtoBuf.JvmType) {
+        if (proto.hasPrimitiveType()) append(proto.getPrimitiveType())
+        if (proto.hasClassFqName()) append(nameResolver.getFqName(proto.getClassFqName()).asString())
+        append(proto.getArrayDimension())
+    }
+
+    private fun flags(flags: Int) {
+        append(flags and Flags.HAS_ANNOTATIONS.toFlags(true).inv())
+    }
+
+    private fun append(value: Any) {
+        builder.append(value).append(';')
+    }
+}
@@ -26,6 +26,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.jetbrains.jps.builders.BuildResult;
 import org.jetbrains.jps.builders.impl.BuildDataPathsImpl;
+import org.jetbrains.jps.cmdline.BuildRunner;
 import org.jetbrains.jps.model.java.JpsJavaDependencyScope;
 import org.jetbrains.jps.model.java.JpsJavaExtensionService;
 import org.jetbrains.jps.model.module.JpsModule;
@@ -380,6 +381,27 @@ public class KotlinJpsBuildTest extends AbstractKotlinJpsBuildTestCase {
         checkWhen(touch("module2/src/b.kt"), null, packageClasses("module2", "module2/src/b.kt", "test.TestPackage"));
     }
 
+    public void testParallelBuildOfIndependentModules() {
+        // Both modules use the same library types and the same kinds of substitutions,
+        // so the state shared by compilations in the process is used by both chunks at once
+        boolean parallelBuildEnabled = BuildRunner.PARALLEL_BUILD_ENABLED;
+        BuildRunner.PARALLEL_BUILD_ENABLED = true;
+        try {
+            doTestWithRuntime();
+            assertFilesExistInOutput(findModule("kotlinProject"), "a/APackage.class");
+            assertFilesExistInOutput(findModule("module2"), "b/BPackage.class");
+
+            for (int i = 0; i < 5; i++) {
+                rebuildAll().assertSuccessful();
+            }
+
+            checkWhen(new Action[] {touch("src/a.kt"), touch("module2/src/b.kt")}, null, null);
+        }
+        finally {
+            BuildRunner.PARALLEL_BUILD_ENABLED = parallelBuildEnabled;
+        }
+    }
+
     private void createKotlinJavaScriptLibraryArchive() {
         File jarFile = new File(workDir, KOTLIN_JS_LIBRARY_JAR);
         try {
@@ -0,0 +1,13 @@
+package b
+
+class Outer<T>(val t: T) {
+    inner class Inner {
+        fun get(): T = t
+    }
+}
+
+fun ints(): List<Int> = listOf(1, 2, 3)
+
+fun strings(): Map<String, List<Int>> = mapOf("a" to ints())
+
+fun useInner(): String = Outer("a").Inner().get() + Outer(1).Inner().get()
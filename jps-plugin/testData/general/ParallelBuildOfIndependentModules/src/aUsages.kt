@@ -0,0 +1,7 @@
+package a
+
+fun sum(): Int = ints().fold(0) { acc, i -> acc + i }
+
+fun keys(): Set<String> = strings().keySet()
+
+fun flatten(): List<Int> = strings().values().flatMap { it }
@@ -0,0 +1,5 @@
+package test
+
+class Used {
+    fun foo() = ":)"
+}
@@ -0,0 +1,3 @@
+package test
+
+private fun foo(x: Int): Int = x
@@ -0,0 +1,5 @@
+package test
+
+fun usage() {
+    foo(1)
+}
\ No newline at end of file